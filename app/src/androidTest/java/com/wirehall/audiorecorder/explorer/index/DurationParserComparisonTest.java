@@ -0,0 +1,198 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.media.MediaMuxer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link DurationParser} with {@link MediaMetadataRetriever} on recordings encoded by the
+ * platform AAC encoder, written both as ADTS like the recorder does and as MP4.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DurationParserComparisonTest {
+  private static final int SAMPLE_RATE = 44100;
+  private static final int SAMPLE_RATE_INDEX_44100 = 4;
+  private static final int BIT_RATE = 64000;
+  private static final long CODEC_TIMEOUT_US = 10_000;
+  private static final int RECORDING_COUNT = 10;
+  // The encoder delay and the rounding of the container are within a few frames
+  private static final long DURATION_TOLERANCE_MS = 100;
+
+  private File directory;
+
+  @Before
+  public void setUp() {
+    File cacheDir = InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir();
+    directory = new File(cacheDir, "duration_parser_comparison");
+    assertTrue(directory.isDirectory() || directory.mkdirs());
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void test_durations_match_retriever() throws IOException {
+    List<File> files = new ArrayList<>();
+    for (int i = 1; i <= RECORDING_COUNT; i++) {
+      File adtsFile = new File(directory, String.format(Locale.US, "rec_%02d.aac", i));
+      File mp4File = new File(directory, String.format(Locale.US, "rec_%02d.m4a", i));
+      encodeSine(i * SAMPLE_RATE, adtsFile, mp4File);
+      files.add(adtsFile);
+      files.add(mp4File);
+    }
+
+    long[] parsedDurations = new long[files.size()];
+    long start = System.nanoTime();
+    for (int i = 0; i < files.size(); i++) {
+      parsedDurations[i] = DurationParser.parseDuration(files.get(i));
+    }
+    long parserNanos = System.nanoTime() - start;
+
+    long[] retrievedDurations = new long[files.size()];
+    start = System.nanoTime();
+    for (int i = 0; i < files.size(); i++) {
+      retrievedDurations[i] = retrieveDuration(files.get(i));
+    }
+    long retrieverNanos = System.nanoTime() - start;
+
+    for (int i = 0; i < files.size(); i++) {
+      assertTrue(
+          files.get(i).getName(), parsedDurations[i] != RecordingIndex.Entry.DURATION_UNKNOWN);
+      assertEquals(
+          files.get(i).getName(),
+          retrievedDurations[i],
+          parsedDurations[i],
+          DURATION_TOLERANCE_MS);
+    }
+    assertTrue(
+        String.format(
+            Locale.US,
+            "DurationParser took %d us, MediaMetadataRetriever %d us",
+            parserNanos / 1000,
+            retrieverNanos / 1000),
+        parserNanos < retrieverNanos);
+  }
+
+  private static long retrieveDuration(File file) {
+    @SuppressWarnings("java:S2095")
+    MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+    try {
+      mmr.setDataSource(file.getPath());
+      return Long.parseLong(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+    } finally {
+      mmr.release();
+    }
+  }
+
+  // Encodes a mono 440 Hz tone, writing every encoded frame to both files
+  private static void encodeSine(int sampleCount, File adtsFile, File mp4File) throws IOException {
+    MediaFormat format =
+        MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, SAMPLE_RATE, 1);
+    format.setInteger(
+        MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+    format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+    MediaCodec codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+    MediaMuxer muxer =
+        new MediaMuxer(mp4File.getPath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    try (FileOutputStream adtsOut = new FileOutputStream(adtsFile)) {
+      codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+      codec.start();
+
+      MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+      int trackIndex = -1;
+      int samplesQueued = 0;
+      boolean inputDone = false;
+      boolean outputDone = false;
+      while (!outputDone) {
+        if (!inputDone) {
+          int inputIndex = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+          if (inputIndex >= 0) {
+            ByteBuffer input = codec.getInputBuffer(inputIndex);
+            int samples = Math.min(input.remaining() / 2, sampleCount - samplesQueued);
+            long presentationTimeUs = samplesQueued * 1_000_000L / SAMPLE_RATE;
+            for (int i = 0; i < samples; i++) {
+              double phase = 2 * Math.PI * 440 * (samplesQueued + i) / SAMPLE_RATE;
+              short sample = (short) (Math.sin(phase) * Short.MAX_VALUE / 4);
+              input.put((byte) sample);
+              input.put((byte) (sample >> 8));
+            }
+            samplesQueued += samples;
+            inputDone = samplesQueued == sampleCount;
+            codec.queueInputBuffer(
+                inputIndex,
+                0,
+                samples * 2,
+                presentationTimeUs,
+                inputDone ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
+          }
+        }
+
+        int outputIndex = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+        if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+          trackIndex = muxer.addTrack(codec.getOutputFormat());
+          muxer.start();
+        } else if (outputIndex >= 0) {
+          ByteBuffer output = codec.getOutputBuffer(outputIndex);
+          if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0) {
+            byte[] frame = new byte[info.size];
+            output.position(info.offset);
+            output.get(frame);
+            adtsOut.write(createAdtsHeader(frame.length));
+            adtsOut.write(frame);
+            output.position(info.offset);
+            muxer.writeSampleData(trackIndex, output, info);
+          }
+          codec.releaseOutputBuffer(outputIndex, false);
+          outputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+        }
+      }
+      muxer.stop();
+    } finally {
+      codec.release();
+      muxer.release();
+    }
+  }
+
+  // AAC LC, mono, no CRC
+  private static byte[] createAdtsHeader(int payloadLength) {
+    int frameLength = payloadLength + 7;
+    return new byte[] {
+      (byte) 0xFF,
+      (byte) 0xF1,
+      (byte) (1 << 6 | SAMPLE_RATE_INDEX_44100 << 2),
+      (byte) (1 << 6 | frameLength >> 11),
+      (byte) (frameLength >> 3),
+      (byte) ((frameLength & 0x7) << 5 | 0x1F),
+      (byte) 0xFC
+    };
+  }
+}
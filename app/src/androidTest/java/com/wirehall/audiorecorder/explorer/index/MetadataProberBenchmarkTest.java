@@ -0,0 +1,132 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/** Measures a cold scan of many recordings with one worker thread and with one per core. */
+@RunWith(AndroidJUnit4.class)
+public class MetadataProberBenchmarkTest {
+  private static final int BENCHMARK_FILE_COUNT = 5000;
+  private static final int SYNTHETIC_FILE_SIZE = 16 * 1024;
+  // The best of a few runs, to keep the page cache and the JIT out of the comparison
+  private static final int BENCHMARK_RUNS = 3;
+  private static final double MIN_SPEEDUP = 1.3;
+
+  private File directory;
+
+  @Before
+  public void setUp() {
+    File cacheDir = InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir();
+    directory = new File(cacheDir, "metadata_prober_benchmark");
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void test_benchmark_cold_scan() throws IOException, InterruptedException {
+    int maxThreads = MetadataProber.getDefaultThreadCount();
+    assumeTrue("Needs more than one core", maxThreads > 1);
+    List<File> files = createSyntheticRecordings(BENCHMARK_FILE_COUNT);
+
+    long[] expected = new long[files.size()];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i * 1000L;
+    }
+    long singleThreadNanos = measure(1, files, expected);
+    long multiThreadNanos = measure(maxThreads, files, expected);
+
+    double speedup = (double) singleThreadNanos / multiThreadNanos;
+    assertTrue(
+        String.format(
+            Locale.US, "%d threads are only %.2f times faster than one", maxThreads, speedup),
+        speedup >= MIN_SPEEDUP);
+  }
+
+  private long measure(int threadCount, List<File> files, long[] expected)
+      throws InterruptedException {
+    MetadataProber metadataProber = new MetadataProber(threadCount);
+    try {
+      long bestNanos = Long.MAX_VALUE;
+      for (int run = 0; run < BENCHMARK_RUNS; run++) {
+        long start = System.nanoTime();
+        long[] durations = metadataProber.probeAll(files, this::probeSynthetic);
+        bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        assertArrayEquals(expected, durations);
+      }
+      return bestNanos;
+    } finally {
+      metadataProber.shutdown();
+    }
+  }
+
+  // Files with a fake header holding the duration, followed by pseudo random payload
+  private List<File> createSyntheticRecordings(int count) throws IOException {
+    assertTrue(directory.isDirectory() || directory.mkdirs());
+    byte[] payload = new byte[SYNTHETIC_FILE_SIZE];
+    List<File> files = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      long seed = i * 6364136223846793005L + 1442695040888963407L;
+      for (int j = 0; j < payload.length; j++) {
+        seed = seed * 6364136223846793005L + 1442695040888963407L;
+        payload[j] = (byte) (seed >>> 56);
+      }
+      long duration = i * 1000L;
+      for (int j = 0; j < 8; j++) {
+        payload[j] = (byte) (duration >>> (56 - j * 8));
+      }
+      File file = new File(directory, String.format(Locale.US, "rec_%05d.m4a", i));
+      try (FileOutputStream out = new FileOutputStream(file)) {
+        out.write(payload);
+      }
+      files.add(file);
+    }
+    return files;
+  }
+
+  // Reads the whole file and walks it like a container parser would, to cost both I/O and CPU
+  private long probeSynthetic(File file) {
+    byte[] content = new byte[SYNTHETIC_FILE_SIZE];
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      randomAccessFile.readFully(content);
+    } catch (IOException e) {
+      return RecordingIndex.Entry.DURATION_UNKNOWN;
+    }
+    long checksum = 0;
+    for (int round = 0; round < 4; round++) {
+      for (byte b : content) {
+        checksum = checksum * 31 + b;
+      }
+    }
+    long duration = 0;
+    for (int j = 0; j < 8; j++) {
+      duration = (duration << 8) | (content[j] & 0xFF);
+    }
+    return checksum == Long.MIN_VALUE ? RecordingIndex.Entry.DURATION_UNKNOWN : duration;
+  }
+}
@@ -4,6 +4,7 @@ import android.app.Application;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.os.Build;
+import android.os.StrictMode;
 
 public class App extends Application {
   public static final String CHANNEL_ID = "AudioRecorderServiceChannel";
@@ -12,6 +13,19 @@ public class App extends Application {
   public void onCreate() {
     super.onCreate();
     createNotificationChannel();
+    if (BuildConfig.DEBUG) {
+      enableStrictMode();
+    }
+  }
+
+  // The disk accesses made on the UI thread are logged, they belong on the IoExecutor
+  private static void enableStrictMode() {
+    StrictMode.setThreadPolicy(
+        new StrictMode.ThreadPolicy.Builder()
+            .detectDiskReads()
+            .detectDiskWrites()
+            .penaltyLog()
+            .build());
   }
 
   private void createNotificationChannel() {
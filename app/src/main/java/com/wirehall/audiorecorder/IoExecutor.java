@@ -0,0 +1,260 @@
+package com.wirehall.audiorecorder;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This is a singleton class running the disk work of the app on a small shared pool of threads,
+ * so that nothing touches the disk on the UI thread. The queued tasks run by priority, then in the
+ * order they were queued, and the thread priority follows the priority of the running task. The
+ * queue depth and the wait and run times are tracked per priority and dumped with the activity.
+ *
+ * <p>The user-blocking tasks have a thread of their own, so a long scan and a bulk operation
+ * running on the shared threads never delay a dialog or a share.
+ *
+ * <p>The work which must run in order, e.g. the bulk file operations, is queued on a sequence from
+ * {@link #newSequence(Priority)}, whose tasks run one at a time on the threads of the pool.
+ */
+public class IoExecutor {
+  // Enough for a scan and a bulk operation running while the rows are updated
+  private static final int THREAD_COUNT = 3;
+  private static final int KEEP_ALIVE_SECONDS = 10;
+
+  private static IoExecutor ioExecutor;
+
+  private final ThreadPoolExecutor executor;
+  // Reserved for the user-blocking tasks, which are short
+  private final ThreadPoolExecutor userBlockingExecutor;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final AtomicLong sequence = new AtomicLong();
+  private final Metrics[] metrics = new Metrics[Priority.values().length];
+
+  private IoExecutor() {
+    AtomicInteger threadCount = new AtomicInteger();
+    executor = createExecutor(THREAD_COUNT, "IoExecutor-", threadCount);
+    userBlockingExecutor = createExecutor(1, "IoExecutor-user-", threadCount);
+    for (int i = 0; i < metrics.length; i++) {
+      metrics[i] = new Metrics();
+    }
+  }
+
+  private static ThreadPoolExecutor createExecutor(
+      int threadCount, String threadName, AtomicInteger threadNumber) {
+    ThreadPoolExecutor threadPoolExecutor =
+        new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            runnable -> new Thread(runnable, threadName + threadNumber.incrementAndGet()));
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+    return threadPoolExecutor;
+  }
+
+  /** @return The singleton instance of IoExecutor */
+  public static synchronized IoExecutor getInstance() {
+    if (ioExecutor == null) {
+      ioExecutor = new IoExecutor();
+    }
+    return ioExecutor;
+  }
+
+  /**
+   * @param priority The priority of the task
+   * @param task The disk work
+   */
+  public void execute(Priority priority, Runnable task) {
+    ThreadPoolExecutor priorityExecutor =
+        priority == Priority.USER_BLOCKING ? userBlockingExecutor : executor;
+    Metrics priorityMetrics = metrics[priority.ordinal()];
+    synchronized (priorityMetrics) {
+      priorityMetrics.queuedCount++;
+      priorityMetrics.maxQueueDepth =
+          Math.max(priorityMetrics.maxQueueDepth, priorityExecutor.getQueue().size() + 1);
+    }
+    priorityExecutor.execute(new Task(priority, sequence.getAndIncrement(), task));
+  }
+
+  /**
+   * @param priority The priority of the task
+   * @param task The disk work, returning its result
+   * @param callback Invoked on the UI thread with the result of the task
+   * @param <T> The type of the result
+   */
+  public <T> void execute(Priority priority, Supplier<T> task, Consumer<T> callback) {
+    execute(
+        priority,
+        () -> {
+          T result = task.get();
+          mainHandler.post(() -> callback.accept(result));
+        });
+  }
+
+  /**
+   * @param priority The priority of the tasks of the sequence
+   * @return An executor running its tasks one at a time, in the order they were queued
+   */
+  public Executor newSequence(Priority priority) {
+    return new Sequence(priority);
+  }
+
+  /**
+   * Dumps the metrics of the executor
+   *
+   * @param prefix Prefix of every line
+   * @param writer Writer used for the output
+   */
+  public void dump(String prefix, PrintWriter writer) {
+    writer.print(prefix);
+    writer.println(
+        "I/O executor: queued="
+            + executor.getQueue().size()
+            + " user-blocking queued="
+            + userBlockingExecutor.getQueue().size());
+    for (Priority priority : Priority.values()) {
+      Metrics priorityMetrics = metrics[priority.ordinal()];
+      synchronized (priorityMetrics) {
+        long completedCount = Math.max(priorityMetrics.completedCount, 1);
+        writer.print(prefix);
+        writer.println(
+            String.format(
+                Locale.US,
+                "  %s: tasks=%d completed=%d maxDepth=%d"
+                    + " wait avg=%dms max=%dms run avg=%dms max=%dms",
+                priority,
+                priorityMetrics.queuedCount,
+                priorityMetrics.completedCount,
+                priorityMetrics.maxQueueDepth,
+                TimeUnit.NANOSECONDS.toMillis(priorityMetrics.totalWaitNanos / completedCount),
+                TimeUnit.NANOSECONDS.toMillis(priorityMetrics.maxWaitNanos),
+                TimeUnit.NANOSECONDS.toMillis(priorityMetrics.totalRunNanos / completedCount),
+                TimeUnit.NANOSECONDS.toMillis(priorityMetrics.maxRunNanos)));
+      }
+    }
+  }
+
+  /** The priorities of the tasks, from the most to the least urgent */
+  public enum Priority {
+    /** The user waits for the result, e.g. a dialog is shown once the task is done */
+    USER_BLOCKING(Process.THREAD_PRIORITY_DEFAULT),
+    /** The result is shown when done, e.g. the rows of the file list are updated */
+    VISIBLE(Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_LESS_FAVORABLE),
+    /** Nobody waits for the result, e.g. a cache is saved */
+    BACKGROUND(Process.THREAD_PRIORITY_BACKGROUND);
+
+    private final int threadPriority;
+
+    Priority(int threadPriority) {
+      this.threadPriority = threadPriority;
+    }
+  }
+
+  // Guarded by the instance
+  private static class Metrics {
+    private long queuedCount;
+    private long completedCount;
+    private int maxQueueDepth;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalRunNanos;
+    private long maxRunNanos;
+  }
+
+  private class Task implements Runnable, Comparable<Task> {
+    private final Priority priority;
+    private final long sequence;
+    private final Runnable runnable;
+    private final long queuedNanos = System.nanoTime();
+
+    private Task(Priority priority, long sequence, Runnable runnable) {
+      this.priority = priority;
+      this.sequence = sequence;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+      long startNanos = System.nanoTime();
+      Process.setThreadPriority(priority.threadPriority);
+      try {
+        runnable.run();
+      } finally {
+        long runNanos = System.nanoTime() - startNanos;
+        long waitNanos = startNanos - queuedNanos;
+        Metrics priorityMetrics = metrics[priority.ordinal()];
+        synchronized (priorityMetrics) {
+          priorityMetrics.completedCount++;
+          priorityMetrics.totalWaitNanos += waitNanos;
+          priorityMetrics.maxWaitNanos = Math.max(priorityMetrics.maxWaitNanos, waitNanos);
+          priorityMetrics.totalRunNanos += runNanos;
+          priorityMetrics.maxRunNanos = Math.max(priorityMetrics.maxRunNanos, runNanos);
+        }
+      }
+    }
+
+    @Override
+    public int compareTo(@NonNull Task other) {
+      if (priority != other.priority) {
+        return priority.compareTo(other.priority);
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+
+  // Queues its next task on the pool once the previous one is done
+  private class Sequence implements Executor {
+    private final Priority priority;
+    // Guarded by this
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private boolean isRunning;
+
+    private Sequence(Priority priority) {
+      this.priority = priority;
+    }
+
+    @Override
+    public synchronized void execute(@NonNull Runnable task) {
+      tasks.add(task);
+      if (!isRunning) {
+        isRunning = true;
+        IoExecutor.this.execute(priority, this::runNext);
+      }
+    }
+
+    private void runNext() {
+      Runnable task;
+      synchronized (this) {
+        task = tasks.poll();
+      }
+      try {
+        if (task != null) {
+          task.run();
+        }
+      } finally {
+        synchronized (this) {
+          if (tasks.isEmpty()) {
+            isRunning = false;
+          } else {
+            IoExecutor.this.execute(priority, this::runNext);
+          }
+        }
+      }
+    }
+  }
+}
@@ -35,13 +35,19 @@ import androidx.preference.PreferenceManager;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.navigation.NavigationView;
 import com.wirehall.audiorecorder.explorer.FileListFragment;
+import com.wirehall.audiorecorder.explorer.ScanScheduler;
 import com.wirehall.audiorecorder.explorer.model.Recording;
 import com.wirehall.audiorecorder.player.MediaPlayerController;
 import com.wirehall.audiorecorder.recorder.AudioRecorderLocalService;
 import com.wirehall.audiorecorder.recorder.MediaRecorderState;
 import com.wirehall.audiorecorder.recorder.RecordingController;
+import com.wirehall.audiorecorder.visualizer.FrameStats;
 import com.wirehall.audiorecorder.visualizer.VisualizerFragment;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
 import static android.Manifest.permission.RECORD_AUDIO;
 import static android.Manifest.permission.WRITE_EXTERNAL_STORAGE;
 
@@ -52,6 +58,7 @@ public class MainActivity extends AppCompatActivity
 
   public static final String KEY_PREF_RECORDING_STORAGE_PATH = "recording_storage_path";
   private static final String TAG = MainActivity.class.getName();
+  private static final String DUMP_ARG_RESET_FRAME_STATS = "--reset-frame-stats";
 
   private BottomNavigationView navigationView;
 
@@ -306,6 +313,25 @@ public class MainActivity extends AppCompatActivity
     super.onDestroy();
   }
 
+  /**
+   * Appends the visualizer frame statistics, the recording scan metrics and the I/O executor
+   * metrics to {@code adb shell dumpsys activity com.wirehall.audiorecorder/.MainActivity}, the
+   * frame statistics are cleared when the {@code --reset-frame-stats} argument is given.
+   */
+  @Override
+  public void dump(
+      @NonNull String prefix, FileDescriptor fd, @NonNull PrintWriter writer, String[] args) {
+    super.dump(prefix, fd, writer, args);
+    FrameStats.dumpAll(prefix, writer);
+    ScanScheduler.getInstance().dump(prefix, writer);
+    IoExecutor.getInstance().dump(prefix, writer);
+    if (args != null && Arrays.asList(args).contains(DUMP_ARG_RESET_FRAME_STATS)) {
+      FrameStats.resetAll();
+      writer.print(prefix);
+      writer.println("Visualizer frame stats cleared");
+    }
+  }
+
   @Override
   public boolean onNavigationItemSelected(@NonNull MenuItem item) {
     DrawerLayout drawerLayout = findViewById(R.id.drawer_layout);
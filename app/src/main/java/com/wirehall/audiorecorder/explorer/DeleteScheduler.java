@@ -0,0 +1,215 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.preference.PreferenceManager;
+
+import com.wirehall.audiorecorder.IoExecutor;
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * This is a singleton class deferring the deletion of the recordings for an undo window. A deleted
+ * recording is removed from the index right away, which hides its row, and is skipped by the scans
+ * while it is pending. Once the window of the latest deletion expires, all the pending recordings
+ * are purged together as one {@link FileBatch} on the {@link FileOperationQueue}, so a mass
+ * deletion costs one index update and one listing of the peak cache. The pending recordings are
+ * persisted, so the deletions interrupted by the end of the process are purged on the next start
+ * instead of listed again. All the methods are invoked on the UI thread.
+ */
+public class DeleteScheduler {
+  /** The time a deletion can be undone for */
+  public static final int UNDO_WINDOW_MILLIS = 4000;
+
+  private static final String TAG = DeleteScheduler.class.getName();
+  private static final String KEY_PREF_PENDING_DELETIONS = "pref_pending_deletions";
+  private static DeleteScheduler deleteScheduler;
+
+  // Read by the scans on their own threads
+  private final Set<String> pendingPaths = ConcurrentHashMap.newKeySet();
+  private final List<Deletion> deletions = new ArrayList<>();
+  // The index is hidden, restored and purged in the order of the requests
+  private final Executor executor =
+      IoExecutor.getInstance().newSequence(IoExecutor.Priority.VISIBLE);
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Runnable purgeRunnable = this::purge;
+  private Context appContext;
+
+  private DeleteScheduler() {}
+
+  /** @return The singleton instance of DeleteScheduler */
+  public static synchronized DeleteScheduler getInstance() {
+    if (deleteScheduler == null) {
+      deleteScheduler = new DeleteScheduler();
+    }
+    return deleteScheduler;
+  }
+
+  /**
+   * Hides the recordings and deletes them after the undo window
+   *
+   * @param context Context required for internal operations
+   * @param paths The paths of the deleted recordings
+   * @return The deletion, used to undo it
+   */
+  public Deletion schedule(Context context, List<String> paths) {
+    appContext = context.getApplicationContext();
+    final Deletion deletion = new Deletion(paths);
+    pendingPaths.addAll(deletion.paths);
+    deletions.add(deletion);
+    final RecordingIndex recordingIndex = RecordingIndex.getInstance(appContext);
+    executor.execute(
+        () -> {
+          // The metadata is kept to restore the rows without probing the files again
+          for (String path : deletion.paths) {
+            RecordingIndex.Entry entry = recordingIndex.getEntry(path);
+            if (entry != null) {
+              deletion.entries.add(entry);
+            }
+          }
+          recordingIndex.update(Collections.emptyList(), deletion.paths);
+          savePendingPaths();
+        });
+    // The deletions made in a row are purged together
+    mainHandler.removeCallbacks(purgeRunnable);
+    mainHandler.postDelayed(purgeRunnable, UNDO_WINDOW_MILLIS);
+    return deletion;
+  }
+
+  /**
+   * Shows the recordings again, unless they were purged already
+   *
+   * @param deletion The deletion to undo
+   * @return Whether the deletion was undone
+   */
+  public boolean undo(final Deletion deletion) {
+    if (!deletions.remove(deletion)) {
+      return false;
+    }
+    final RecordingIndex recordingIndex = RecordingIndex.getInstance(appContext);
+    executor.execute(
+        () -> {
+          recordingIndex.update(deletion.entries, Collections.emptyList());
+          pendingPaths.removeAll(deletion.paths);
+          savePendingPaths();
+        });
+    if (deletions.isEmpty()) {
+      mainHandler.removeCallbacks(purgeRunnable);
+    }
+    return true;
+  }
+
+  /** Purges the pending recordings now, e.g. when the list is left and nothing can be undone */
+  public void flush() {
+    mainHandler.removeCallbacks(purgeRunnable);
+    purge();
+  }
+
+  /**
+   * Purges the recordings whose deletion was interrupted by the end of the process, they are
+   * hidden from the scans until they are purged
+   *
+   * @param context Context required for internal operations
+   */
+  public void purgeInterrupted(Context context) {
+    appContext = context.getApplicationContext();
+    executor.execute(
+        () -> {
+          Set<String> savedPaths =
+              PreferenceManager.getDefaultSharedPreferences(appContext)
+                  .getStringSet(KEY_PREF_PENDING_DELETIONS, Collections.emptySet());
+          List<String> paths = new ArrayList<>();
+          for (String path : savedPaths) {
+            if (pendingPaths.add(path)) {
+              paths.add(path);
+            }
+          }
+          if (!paths.isEmpty()) {
+            Log.d(TAG, "Purging interrupted deletions: " + paths.size());
+            submitPurge(appContext, paths);
+          }
+        });
+  }
+
+  /**
+   * Invoked by the scans, which must not index the pending recordings again
+   *
+   * @param file A recording file
+   * @return Whether the recording is deleted and waiting to be purged
+   */
+  public boolean isPending(File file) {
+    return !pendingPaths.isEmpty() && pendingPaths.contains(file.getPath());
+  }
+
+  private void purge() {
+    if (deletions.isEmpty()) {
+      return;
+    }
+    final List<String> paths = new ArrayList<>();
+    for (Deletion deletion : deletions) {
+      paths.addAll(deletion.paths);
+    }
+    deletions.clear();
+    final Context context = appContext;
+    // Queued after the hiding of the rows, the purge removes the peaks and the index entries left
+    executor.execute(() -> submitPurge(context, paths));
+  }
+
+  private void submitPurge(Context context, final List<String> paths) {
+    FileOperationQueue.getInstance()
+        .submit(
+            context,
+            new FileBatch(FileBatch.Operation.DELETE, paths, null),
+            new FileOperationQueue.Listener() {
+              @Override
+              public void onProgress(int processedCount, int totalCount) {
+                // Purged in the background, nothing is shown
+              }
+
+              @Override
+              public void onFinished(FileBatch batch, FileBatch.Result result) {
+                if (!result.getFailedPaths().isEmpty()) {
+                  // Listed again by the next scan
+                  Log.e(TAG, "Recordings not deleted: " + result.getFailedPaths());
+                }
+                pendingPaths.removeAll(paths);
+                executor.execute(DeleteScheduler.this::savePendingPaths);
+              }
+            });
+  }
+
+  // Invoked on the executor, the recordings not purged yet
+  private void savePendingPaths() {
+    PreferenceManager.getDefaultSharedPreferences(appContext)
+        .edit()
+        .putStringSet(KEY_PREF_PENDING_DELETIONS, new HashSet<>(pendingPaths))
+        .apply();
+  }
+
+  /** Recordings deleted together, which are restored together on undo */
+  public static class Deletion {
+    private final List<String> paths;
+    // Only accessed by the tasks of the scheduler, which run one at a time
+    private final List<RecordingIndex.Entry> entries = new ArrayList<>();
+
+    private Deletion(List<String> paths) {
+      this.paths = new ArrayList<>(paths);
+    }
+
+    /** @return The number of deleted recordings */
+    public int getCount() {
+      return paths.size();
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A file operation applied to many recordings at once, e.g. the recordings selected in the file
+ * list. The files are processed one at a time and the cancellation is polled between them, so a
+ * cancelled batch stops after the current file and its result holds the files processed so far.
+ * Nothing else is updated by the batch, the caller applies the whole result at once.
+ */
+public class FileBatch {
+  private static final String TAG = FileBatch.class.getName();
+
+  private final Operation operation;
+  private final List<String> paths;
+  @Nullable private final File targetDirectory;
+
+  /**
+   * @param operation The operation applied to every file
+   * @param paths The paths of the files
+   * @param targetDirectory The directory the files are moved or copied to, null for a delete
+   */
+  public FileBatch(Operation operation, List<String> paths, @Nullable File targetDirectory) {
+    if (operation != Operation.DELETE && targetDirectory == null) {
+      throw new IllegalArgumentException("A target directory is required to " + operation);
+    }
+    this.operation = operation;
+    this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+    this.targetDirectory = targetDirectory;
+  }
+
+  public Operation getOperation() {
+    return operation;
+  }
+
+  public List<String> getPaths() {
+    return paths;
+  }
+
+  @Nullable
+  public File getTargetDirectory() {
+    return targetDirectory;
+  }
+
+  /**
+   * @param isCancelled Polled before every file
+   * @param progressListener Notified on the calling thread after every file
+   * @return The files which were processed, and those which failed
+   */
+  @NonNull
+  public Result run(BooleanSupplier isCancelled, ProgressListener progressListener) {
+    Result result = new Result();
+    if (targetDirectory != null && !targetDirectory.isDirectory() && !targetDirectory.mkdirs()) {
+      Log.e(TAG, "Unable to create the directory " + targetDirectory);
+      result.failedPaths.addAll(paths);
+      return result;
+    }
+
+    for (int i = 0; i < paths.size(); i++) {
+      if (isCancelled.getAsBoolean()) {
+        result.isCancelled = true;
+        break;
+      }
+      String path = paths.get(i);
+      try {
+        File target = process(new File(path));
+        result.targets.put(path, target != null ? target.getPath() : null);
+      } catch (IOException e) {
+        Log.e(TAG, "Unable to " + operation + " " + path + ": " + e.getMessage());
+        result.failedPaths.add(path);
+      }
+      progressListener.onProgress(i + 1, paths.size());
+    }
+    return result;
+  }
+
+  @Nullable
+  private File process(File file) throws IOException {
+    switch (operation) {
+      case DELETE:
+        if (!file.delete() && file.exists()) {
+          throw new IOException("Not deleted");
+        }
+        return null;
+      case MOVE:
+        {
+          if (file.getParentFile() != null
+              && file.getParentFile().getPath().equals(targetDirectory.getPath())) {
+            // Already in the target directory, it is not renamed to a free name
+            return file;
+          }
+          File target = getAvailableTarget(file);
+          // A rename on the same volume, a copy to another one
+          if (!file.renameTo(target)) {
+            Files.copy(file.toPath(), target.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+            try {
+              Files.delete(file.toPath());
+            } catch (IOException e) {
+              // The file stays where it was, no unindexed copy is left behind
+              Files.deleteIfExists(target.toPath());
+              throw e;
+            }
+          }
+          return target;
+        }
+      default:
+        {
+          File target = getAvailableTarget(file);
+          // The modification time is kept, so the indexed metadata stays valid for the copy
+          Files.copy(file.toPath(), target.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+          return target;
+        }
+    }
+  }
+
+  // The existing files of the target directory are never overwritten, a number is appended
+  private File getAvailableTarget(File file) {
+    String fileName = file.getName();
+    int extensionStart = fileName.lastIndexOf('.');
+    String name = extensionStart > 0 ? fileName.substring(0, extensionStart) : fileName;
+    String extension = fileName.substring(name.length());
+    File target = new File(targetDirectory, fileName);
+    for (int i = 1; target.exists(); i++) {
+      target = new File(targetDirectory, name + " (" + i + ")" + extension);
+    }
+    return target;
+  }
+
+  /** The operations which can be applied to a batch of files */
+  public enum Operation {
+    DELETE,
+    MOVE,
+    COPY
+  }
+
+  /** Listener notified of the progress of a batch */
+  public interface ProgressListener {
+    /**
+     * @param processedCount The number of files processed so far, including the failed ones
+     * @param totalCount The number of files of the batch
+     */
+    void onProgress(int processedCount, int totalCount);
+  }
+
+  /** The outcome of a batch */
+  public static class Result {
+    // In the order of the batch
+    private final Map<String, String> targets = new LinkedHashMap<>();
+    private final List<String> failedPaths = new ArrayList<>();
+    private boolean isCancelled;
+
+    /**
+     * @return The target paths of the processed files keyed by their source path, the targets of
+     *     the deleted files are null
+     */
+    public Map<String, String> getTargets() {
+      return targets;
+    }
+
+    /** @return The paths of the files which could not be processed */
+    public List<String> getFailedPaths() {
+      return failedPaths;
+    }
+
+    /** @return Whether the batch was cancelled before all the files were processed */
+    public boolean isCancelled() {
+      return isCancelled;
+    }
+  }
+}
@@ -2,8 +2,14 @@ package com.wirehall.audiorecorder.explorer;
 
 import android.view.View;
 
+import com.wirehall.audiorecorder.explorer.model.Recording;
+import com.wirehall.audiorecorder.explorer.model.RecordingFolder;
+
 /** Interface used to define the click listener for list item */
 public interface FileBrowserOperationsListener {
-  void onClick(View view, int position);
-  void onDelete(int position);
+  void onClick(View view, Recording recording);
+  void onDelete(Recording recording);
+  void onRename(Recording sourceRecording, Recording renamedRecording);
+  void onFolderClick(RecordingFolder folder);
+  void onCheckedChanged(int checkedCount);
 }
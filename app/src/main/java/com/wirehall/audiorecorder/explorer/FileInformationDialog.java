@@ -35,8 +35,8 @@ public class FileInformationDialog extends Dialog implements View.OnClickListene
                 .getString(
                     R.string.tv_file_info,
                     recording.getName(),
-                    recording.getSizeInString(),
-                    recording.getDurationDetailedInString(),
+                    FileUtils.humanReadableByteCount(recording.getSize(), true),
+                    FileUtils.humanReadableDurationDetailed(getContext(), recording.getDuration()),
                     recording.getPath()),
             HtmlCompat.FROM_HTML_MODE_LEGACY);
     TextView fileInfoTextView = findViewById(R.id.tv_file_info);
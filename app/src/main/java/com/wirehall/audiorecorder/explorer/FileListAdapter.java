@@ -4,109 +4,286 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.net.Uri;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.ListPopupWindow;
 import androidx.core.content.FileProvider;
+import androidx.paging.PagedList;
+import androidx.paging.PagedListAdapter;
 import androidx.preference.PreferenceManager;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.wirehall.audiorecorder.IoExecutor;
 import com.wirehall.audiorecorder.R;
+import com.wirehall.audiorecorder.explorer.model.FileListItem;
 import com.wirehall.audiorecorder.explorer.model.Recording;
+import com.wirehall.audiorecorder.explorer.model.RecordingFolder;
+import com.wirehall.audiorecorder.waveform.WaveformThumbnailCache;
 
 import java.io.File;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import static android.view.ViewGroup.LayoutParams.WRAP_CONTENT;
 import static com.wirehall.audiorecorder.setting.SettingActivity.KEY_PREF_CONFIRM_DELETE;
 
-public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHolder> {
+/**
+ * The rows are paged from the recording index, the rows which are not loaded yet are bound as empty
+ * placeholders. The list updates are diffed on a background thread, so only the rows which
+ * actually changed are re-bound and the scroll position and the item animations are kept. The row
+ * selection and the playing state are tracked by the path of the recording, so they follow the row
+ * when it moves or is paged in again. In library mode the list also has the folder headers, which
+ * collapse or expand their section when clicked.
+ *
+ * <p>A long click on a row starts the selection mode, in which a click checks or unchecks the row
+ * instead of selecting it. The checked rows are also tracked by path, so the selection survives
+ * the paging of the list and is applied to any number of recordings at once.
+ *
+ * <p>The rows show the waveform thumbnails of the {@link WaveformThumbnailCache}, which are only
+ * looked up while binding, the missing ones are rendered in the background.
+ */
+public class FileListAdapter extends PagedListAdapter<FileListItem, RecyclerView.ViewHolder> {
   public static final String INTENT_AUDIO_TYPE = "audio/*";
   private static final String TAG = FileListAdapter.class.getName();
-  private final List<Recording> recordings;
+  // Re-binds only the selection and the playing state of a row
+  private static final Object PAYLOAD_STATE = new Object();
+  private static final int VIEW_TYPE_RECORDING = 0;
+  private static final int VIEW_TYPE_FOLDER = 1;
+
+  private static final DiffUtil.ItemCallback<FileListItem> DIFF_CALLBACK =
+      new DiffUtil.ItemCallback<FileListItem>() {
+        @Override
+        public boolean areItemsTheSame(
+            @NonNull FileListItem oldItem, @NonNull FileListItem newItem) {
+          return oldItem.getClass() == newItem.getClass()
+              && Objects.equals(oldItem.getPath(), newItem.getPath());
+        }
+
+        @Override
+        public boolean areContentsTheSame(
+            @NonNull FileListItem oldItem, @NonNull FileListItem newItem) {
+          if (oldItem instanceof RecordingFolder) {
+            return oldItem.equals(newItem);
+          }
+          Recording oldRecording = (Recording) oldItem;
+          Recording newRecording = (Recording) newItem;
+          return oldRecording.getSize() == newRecording.getSize()
+              && oldRecording.getModifiedDateMilliSec() == newRecording.getModifiedDateMilliSec()
+              && oldRecording.getDuration() == newRecording.getDuration();
+        }
+      };
+
   private final Context context;
   private final FileBrowserOperationsListener fileBrowserOperationsListener;
-  private int selectedRowPosition = RecyclerView.NO_POSITION;
-
-  FileListAdapter(
-      Context context,
-      List<Recording> recordings,
-      FileBrowserOperationsListener fileBrowserOperationsListener) {
+  private final RecordingFormatter recordingFormatter;
+  private final WaveformThumbnailCache waveformThumbnailCache;
+  private final Set<String> checkedPaths = new LinkedHashSet<>();
+  private String selectedPath;
+  private String playingPath;
+
+  FileListAdapter(Context context, FileBrowserOperationsListener fileBrowserOperationsListener) {
+    super(DIFF_CALLBACK);
     this.context = context;
-    this.recordings = recordings;
     this.fileBrowserOperationsListener = fileBrowserOperationsListener;
+    this.recordingFormatter = new RecordingFormatter(context);
+    this.waveformThumbnailCache = WaveformThumbnailCache.getInstance(context);
   }
 
-  public List<Recording> getRecordings() {
-    return new ArrayList<>(recordings);
+  @Override
+  public int getItemViewType(int position) {
+    // The placeholders are bound as empty recording rows
+    return getItem(position) instanceof RecordingFolder ? VIEW_TYPE_FOLDER : VIEW_TYPE_RECORDING;
   }
 
   @NonNull
   @Override
-  public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int position) {
+  public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
     LayoutInflater layoutInflater = LayoutInflater.from(parent.getContext());
+    if (viewType == VIEW_TYPE_FOLDER) {
+      View view = layoutInflater.inflate(R.layout.file_folder_row_layout, parent, false);
+      return new FolderViewHolder(view);
+    }
     View view = layoutInflater.inflate(R.layout.file_row_layout, parent, false);
     return new ViewHolder(view, fileBrowserOperationsListener);
   }
 
   @Override
-  public void onBindViewHolder(@NonNull ViewHolder viewHolder, int position) {
-    // Note: Do not use the passed position parameter. Instead use viewHolder.getAdapterPosition()
-    // as the position sometimes has the wrong value
-    viewHolder.itemView.setSelected(
-        this.selectedRowPosition == viewHolder.getBindingAdapterPosition());
+  public void onBindViewHolder(
+      @NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+    if (payloads.isEmpty()) {
+      onBindViewHolder(holder, position);
+    } else if (holder instanceof ViewHolder) {
+      bindState((ViewHolder) holder, getRecording(holder.getBindingAdapterPosition()));
+    }
+  }
 
-    Recording recording = recordings.get(viewHolder.getBindingAdapterPosition());
-    viewHolder.fileNameTextView.setText(recording.getName());
-    viewHolder.fileSizeTextView.setText(recording.getSizeInString());
-    viewHolder.fileDateModifiedTextView.setText(recording.getModifiedDateInString());
-    viewHolder.fileDurationTextView.setText(recording.getDurationShortInString());
+  @Override
+  public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+    if (holder instanceof FolderViewHolder) {
+      FolderViewHolder folderViewHolder = (FolderViewHolder) holder;
+      RecordingFolder folder = (RecordingFolder) getItem(holder.getBindingAdapterPosition());
+      folderViewHolder.folderNameTextView.setText(folder.getName());
+      folderViewHolder.folderCountTextView.setText(String.valueOf(folder.getRecordingCount()));
+      folderViewHolder.folderExpandImageView.setImageResource(
+          folder.isCollapsed()
+              ? R.drawable.ic_chevron_right_white
+              : R.drawable.ic_expand_more_white);
+      return;
+    }
 
-    if (recording.isPlaying()) {
-      viewHolder.filePlayPauseButton.setImageResource(R.drawable.ic_pause_white);
+    ViewHolder viewHolder = (ViewHolder) holder;
+    // Note: Do not use the passed position parameter. Instead use viewHolder.getAdapterPosition()
+    // as the position sometimes has the wrong value
+    Recording recording = getRecording(viewHolder.getBindingAdapterPosition());
+    if (recording == null) {
+      // Placeholder of a row which is not loaded yet
+      viewHolder.fileNameTextView.setText("");
+      viewHolder.fileSizeTextView.setText("");
+      viewHolder.fileDateModifiedTextView.setText("");
+      viewHolder.fileDurationTextView.setText("");
+      waveformThumbnailCache.unbind(viewHolder.waveformImageView);
     } else {
-      viewHolder.filePlayPauseButton.setImageResource(R.drawable.ic_play_arrow_white);
+      viewHolder.fileNameTextView.setText(recording.getName());
+      viewHolder.fileSizeTextView.setText(recordingFormatter.formatSize(recording.getSize()));
+      viewHolder.fileDateModifiedTextView.setText(
+          recordingFormatter.formatModifiedDate(recording.getModifiedDateMilliSec()));
+      viewHolder.fileDurationTextView.setText(
+          recordingFormatter.formatDuration(recording.getDuration()));
+      waveformThumbnailCache.bind(
+          viewHolder.waveformImageView,
+          recording.getPath(),
+          recording.getSize(),
+          recording.getModifiedDateMilliSec());
     }
+    bindState(viewHolder, recording);
   }
 
   @Override
-  public int getItemCount() {
-    return this.recordings.size();
+  public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+    if (holder instanceof ViewHolder) {
+      // The thumbnail can be reused once no row shows it
+      waveformThumbnailCache.unbind(((ViewHolder) holder).waveformImageView);
+    }
   }
 
   /**
-   * Uses the list passed as a argument to this method for showing in file list view
+   * Renders the thumbnails of the rows about to be scrolled in, the rows which are not loaded yet
+   * are skipped
    *
-   * @param newRecordings The list of recordings to use in file list view
+   * @param fromPosition The first position, inclusive
+   * @param toPosition The last position, exclusive
    */
-  public void updateData(List<Recording> newRecordings) {
-    Log.d(TAG, "Update the file list");
-    resetRowSelection();
-    recordings.clear();
-    recordings.addAll(newRecordings);
-    notifyDataSetChanged();
+  public void prefetchThumbnails(int fromPosition, int toPosition) {
+    PagedList<FileListItem> pagedList = getCurrentList();
+    if (pagedList == null) {
+      return;
+    }
+    for (int i = Math.max(0, fromPosition); i < Math.min(pagedList.size(), toPosition); i++) {
+      FileListItem item = pagedList.get(i);
+      if (item instanceof Recording) {
+        Recording recording = (Recording) item;
+        waveformThumbnailCache.prefetch(
+            recording.getPath(), recording.getSize(), recording.getModifiedDateMilliSec());
+      }
+    }
+  }
+
+  private void bindState(ViewHolder viewHolder, @Nullable Recording recording) {
+    String path = recording != null ? recording.getPath() : null;
+    viewHolder.itemView.setSelected(path != null && path.equals(selectedPath));
+    viewHolder.itemView.setActivated(path != null && checkedPaths.contains(path));
+    if (path != null && path.equals(playingPath)) {
+      viewHolder.filePlayPauseButton.setImageResource(R.drawable.ic_pause_white);
+    } else {
+      viewHolder.filePlayPauseButton.setImageResource(R.drawable.ic_play_arrow_white);
+    }
+  }
+
+  /** @return The path of the selected recording, null if no row is selected */
+  @Nullable
+  public String getSelectedPath() {
+    return selectedPath;
+  }
+
+  /** @param path The path of the recording whose row is selected, null to select none */
+  public void setSelectedPath(@Nullable String path) {
+    if (Objects.equals(selectedPath, path)) {
+      return;
+    }
+    selectedPath = path;
+    notifyStateChanged();
+  }
+
+  /** @param path The path of the recording being played, null if none is played */
+  public void setPlayingPath(@Nullable String path) {
+    if (Objects.equals(playingPath, path)) {
+      return;
+    }
+    playingPath = path;
+    notifyStateChanged();
+  }
+
+  /** @return The paths of the checked recordings, in the order they were checked */
+  public List<String> getCheckedPaths() {
+    return new ArrayList<>(checkedPaths);
+  }
+
+  /** @param paths The paths of the checked recordings, empty to leave the selection mode */
+  public void setCheckedPaths(Collection<String> paths) {
+    checkedPaths.clear();
+    checkedPaths.addAll(paths);
+    notifyStateChanged();
+    fileBrowserOperationsListener.onCheckedChanged(checkedPaths.size());
+  }
+
+  /** @return Whether rows are checked, a click then checks or unchecks a row */
+  public boolean isSelectionMode() {
+    return !checkedPaths.isEmpty();
+  }
+
+  private void toggleChecked(Recording recording) {
+    if (!checkedPaths.remove(recording.getPath())) {
+      checkedPaths.add(recording.getPath());
+    }
+    notifyStateChanged();
+    fileBrowserOperationsListener.onCheckedChanged(checkedPaths.size());
   }
 
   /** Clears any row selection */
   public void resetRowSelection() {
     Log.d(TAG, "Clear the file row selection");
-    int oldSelectedRowPosition = this.selectedRowPosition;
-    this.selectedRowPosition = RecyclerView.NO_POSITION;
-    if (oldSelectedRowPosition > -1) notifyItemChanged(oldSelectedRowPosition);
+    selectedPath = null;
+    notifyStateChanged();
+  }
+
+  /** @return The recording at the position, null for a placeholder or a folder header */
+  @Nullable
+  private Recording getRecording(int position) {
+    FileListItem item = getItem(position);
+    return item instanceof Recording ? (Recording) item : null;
+  }
+
+  // Only the bound rows are re-bound, which does not depend on the size of the list
+  private void notifyStateChanged() {
+    notifyItemRangeChanged(0, getItemCount(), PAYLOAD_STATE);
   }
 
   /**
@@ -120,6 +297,7 @@ public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHo
     private final TextView fileDurationTextView;
     private final ImageButton filePlayPauseButton;
     private final ImageButton fileOptionsMenuButton;
+    private final ImageView waveformImageView;
     private final FileBrowserOperationsListener fileBrowserOperationsListener;
 
     private ViewHolder(
@@ -128,6 +306,17 @@ public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHo
       this.fileBrowserOperationsListener = fileBrowserOperationsListener;
       RelativeLayout fileInfoAreaView = itemView.findViewById(R.id.rl_file_info_area);
       fileInfoAreaView.setOnClickListener(this);
+      fileInfoAreaView.setOnLongClickListener(
+          v -> {
+            int position = getBindingAdapterPosition();
+            Recording recording =
+                position != RecyclerView.NO_POSITION ? getRecording(position) : null;
+            if (recording == null) {
+              return false;
+            }
+            toggleChecked(recording);
+            return true;
+          });
 
       // Note: you can also use the setOnClickListener on below child views
       // and perform the actions in onClick method using the instanceof check
@@ -136,6 +325,7 @@ public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHo
       fileSizeTextView = itemView.findViewById(R.id.tv_file_size);
       fileDateModifiedTextView = itemView.findViewById(R.id.tv_file_date_modified);
       fileDurationTextView = itemView.findViewById(R.id.tv_file_duration);
+      waveformImageView = itemView.findViewById(R.id.iv_file_waveform);
 
       filePlayPauseButton = itemView.findViewById(R.id.ib_file_play_pause);
       filePlayPauseButton.setOnClickListener(this);
@@ -179,15 +369,19 @@ public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHo
                   if (adapterPosition == RecyclerView.NO_POSITION) {
                     return;
                   }
+                  final Recording recording = getRecording(adapterPosition);
+                  if (recording == null) {
+                    return;
+                  }
 
                   if (option.equals(fileMenuOptionDelete)) {
-                    handleDeleteClick(deleteDialogTitle, window, adapterPosition);
+                    handleDeleteClick(deleteDialogTitle, window, recording);
                   } else if (option.equals(fileMenuOptionInfo)) {
-                    handleInfoClick(window, adapterPosition);
+                    handleInfoClick(window, recording);
                   } else if (option.equals(fileMenuOptionRename)) {
-                    handleRenameClick(window, adapterPosition);
+                    handleRenameClick(window, recording);
                   } else if (option.equals(fileMenuOptionShare)) {
-                    handleShareClick(window, adapterPosition);
+                    handleShareClick(window, recording);
                   }
                 });
             window.show();
@@ -195,13 +389,13 @@ public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHo
     }
 
     private void handleDeleteClick(
-        String deleteDialogTitle, ListPopupWindow window, int adapterPosition) {
+        String deleteDialogTitle, ListPopupWindow window, Recording recording) {
       Log.d(TAG, "Clicked on the file row delete option menu");
 
       final String deleteDialogMessage =
           context
               .getResources()
-              .getString(R.string.dialog_delete_message, recordings.get(adapterPosition).getPath());
+              .getString(R.string.dialog_delete_message, recording.getPath());
       SharedPreferences sharedPref = PreferenceManager.getDefaultSharedPreferences(context);
       boolean confirmDelete = sharedPref.getBoolean(KEY_PREF_CONFIRM_DELETE, true);
       if (confirmDelete) {
@@ -210,45 +404,53 @@ public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHo
             .setTitle(deleteDialogTitle)
             .setMessage(deleteDialogMessage)
             .setIcon(R.drawable.ic_warning_black)
-            .setPositiveButton(android.R.string.ok, (dialog, which) -> deleteFile(adapterPosition))
+            .setPositiveButton(android.R.string.ok, (dialog, which) -> deleteFile(recording))
             .setNegativeButton(android.R.string.cancel, null)
             .show();
       } else {
-        deleteFile(adapterPosition);
+        deleteFile(recording);
       }
       window.dismiss();
     }
 
-    private void handleInfoClick(ListPopupWindow window, int adapterPosition) {
+    private void handleInfoClick(ListPopupWindow window, Recording recording) {
       Log.d(TAG, "Clicked on the file row info option menu");
 
       FileInformationDialog fileInformationDialog =
-          new FileInformationDialog(context, recordings.get(adapterPosition));
+          new FileInformationDialog(context, recording);
       window.dismiss();
       fileInformationDialog.show();
     }
 
-    private void handleShareClick(ListPopupWindow window, int adapterPosition) {
+    private void handleShareClick(ListPopupWindow window, Recording recording) {
       Log.d(TAG, "Clicked on the file row share option menu");
 
-      Uri uri =
-          FileProvider.getUriForFile(
-              context,
-              "com.wirehall.fileprovider",
-              new File(recordings.get(adapterPosition).getPath()));
-      Intent share = new Intent(Intent.ACTION_SEND);
-      share.setType(INTENT_AUDIO_TYPE);
-      share.putExtra(Intent.EXTRA_STREAM, uri);
-      share.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
       window.dismiss();
-      String shareRec = context.getResources().getString(R.string.share_recording);
-      context.startActivity(Intent.createChooser(share, shareRec));
+      // The content URI is resolved from the canonical path, which reads the disk
+      IoExecutor.getInstance()
+          .execute(
+              IoExecutor.Priority.USER_BLOCKING,
+              () ->
+                  FileProvider.getUriForFile(
+                      context, "com.wirehall.fileprovider", new File(recording.getPath())),
+              uri -> {
+                // The list may have been left while the URI was resolved
+                if (!itemView.isAttachedToWindow()) {
+                  return;
+                }
+                Intent share = new Intent(Intent.ACTION_SEND);
+                share.setType(INTENT_AUDIO_TYPE);
+                share.putExtra(Intent.EXTRA_STREAM, uri);
+                share.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                Context viewContext = itemView.getContext();
+                String shareRec = viewContext.getString(R.string.share_recording);
+                viewContext.startActivity(Intent.createChooser(share, shareRec));
+              });
     }
 
-    private void handleRenameClick(ListPopupWindow window, int adapterPosition) {
+    private void handleRenameClick(ListPopupWindow window, Recording sourceRecording) {
       Log.d(TAG, "Clicked on the file row rename option menu");
 
-      final Recording sourceRecording = recordings.get(adapterPosition);
       String path = sourceRecording.getPath();
       String initialName = FileUtils.removeExtention(Paths.get(path).getFileName().toString());
 
@@ -259,9 +461,7 @@ public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHo
               dialog -> {
                 Recording renamedRecording = filenameInputDialog.getRenamedRecording();
                 if (renamedRecording != null) {
-                  sourceRecording.setName(renamedRecording.getName());
-                  sourceRecording.setPath(renamedRecording.getPath());
-                  notifyItemChanged(adapterPosition);
+                  renameRecording(sourceRecording, renamedRecording);
                 }
       };
 
@@ -270,31 +470,65 @@ public class FileListAdapter extends RecyclerView.Adapter<FileListAdapter.ViewHo
       filenameInputDialog.show();
     }
 
-    private void refreshRowSelection(int selectedRowPosition) {
-      int oldSelectedRowPosition = FileListAdapter.this.selectedRowPosition;
-      FileListAdapter.this.selectedRowPosition = selectedRowPosition;
-      if (oldSelectedRowPosition > -1) notifyItemChanged(oldSelectedRowPosition);
-      notifyItemChanged(selectedRowPosition);
+    private void renameRecording(Recording sourceRecording, Recording renamedRecording) {
+      if (Objects.equals(selectedPath, sourceRecording.getPath())) {
+        selectedPath = renamedRecording.getPath();
+      }
+      fileBrowserOperationsListener.onRename(sourceRecording, renamedRecording);
+    }
+
+    // The file is deleted by the listener, after the undo window
+    private void deleteFile(Recording recording) {
+      if (Objects.equals(selectedPath, recording.getPath())) {
+        selectedPath = null;
+      }
+      fileBrowserOperationsListener.onDelete(recording);
     }
 
-    private void deleteFile(int adapterPosition) {
-      FileUtils.deleteFile(recordings.get(adapterPosition).getPath());
-      recordings.remove(adapterPosition);
-      if (adapterPosition < selectedRowPosition) {
-        selectedRowPosition--;
-      } else if (adapterPosition == selectedRowPosition) {
-        selectedRowPosition = RecyclerView.NO_POSITION;
+    @Override
+    public void onClick(View view) {
+      int position = getBindingAdapterPosition();
+      if (position == RecyclerView.NO_POSITION) {
+        return;
       }
-      notifyItemRemoved(adapterPosition);
+      Recording recording = getRecording(position);
+      if (recording == null) {
+        return;
+      }
+      if (isSelectionMode() && view.getId() == R.id.rl_file_info_area) {
+        toggleChecked(recording);
+        return;
+      }
+      selectedPath = recording.getPath();
+      notifyStateChanged();
+      fileBrowserOperationsListener.onClick(view, recording);
+    }
+  }
 
-      fileBrowserOperationsListener.onDelete(adapterPosition);
+  /** The header of the section of a folder, collapses or expands the section when clicked */
+  private class FolderViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+    private final TextView folderNameTextView;
+    private final TextView folderCountTextView;
+    private final ImageView folderExpandImageView;
+
+    private FolderViewHolder(@NonNull View itemView) {
+      super(itemView);
+      itemView.setOnClickListener(this);
+      folderNameTextView = itemView.findViewById(R.id.tv_folder_name);
+      folderCountTextView = itemView.findViewById(R.id.tv_folder_count);
+      folderExpandImageView = itemView.findViewById(R.id.iv_folder_expand);
     }
 
     @Override
     public void onClick(View view) {
       int position = getBindingAdapterPosition();
-      refreshRowSelection(position);
-      fileBrowserOperationsListener.onClick(view, position);
+      if (position == RecyclerView.NO_POSITION) {
+        return;
+      }
+      FileListItem item = getItem(position);
+      if (item instanceof RecordingFolder) {
+        fileBrowserOperationsListener.onFolderClick((RecordingFolder) item);
+      }
     }
   }
 }
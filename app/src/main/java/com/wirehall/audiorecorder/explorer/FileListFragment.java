@@ -1,41 +1,66 @@
 package com.wirehall.audiorecorder.explorer;
 
 import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.ImageButton;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.StringRes;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.widget.ListPopupWindow;
+import androidx.appcompat.widget.SearchView;
+import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.preference.PreferenceManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.snackbar.Snackbar;
+import com.wirehall.audiorecorder.IoExecutor;
 import com.wirehall.audiorecorder.R;
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex;
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex.SortOrder;
 import com.wirehall.audiorecorder.explorer.model.Recording;
+import com.wirehall.audiorecorder.explorer.model.RecordingFolder;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import static com.wirehall.audiorecorder.setting.SettingActivity.KEY_PREF_CONFIRM_DELETE;
+
 public class FileListFragment extends Fragment {
   public static final String DEFAULT_STORAGE_PATH =
       FileUtils.getBaseStoragePath() + "/Audio/Recordings";
   private static final String TAG = FileListFragment.class.getName();
+  // The rows beyond the viewport whose thumbnails are rendered ahead of the scroll
+  private static final int THUMBNAIL_PREFETCH_ROWS = 6;
   private FileListFragmentListener context;
   private FileListAdapter fileListAdapter;
   private TextView empty_list_label;
   private ProgressBar progressIndicator;
+  private View selectionBar;
+  private TextView selectionCountLabel;
+  private View bulkProgressBar;
 
-  private List<Recording> recordings;
-
-  private boolean isFetchingData = false;
+  private FileListViewModel fileListViewModel;
 
   /** @return The singleton instance of FileListFragment */
   public static FileListFragment newInstance() {
@@ -63,73 +88,355 @@ public class FileListFragment extends Fragment {
   @Override
   public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
     super.onViewCreated(view, savedInstanceState);
+    // Survives the configuration changes, the recreated views are bound to the loaded list
+    fileListViewModel = new ViewModelProvider(this).get(FileListViewModel.class);
     setupInitialAdapter();
-    refreshAdapter();
   }
 
   public void setupInitialAdapter() {
     Log.d(TAG, "FileListFragment - reloadData");
-    recordings = new ArrayList<>();
 
     RecyclerView recyclerView = requireActivity().findViewById(R.id.recycler_view);
     LinearLayoutManager linearLayoutManager = new LinearLayoutManager(getContext());
     recyclerView.setLayoutManager(linearLayoutManager);
     FileBrowserOperationsListener fileBrowserOperationsListener = new FileBrowserOperationsListener() {
       @Override
-      public void onClick(View view, int position) {
-        onItemClick(position);
+      public void onClick(View view, Recording recording) {
+        onItemClick(recording);
+      }
+
+      @Override
+      public void onDelete(Recording recording) {
+        onItemDelete(recording);
+      }
+
+      @Override
+      public void onRename(Recording sourceRecording, Recording renamedRecording) {
+        onItemRename(sourceRecording, renamedRecording);
+      }
+
+      @Override
+      public void onFolderClick(RecordingFolder folder) {
+        fileListViewModel.toggleFolder(folder);
       }
 
       @Override
-      public void onDelete(int position) {
-        onItemDelete(position);
+      public void onCheckedChanged(int checkedCount) {
+        updateSelectionBar(checkedCount);
       }
     };
 
-    fileListAdapter = new FileListAdapter(getContext(), recordings, fileBrowserOperationsListener);
+    setupSelectionBar();
+    fileListAdapter = new FileListAdapter(getContext(), fileBrowserOperationsListener);
+    fileListAdapter.setSelectedPath(fileListViewModel.getSelectedPath());
+    fileListAdapter.setPlayingPath(fileListViewModel.getPlayingPath());
+    fileListAdapter.setCheckedPaths(fileListViewModel.getCheckedPaths());
     recyclerView.setAdapter(fileListAdapter);
-    updateStatusIndicators();
-  }
+    recyclerView.addOnScrollListener(
+        new RecyclerView.OnScrollListener() {
+          private int prefetchedPosition = RecyclerView.NO_POSITION;
 
-  /** Refresh the file list view by updating the adapter associated with it */
-  public void refreshAdapter() {
-    Log.d(TAG, "FileListFragment - refreshAdapter");
+          @Override
+          public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            // Once per row scrolled in, not once per frame
+            int position =
+                dy > 0
+                    ? linearLayoutManager.findLastVisibleItemPosition()
+                    : linearLayoutManager.findFirstVisibleItemPosition();
+            if (dy == 0 || position == prefetchedPosition) {
+              return;
+            }
+            prefetchedPosition = position;
+            if (dy > 0) {
+              fileListAdapter.prefetchThumbnails(
+                  position + 1, position + 1 + THUMBNAIL_PREFETCH_ROWS);
+            } else {
+              fileListAdapter.prefetchThumbnails(position - THUMBNAIL_PREFETCH_ROWS, position);
+            }
+          }
+        });
 
-    isFetchingData = true;
+    // The list loaded before a configuration change is submitted right away, in time for the
+    // layout manager to restore the scroll position
+    fileListViewModel
+        .getRecordings()
+        .observe(
+            getViewLifecycleOwner(),
+            pagedList -> fileListAdapter.submitList(pagedList, this::updateStatusIndicators));
+    fileListViewModel
+        .isFetchingData()
+        .observe(getViewLifecycleOwner(), isFetching -> updateStatusIndicators());
+    fileListViewModel.getBulkProgress().observe(getViewLifecycleOwner(), this::updateBulkProgress);
 
-    updateStatusIndicators();
+    setupSearchView();
+    setupListOptionsButton();
+  }
 
-    Thread thread =
-        new Thread() {
+  // The list is searched as the query is typed, the query is restored after a configuration change
+  private void setupSearchView() {
+    SearchView searchView = requireActivity().findViewById(R.id.sv_file_search);
+    searchView.setQuery(fileListViewModel.getSearchQuery(), false);
+    searchView.setOnQueryTextListener(
+        new SearchView.OnQueryTextListener() {
           @Override
-          public void run() {
-            try {
-              FragmentActivity activity = getActivity();
-              if (activity != null) {
-                String recordingStoragePath = FileUtils.getRecordingStoragePath(getContext());
-                final List<Recording> recordings =
-                    FileUtils.getAllFilesFromDirectory(
-                        getContext(), recordingStoragePath, new FileExtensionFilter());
-                activity.runOnUiThread(() -> updateData(recordings));
-              }
-            } catch (Exception e) {
-              Log.e(TAG, e.getMessage());
-            }
+          public boolean onQueryTextSubmit(String query) {
+            searchView.clearFocus();
+            return true;
+          }
+
+          @Override
+          public boolean onQueryTextChange(String newText) {
+            fileListViewModel.setSearchQuery(newText);
+            return true;
+          }
+        });
+  }
+
+  // The sort orders followed by the filters, the selected ones are checked
+  private void setupListOptionsButton() {
+    ImageButton listOptionsButton = requireActivity().findViewById(R.id.ib_list_options);
+    listOptionsButton.setOnClickListener(
+        v -> {
+          final SortOrder[] sortOrders = SortOrder.values();
+          final ListFilterOption[] filterOptions = ListFilterOption.values();
+          final List<String> data = new ArrayList<>();
+          for (SortOrder sortOrder : sortOrders) {
+            data.add(
+                getListOptionLabel(
+                    getSortOrderLabelResId(sortOrder),
+                    sortOrder == fileListViewModel.getSortOrder()));
+          }
+          for (ListFilterOption filterOption : filterOptions) {
+            data.add(
+                getListOptionLabel(
+                    filterOption.getLabelResId(),
+                    filterOption == fileListViewModel.getFilterOption()));
           }
-        };
-    thread.start();
+
+          final ListPopupWindow window = new ListPopupWindow(requireContext());
+          ArrayAdapter<String> adapter =
+              new ArrayAdapter<>(requireContext(), R.layout.file_menu_item_layout, data);
+          window.setAdapter(adapter);
+          window.setModal(true);
+          window.setAnchorView(listOptionsButton);
+          window.setContentWidth(FileUtils.measureContentWidth(adapter, requireContext()));
+          window.setOnItemClickListener(
+              (parent, view, position, id) -> {
+                if (position < sortOrders.length) {
+                  fileListViewModel.setSortOrder(sortOrders[position]);
+                } else {
+                  fileListViewModel.setFilterOption(filterOptions[position - sortOrders.length]);
+                }
+                window.dismiss();
+              });
+          window.show();
+        });
+  }
+
+  private String getListOptionLabel(@StringRes int labelResId, boolean isSelected) {
+    String label = getString(labelResId);
+    return isSelected ? getString(R.string.list_option_selected, label) : label;
+  }
+
+  @StringRes
+  private static int getSortOrderLabelResId(SortOrder sortOrder) {
+    switch (sortOrder) {
+      case NAME:
+        return R.string.list_sort_name;
+      case SIZE:
+        return R.string.list_sort_size;
+      case DURATION:
+        return R.string.list_sort_duration;
+      default:
+        return R.string.list_sort_date;
+    }
+  }
+
+  // The bar is shown while rows are checked, its actions apply to all the checked recordings
+  private void setupSelectionBar() {
+    FragmentActivity activity = requireActivity();
+    selectionBar = activity.findViewById(R.id.ll_selection_bar);
+    selectionCountLabel = activity.findViewById(R.id.tv_selection_count);
+    bulkProgressBar = activity.findViewById(R.id.ll_bulk_progress);
+    activity.findViewById(R.id.btn_selection_delete).setOnClickListener(v -> onSelectionDelete());
+    activity.findViewById(R.id.btn_selection_move).setOnClickListener(v -> onSelectionMove());
+    activity.findViewById(R.id.btn_selection_share).setOnClickListener(v -> onSelectionShare());
+    activity.findViewById(R.id.btn_selection_export).setOnClickListener(v -> onSelectionExport());
+    activity
+        .findViewById(R.id.btn_selection_clear)
+        .setOnClickListener(v -> fileListAdapter.setCheckedPaths(Collections.emptyList()));
+    Button cancelButton = activity.findViewById(R.id.btn_bulk_cancel);
+    cancelButton.setOnClickListener(v -> fileListViewModel.cancelBulkOperation());
+  }
+
+  private void updateSelectionBar(int checkedCount) {
+    selectionBar.setVisibility(checkedCount > 0 ? View.VISIBLE : View.GONE);
+    selectionCountLabel.setText(getString(R.string.selection_count, checkedCount));
   }
 
-  public void updateData(List<Recording> recordings) {
-    isFetchingData = false;
-    this.recordings = recordings;
-    fileListAdapter.updateData(recordings);
-    updateStatusIndicators();
+  private void updateBulkProgress(@Nullable FileListViewModel.BulkProgress progress) {
+    if (progress == null) {
+      bulkProgressBar.setVisibility(View.GONE);
+      return;
+    }
+    int labelResId;
+    switch (progress.getOperation()) {
+      case DELETE:
+        labelResId = R.string.bulk_progress_delete;
+        break;
+      case MOVE:
+        labelResId = R.string.bulk_progress_move;
+        break;
+      default:
+        labelResId = R.string.bulk_progress_copy;
+        break;
+    }
+    TextView label = bulkProgressBar.findViewById(R.id.tv_bulk_progress);
+    label.setText(getString(labelResId, progress.getProcessedCount(), progress.getTotalCount()));
+    ProgressBar progressBar = bulkProgressBar.findViewById(R.id.pb_bulk_progress);
+    progressBar.setMax(progress.getTotalCount());
+    progressBar.setProgress(progress.getProcessedCount());
+    bulkProgressBar.setVisibility(View.VISIBLE);
+  }
+
+  private void onSelectionDelete() {
+    final List<String> paths = fileListAdapter.getCheckedPaths();
+    SharedPreferences sharedPref = PreferenceManager.getDefaultSharedPreferences(requireContext());
+    boolean confirmDelete = sharedPref.getBoolean(KEY_PREF_CONFIRM_DELETE, true);
+    if (confirmDelete) {
+      new AlertDialog.Builder(requireContext())
+          .setTitle(R.string.dialog_delete_title)
+          .setMessage(getString(R.string.dialog_bulk_delete_message, paths.size()))
+          .setIcon(R.drawable.ic_warning_black)
+          .setPositiveButton(
+              android.R.string.ok,
+              (dialog, which) -> deleteRecordings(paths))
+          .setNegativeButton(android.R.string.cancel, null)
+          .show();
+    } else {
+      deleteRecordings(paths);
+    }
+  }
+
+  // The folders are listed off the UI thread, the dialog is shown if the fragment is still there
+  private void onSelectionMove() {
+    final List<String> paths = fileListAdapter.getCheckedPaths();
+    final Context appContext = requireContext().getApplicationContext();
+    IoExecutor.getInstance()
+        .execute(
+            IoExecutor.Priority.USER_BLOCKING,
+            () ->
+                FileUtils.getMoveTargetDirectories(
+                    appContext, RecordingLibrary.fromPreferences(appContext), paths),
+            directories -> {
+              if (isAdded()) {
+                showMoveDialog(paths, directories);
+              }
+            });
+  }
+
+  private void showMoveDialog(final List<String> paths, final List<String> directories) {
+    String basePath = FileUtils.getBaseStoragePath();
+    String[] labels = new String[directories.size()];
+    for (int i = 0; i < labels.length; i++) {
+      String directory = directories.get(i);
+      labels[i] =
+          directory.startsWith(basePath + File.separator)
+              ? directory.substring(basePath.length() + 1)
+              : directory;
+    }
+    new AlertDialog.Builder(requireContext())
+        .setTitle(R.string.dialog_move_title)
+        .setItems(
+            labels,
+            (dialog, which) ->
+                startBulkOperation(
+                    new FileBatch(
+                        FileBatch.Operation.MOVE, paths, new File(directories.get(which)))))
+        .setNegativeButton(android.R.string.cancel, null)
+        .show();
+  }
+
+  // The content URIs are resolved from the canonical paths, which reads the disk
+  private void onSelectionShare() {
+    final List<String> paths = fileListAdapter.getCheckedPaths();
+    final Context appContext = requireContext().getApplicationContext();
+    IoExecutor.getInstance()
+        .execute(
+            IoExecutor.Priority.USER_BLOCKING,
+            () -> {
+              ArrayList<Uri> uris = new ArrayList<>();
+              for (String path : paths) {
+                uris.add(
+                    FileProvider.getUriForFile(
+                        appContext, "com.wirehall.fileprovider", new File(path)));
+              }
+              return uris;
+            },
+            uris -> {
+              if (!isAdded()) {
+                return;
+              }
+              Intent share = new Intent(Intent.ACTION_SEND_MULTIPLE);
+              share.setType(FileListAdapter.INTENT_AUDIO_TYPE);
+              share.putParcelableArrayListExtra(Intent.EXTRA_STREAM, uris);
+              share.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+              startActivity(Intent.createChooser(share, getString(R.string.share_recording)));
+            });
+  }
+
+  // The copies keep their modification time, they are not part of the library
+  private void onSelectionExport() {
+    File exportDirectory = FileUtils.getExportDirectory(requireContext());
+    startBulkOperation(
+        new FileBatch(
+            FileBatch.Operation.COPY, fileListAdapter.getCheckedPaths(), exportDirectory));
+  }
+
+  private void startBulkOperation(FileBatch batch) {
+    fileListAdapter.setCheckedPaths(Collections.emptyList());
+    fileListViewModel.startBulkOperation(batch);
+  }
+
+  /**
+   * Refresh the file list view by scanning the recording storage directory. The rows are paged
+   * from the recording index, which is updated by the scan a batch at a time.
+   */
+  public void refreshAdapter() {
+    Log.d(TAG, "FileListFragment - refreshAdapter");
+    fileListViewModel.refresh();
+  }
+
+  @Override
+  public void onStart() {
+    super.onStart();
+    // Nothing is loaded again after a configuration change, unless the settings were changed
+    fileListViewModel.loadIfNeeded();
+    fileListViewModel.startWatching();
+  }
+
+  @Override
+  public void onStop() {
+    // Nothing is stopped, saved or loaded again for a configuration change
+    if (!requireActivity().isChangingConfigurations()) {
+      fileListViewModel.stop();
+    }
+    super.onStop();
+  }
+
+  @Override
+  public void onDestroyView() {
+    fileListViewModel.setSelectedPath(fileListAdapter.getSelectedPath());
+    fileListViewModel.setCheckedPaths(fileListAdapter.getCheckedPaths());
+    super.onDestroyView();
   }
 
   public void updateStatusIndicators() {
-    empty_list_label.setVisibility(recordings.isEmpty() && !isFetchingData ? View.VISIBLE : View.GONE);
-    progressIndicator.setVisibility(isFetchingData ? View.VISIBLE : View.GONE);
+    boolean isEmpty = fileListAdapter == null || fileListAdapter.getItemCount() == 0;
+    boolean isFetchingData = Boolean.TRUE.equals(fileListViewModel.isFetchingData().getValue());
+    empty_list_label.setVisibility(isEmpty && !isFetchingData ? View.VISIBLE : View.GONE);
+    // The spinner is only needed until the first rows are paged in
+    progressIndicator.setVisibility(isFetchingData && isEmpty ? View.VISIBLE : View.GONE);
   }
 
   /** Clears any row selection */
@@ -137,13 +444,62 @@ public class FileListFragment extends Fragment {
     fileListAdapter.resetRowSelection();
   }
 
-  private void onItemClick(int position) {
-    context.onFileItemClicked(recordings.get(position));
+  /** @param recording The recording being played, null if none is played */
+  public void setPlayingRecording(@Nullable Recording recording) {
+    String path = recording != null ? recording.getPath() : null;
+    fileListViewModel.setPlayingPath(path);
+    fileListAdapter.setPlayingPath(path);
+  }
+
+  private void onItemClick(Recording recording) {
+    context.onFileItemClicked(recording);
+  }
+
+  private void onItemDelete(final Recording recording) {
+    deleteRecordings(Collections.singletonList(recording.getPath()));
   }
 
-  private void onItemDelete(int position) {
-    this.recordings = fileListAdapter.getRecordings();
-    updateStatusIndicators();
+  // The rows are hidden at once, the files are deleted in the background after the undo window
+  private void deleteRecordings(List<String> paths) {
+    fileListAdapter.setCheckedPaths(Collections.emptyList());
+    final DeleteScheduler deleteScheduler = DeleteScheduler.getInstance();
+    final DeleteScheduler.Deletion deletion = deleteScheduler.schedule(requireContext(), paths);
+    String message = getString(R.string.message_recordings_deleted, deletion.getCount());
+    Snackbar.make(requireView(), message, DeleteScheduler.UNDO_WINDOW_MILLIS)
+        .setAction(
+            R.string.undo,
+            v -> {
+              if (!deleteScheduler.undo(deletion)) {
+                // Purged already, e.g. the list was left meanwhile
+                Toast.makeText(
+                        v.getContext(), R.string.message_undo_too_late, Toast.LENGTH_SHORT)
+                    .show();
+              }
+            })
+        .show();
+  }
+
+  // A rename keeps the size and the modification time, so the indexed metadata is moved as is
+  private void onItemRename(final Recording sourceRecording, final Recording renamedRecording) {
+    final RecordingIndex recordingIndex = RecordingIndex.getInstance(requireContext());
+    IoExecutor.getInstance()
+        .execute(
+            IoExecutor.Priority.VISIBLE,
+            () -> {
+              RecordingIndex.Entry entry = recordingIndex.getEntry(sourceRecording.getPath());
+              List<RecordingIndex.Entry> changedEntries = new ArrayList<>();
+              if (entry != null) {
+                changedEntries.add(
+                    new RecordingIndex.Entry(
+                        renamedRecording.getPath(),
+                        entry.getDirectory(),
+                        entry.getSize(),
+                        entry.getModified(),
+                        entry.getDuration()));
+              }
+              recordingIndex.update(
+                  changedEntries, Collections.singletonList(sourceRecording.getPath()));
+            });
   }
 
   /** Interface used to invoke the file item's click handler from activity */
@@ -151,10 +507,11 @@ public class FileListFragment extends Fragment {
     void onFileItemClicked(Recording filePath);
   }
 
-  /** Class used to filter files with .rec extension */
+  /** Class used to filter files with .rec extension, skipping the deleted files not purged yet */
   static class FileExtensionFilter implements FilenameFilter {
     public boolean accept(File dir, String name) {
-      return (name.endsWith(FileUtils.DEFAULT_REC_FILENAME_EXTENSION));
+      return name.endsWith(FileUtils.DEFAULT_REC_FILENAME_EXTENSION)
+          && !DeleteScheduler.getInstance().isPending(new File(dir, name));
     }
   }
 }
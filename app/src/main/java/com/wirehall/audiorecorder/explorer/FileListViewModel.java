@@ -0,0 +1,391 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.app.Application;
+import android.content.Context;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+
+import com.wirehall.audiorecorder.IoExecutor;
+import com.wirehall.audiorecorder.R;
+import com.wirehall.audiorecorder.explorer.index.ListingSnapshot;
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex;
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex.SortOrder;
+import com.wirehall.audiorecorder.explorer.model.FileListItem;
+import com.wirehall.audiorecorder.explorer.model.RecordingFolder;
+import com.wirehall.audiorecorder.waveform.WaveformAnalyzer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Holds the state of the file list which outlives the views of {@link FileListFragment}: the paged
+ * list, the scan in progress, the directory watcher, the collapsed folders, the search query, the
+ * list options, the checked rows and the bulk operation in progress, and the row selection and
+ * playing state. A configuration change only rebinds the new views to it, so the loaded pages are
+ * reused as they are and the recordings are neither scanned nor read again.
+ */
+public class FileListViewModel extends AndroidViewModel {
+  private final RecordingDataSource.Factory dataSourceFactory;
+  private final LiveData<PagedList<FileListItem>> recordings;
+  private final MutableLiveData<Boolean> isFetchingData = new MutableLiveData<>(false);
+  private final MutableLiveData<BulkProgress> bulkProgress = new MutableLiveData<>(null);
+
+  private final Set<String> collapsedFolders = new HashSet<>();
+  private RecordingDirectoryWatcher recordingDirectoryWatcher;
+  private String watchedPath;
+  private RecordingLibrary loadedLibrary;
+  private String selectedPath;
+  private String playingPath;
+  private String searchQuery = "";
+  private SortOrder sortOrder = SortOrder.DATE;
+  private ListFilterOption filterOption = ListFilterOption.ALL;
+  private List<String> checkedPaths = Collections.emptyList();
+  private FileOperationQueue.Job bulkJob;
+
+  public FileListViewModel(@NonNull Application application) {
+    super(application);
+    // The rows of the previous session are listed right away, the scan only applies the changes.
+    // The folders of the other storage volumes are added once the library is loaded
+    dataSourceFactory =
+        new RecordingDataSource.Factory(
+            application, RecordingLibrary.ofStorageDirectory(application));
+    recordings =
+        new LivePagedListBuilder<>(dataSourceFactory, RecordingDataSource.createPagedListConfig())
+            .build();
+    DeleteScheduler.getInstance().purgeInterrupted(application);
+  }
+
+  /** @return The recordings of the library, paged from the recording index */
+  LiveData<PagedList<FileListItem>> getRecordings() {
+    return recordings;
+  }
+
+  /** @return Whether a scan of the storage directory is in progress */
+  LiveData<Boolean> isFetchingData() {
+    return isFetchingData;
+  }
+
+  /** @return The progress of the bulk operation in progress, null if there is none */
+  LiveData<BulkProgress> getBulkProgress() {
+    return bulkProgress;
+  }
+
+  /**
+   * Scans the library the first time the list is shown, or when the library was changed in the
+   * settings meanwhile. The state is kept otherwise. The library is loaded off the UI thread
+   */
+  void loadIfNeeded() {
+    loadLibrary(
+        library -> {
+          if (!library.equals(loadedLibrary)) {
+            refresh(library);
+          }
+        });
+  }
+
+  /**
+   * Scans the folders of the library. The rows are paged from the recording index, which is
+   * updated by the scan a batch at a time.
+   */
+  void refresh() {
+    isFetchingData.setValue(true);
+    loadLibrary(this::refresh);
+  }
+
+  // The storage volumes of the library are listed from the disk
+  private void loadLibrary(Consumer<RecordingLibrary> callback) {
+    final Context appContext = getApplication();
+    IoExecutor.getInstance()
+        .execute(
+            IoExecutor.Priority.VISIBLE,
+            () -> RecordingLibrary.fromPreferences(appContext),
+            callback);
+  }
+
+  private void refresh(final RecordingLibrary library) {
+    isFetchingData.setValue(true);
+
+    final Context appContext = getApplication();
+    if (dataSourceFactory.setLibrary(library)) {
+      invalidateData();
+    }
+    loadedLibrary = library;
+    if (recordingDirectoryWatcher != null && !library.getStoragePath().equals(watchedPath)) {
+      // Watched again from the new directory
+      stopWatching();
+      startWatching();
+    }
+
+    ScanScheduler.getInstance()
+        .requestScan(
+            appContext,
+            library,
+            new FileListFragment.FileExtensionFilter(),
+            this::onScanFinished);
+  }
+
+  // Only invoked for the newest scan request
+  private void onScanFinished(final RecordingLibrary library) {
+    isFetchingData.setValue(false);
+    if (dataSourceFactory.isServingSnapshot()) {
+      // The scan found no changes, the index may still differ from the snapshot
+      invalidateData();
+    }
+    // Extracts the peaks of the recordings which have none yet, e.g. the imported ones
+    final RecordingIndex recordingIndex = RecordingIndex.getInstance(getApplication());
+    WaveformAnalyzer.getInstance()
+        .analyzeMissing(
+            getApplication(),
+            new WaveformAnalyzer.RecordingSource() {
+              @Override
+              public List<String> getFolders() {
+                return library.isRecursive()
+                    ? new ArrayList<>(
+                        recordingIndex.getListedFolderCounts(library.getRoots()).keySet())
+                    : library.getRoots();
+              }
+
+              @Override
+              public List<RecordingIndex.Entry> getRecordings(String folder) {
+                return recordingIndex.getListedEntries(folder, 0, Integer.MAX_VALUE);
+              }
+            });
+  }
+
+  // The changes of the index invalidate the data on their own, only a change of directory does not
+  private void invalidateData() {
+    PagedList<FileListItem> pagedList = recordings.getValue();
+    if (pagedList != null) {
+      pagedList.getDataSource().invalidate();
+    }
+  }
+
+  /** @param query The words the listed recordings must contain, empty to list them all */
+  void setSearchQuery(String query) {
+    searchQuery = query;
+    // Every keystroke only looks up the search index, the pending data source is just replaced
+    if (dataSourceFactory.setQuery(query.trim())) {
+      invalidateData();
+    }
+  }
+
+  String getSearchQuery() {
+    return searchQuery;
+  }
+
+  /**
+   * The list is read again from the index of the order, on the paging thread
+   *
+   * @param sortOrder The order of the list
+   */
+  void setSortOrder(SortOrder sortOrder) {
+    this.sortOrder = sortOrder;
+    if (dataSourceFactory.setSortOrder(sortOrder)) {
+      invalidateData();
+    }
+  }
+
+  SortOrder getSortOrder() {
+    return sortOrder;
+  }
+
+  /** @param filterOption The ranges the listed recordings fall in */
+  void setFilterOption(ListFilterOption filterOption) {
+    this.filterOption = filterOption;
+    if (dataSourceFactory.setRangeFilter(
+        filterOption.createRangeFilter(System.currentTimeMillis()))) {
+      invalidateData();
+    }
+  }
+
+  ListFilterOption getFilterOption() {
+    return filterOption;
+  }
+
+  /**
+   * Queues the batch on the {@link FileOperationQueue}, the list is updated once at the end
+   *
+   * @param batch The checked recordings and the operation applied to them
+   */
+  void startBulkOperation(final FileBatch batch) {
+    final Context appContext = getApplication();
+    final FileOperationQueue.Job[] job = new FileOperationQueue.Job[1];
+    bulkProgress.setValue(new BulkProgress(batch.getOperation(), 0, batch.getPaths().size()));
+    job[0] =
+        FileOperationQueue.getInstance()
+            .submit(
+                appContext,
+                batch,
+                new FileOperationQueue.Listener() {
+                  @Override
+                  public void onProgress(int processedCount, int totalCount) {
+                    // Only the newest operation is shown
+                    if (job[0] == bulkJob) {
+                      bulkProgress.setValue(
+                          new BulkProgress(batch.getOperation(), processedCount, totalCount));
+                    }
+                  }
+
+                  @Override
+                  public void onFinished(FileBatch batch, FileBatch.Result result) {
+                    if (job[0] == bulkJob) {
+                      bulkJob = null;
+                      bulkProgress.setValue(null);
+                    }
+                    onBulkOperationFinished(appContext, batch, result);
+                  }
+                });
+    bulkJob = job[0];
+  }
+
+  private static void onBulkOperationFinished(
+      Context context, FileBatch batch, FileBatch.Result result) {
+    if (!result.getFailedPaths().isEmpty()) {
+      String message =
+          context.getString(R.string.message_bulk_failed, result.getFailedPaths().size());
+      Toast.makeText(context, message, Toast.LENGTH_LONG).show();
+    } else if (batch.getOperation() == FileBatch.Operation.COPY
+        && !result.getTargets().isEmpty()
+        && batch.getTargetDirectory() != null) {
+      String message =
+          context.getString(R.string.message_export_done, batch.getTargetDirectory().getPath());
+      Toast.makeText(context, message, Toast.LENGTH_LONG).show();
+    }
+  }
+
+  /** Stops the bulk operation in progress, the files processed so far are applied to the list */
+  void cancelBulkOperation() {
+    if (bulkJob != null) {
+      bulkJob.cancel();
+    }
+  }
+
+  List<String> getCheckedPaths() {
+    return checkedPaths;
+  }
+
+  void setCheckedPaths(List<String> checkedPaths) {
+    this.checkedPaths = checkedPaths;
+  }
+
+  /** @param folder The folder whose recordings are hidden or shown again */
+  void toggleFolder(RecordingFolder folder) {
+    if (!collapsedFolders.remove(folder.getPath())) {
+      collapsedFolders.add(folder.getPath());
+    }
+    dataSourceFactory.setCollapsedFolders(collapsedFolders);
+    invalidateData();
+  }
+
+  /**
+   * Applies the changes of the storage directory incrementally instead of scanning it again, the
+   * changes of the other folders of the library are picked up by the next scan
+   */
+  void startWatching() {
+    if (recordingDirectoryWatcher != null) {
+      return;
+    }
+    final Context appContext = getApplication();
+    watchedPath = RecordingLibrary.ofStorageDirectory(appContext).getStoragePath();
+    recordingDirectoryWatcher =
+        new RecordingDirectoryWatcher(
+            appContext,
+            watchedPath,
+            new FileListFragment.FileExtensionFilter(),
+            changedFiles -> {
+              // A few files at a time, they are analyzed right away
+              WaveformAnalyzer waveformAnalyzer = WaveformAnalyzer.getInstance();
+              for (File file : changedFiles) {
+                waveformAnalyzer.analyze(appContext, file, false, null);
+              }
+            });
+    recordingDirectoryWatcher.start();
+  }
+
+  /**
+   * Stops watching the directory and the background work, the listing is saved so it is shown
+   * from the snapshot on the next start
+   */
+  void stop() {
+    stopWatching();
+    // The deletions can no longer be undone once the list is left
+    DeleteScheduler.getInstance().flush();
+    // The analysis continues from where it stopped the next time the list is loaded
+    WaveformAnalyzer.getInstance().cancelBackgroundJobs();
+    final Context appContext = getApplication();
+    final RecordingLibrary library = RecordingLibrary.ofStorageDirectory(appContext);
+    if (!library.isRecursive()) {
+      IoExecutor.getInstance()
+          .execute(
+              IoExecutor.Priority.BACKGROUND,
+              () -> ListingSnapshot.save(appContext, library.getStoragePath()));
+    }
+  }
+
+  private void stopWatching() {
+    if (recordingDirectoryWatcher != null) {
+      recordingDirectoryWatcher.stop();
+      recordingDirectoryWatcher = null;
+    }
+  }
+
+  @Override
+  protected void onCleared() {
+    stopWatching();
+  }
+
+  @Nullable
+  String getSelectedPath() {
+    return selectedPath;
+  }
+
+  void setSelectedPath(@Nullable String selectedPath) {
+    this.selectedPath = selectedPath;
+  }
+
+  @Nullable
+  String getPlayingPath() {
+    return playingPath;
+  }
+
+  void setPlayingPath(@Nullable String playingPath) {
+    this.playingPath = playingPath;
+  }
+
+  /** The progress of a bulk operation */
+  static class BulkProgress {
+    private final FileBatch.Operation operation;
+    private final int processedCount;
+    private final int totalCount;
+
+    private BulkProgress(FileBatch.Operation operation, int processedCount, int totalCount) {
+      this.operation = operation;
+      this.processedCount = processedCount;
+      this.totalCount = totalCount;
+    }
+
+    FileBatch.Operation getOperation() {
+      return operation;
+    }
+
+    int getProcessedCount() {
+      return processedCount;
+    }
+
+    int getTotalCount() {
+      return totalCount;
+    }
+  }
+}
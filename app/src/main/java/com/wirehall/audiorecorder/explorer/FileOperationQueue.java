@@ -0,0 +1,168 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.wirehall.audiorecorder.IoExecutor;
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex;
+import com.wirehall.audiorecorder.waveform.WaveformUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * This is a singleton class running the {@link FileBatch}es one at a time on the {@link
+ * IoExecutor}. The progress of a batch is posted to the UI thread at a bounded rate whatever the
+ * number of files, and the recording index is updated once at the end of the batch, so the file
+ * list is diffed a single time instead of once per file. A cancelled batch applies the files
+ * processed so far the same way.
+ */
+public class FileOperationQueue {
+  private static final String TAG = FileOperationQueue.class.getName();
+  // About four progress updates per second are enough for a progress bar
+  private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+  private static FileOperationQueue fileOperationQueue;
+
+  // The progress of the batches is shown
+  private final Executor executor =
+      IoExecutor.getInstance().newSequence(IoExecutor.Priority.VISIBLE);
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  private FileOperationQueue() {}
+
+  /** @return The singleton instance of FileOperationQueue */
+  public static synchronized FileOperationQueue getInstance() {
+    if (fileOperationQueue == null) {
+      fileOperationQueue = new FileOperationQueue();
+    }
+    return fileOperationQueue;
+  }
+
+  /**
+   * Queues the batch after the batches submitted before it
+   *
+   * @param context Context required for internal operations
+   * @param batch The files and the operation applied to them
+   * @param listener Notified on the UI thread of the progress and of the end of the batch
+   * @return The job of the batch, used to cancel it
+   */
+  public Job submit(Context context, FileBatch batch, Listener listener) {
+    final Context appContext = context.getApplicationContext();
+    final Job job = new Job();
+    executor.execute(
+        () -> {
+          long[] lastProgressMillis = {0};
+          FileBatch.Result result =
+              batch.run(
+                  job::isCancelled,
+                  (processedCount, totalCount) -> {
+                    long now = SystemClock.uptimeMillis();
+                    if (now - lastProgressMillis[0] >= PROGRESS_INTERVAL_MILLIS
+                        || processedCount == totalCount) {
+                      lastProgressMillis[0] = now;
+                      mainHandler.post(() -> listener.onProgress(processedCount, totalCount));
+                    }
+                  });
+          try {
+            applyResult(appContext, batch, result);
+          } catch (Exception e) {
+            Log.e(TAG, "Problem applying " + batch.getOperation() + ": " + e.getMessage());
+          }
+          mainHandler.post(() -> listener.onFinished(batch, result));
+        });
+    return job;
+  }
+
+  // A single index update, the cache files of all the files are handled in one listing
+  private static void applyResult(Context context, FileBatch batch, FileBatch.Result result) {
+    Map<String, String> targets = result.getTargets();
+    if (targets.isEmpty()) {
+      return;
+    }
+    RecordingIndex recordingIndex = RecordingIndex.getInstance(context);
+    switch (batch.getOperation()) {
+      case DELETE:
+        {
+          List<File> deletedFiles = new ArrayList<>(targets.size());
+          for (String path : targets.keySet()) {
+            deletedFiles.add(new File(path));
+          }
+          WaveformUtils.deletePeakCacheFiles(context, deletedFiles);
+          recordingIndex.update(Collections.emptyList(), new ArrayList<>(targets.keySet()));
+          break;
+        }
+      case MOVE:
+        {
+          // The metadata is moved as is, a move keeps the size and the modification time
+          List<RecordingIndex.Entry> changedEntries = new ArrayList<>(targets.size());
+          List<String> removedPaths = new ArrayList<>(targets.size());
+          Map<File, File> movedFiles = new HashMap<>();
+          for (Map.Entry<String, String> target : targets.entrySet()) {
+            if (target.getKey().equals(target.getValue())) {
+              // Already in the target directory
+              continue;
+            }
+            removedPaths.add(target.getKey());
+            File targetFile = new File(target.getValue());
+            movedFiles.put(new File(target.getKey()), targetFile);
+            RecordingIndex.Entry entry = recordingIndex.getEntry(target.getKey());
+            if (entry != null) {
+              changedEntries.add(
+                  new RecordingIndex.Entry(
+                      targetFile.getPath(),
+                      targetFile.getParent(),
+                      entry.getSize(),
+                      entry.getModified(),
+                      entry.getDuration()));
+            }
+          }
+          WaveformUtils.movePeakCacheFiles(context, movedFiles);
+          recordingIndex.update(changedEntries, removedPaths);
+          break;
+        }
+      default:
+        // The copies are outside of the library, they are not indexed
+        break;
+    }
+  }
+
+  /** A queued or running batch */
+  public static class Job {
+    private volatile boolean isCancelled;
+
+    /** Stops the batch after the file being processed, or before it starts */
+    public void cancel() {
+      isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+      return isCancelled;
+    }
+  }
+
+  /** Listener notified on the UI thread of the progress of a batch */
+  public interface Listener {
+    /**
+     * @param processedCount The number of files processed so far
+     * @param totalCount The number of files of the batch
+     */
+    void onProgress(int processedCount, int totalCount);
+
+    /**
+     * Invoked once the index is updated with the result
+     *
+     * @param batch The finished batch
+     * @param result The outcome of the batch
+     */
+    void onFinished(FileBatch batch, FileBatch.Result result);
+  }
+}
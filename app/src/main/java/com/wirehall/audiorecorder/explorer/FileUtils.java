@@ -4,34 +4,53 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.media.MediaMetadataRetriever;
 import android.os.Environment;
+import android.os.Process;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Adapter;
 import android.widget.FrameLayout;
 
-import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.preference.PreferenceManager;
 
 import com.wirehall.audiorecorder.MainActivity;
 import com.wirehall.audiorecorder.R;
+import com.wirehall.audiorecorder.explorer.index.DirectoryWalker;
+import com.wirehall.audiorecorder.explorer.index.DurationParser;
+import com.wirehall.audiorecorder.explorer.index.MediaStoreSource;
+import com.wirehall.audiorecorder.explorer.index.MetadataProber;
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex;
 import com.wirehall.audiorecorder.explorer.model.Recording;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 public class FileUtils {
   public static final String DEFAULT_REC_FILENAME_EXTENSION = ".m4a";
   private static final String TAG = FileUtils.class.getName();
   private static final String DEFAULT_REC_FILENAME_FORMAT = "yyyy.MM.dd HH-mm";
+  private static final int FIRST_SCAN_BATCH_SIZE = 16; // about a screen of rows
+  private static final int MAX_SCAN_BATCH_SIZE = 512;
+  private static final String READABLE_DATE_FORMAT = "dd-MM-yyyy, hh:mm aa";
+  private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<>();
+  private static final ThreadLocal<Locale> DATE_FORMAT_LOCALE = new ThreadLocal<>();
 
   private FileUtils() {
     throw new IllegalStateException("Utility class");
@@ -48,65 +67,331 @@ public class FileUtils {
   }
 
   /**
+   * Brings the {@link RecordingIndex} up to date with the folders of the library, see {@link
+   * #indexDirectory}. In library mode the trees of the roots are walked in parallel by a {@link
+   * DirectoryWalker} first, the folders which no longer exist are removed from the index, and the
+   * new or modified files of all the folders are probed newest first together.
+   *
    * @param context Required for internal use
-   * @param path Files are scanned from this specified path. Note: It is not a recursive
+   * @param library The listed folders
    * @param filenameFilter Used to filter the file matching the filter criteria
-   * @return List of files from specified path which are matching the filter passed
+   * @param isCancelled Polled between the batches
+   * @return Whether the scan completed, false if it was cancelled
    */
-  @NonNull
-  public static List<Recording> getAllFilesFromDirectory(
-      Context context, String path, FilenameFilter filenameFilter) {
-    List<Recording> recordings = new ArrayList<>();
-    File directory = new File(path);
-    if (!directory.exists()) {
-      boolean dirCreated = directory.mkdirs();
-      Log.d(TAG, "Directory created: " + dirCreated);
+  public static boolean indexLibrary(
+      Context context,
+      RecordingLibrary library,
+      FilenameFilter filenameFilter,
+      BooleanSupplier isCancelled) {
+    if (!library.isRecursive()) {
+      return indexDirectory(context, library.getStoragePath(), filenameFilter, isCancelled);
+    }
+    createDirectory(library.getStoragePath());
+    Set<String> skippedFolders = new HashSet<>();
+    Map<String, List<File>> folders =
+        new DirectoryWalker(MetadataProber.getDefaultThreadCount())
+            .walk(library.getRoots(), filenameFilter, isCancelled, skippedFolders);
+    if (isCancelled.getAsBoolean()) {
+      return false;
     }
-    File[] files = directory.listFiles(filenameFilter);
+
+    RecordingIndex recordingIndex = RecordingIndex.getInstance(context);
+    Map<String, RecordingIndex.Entry> storeEntries =
+        MediaStoreSource.query(context, new ArrayList<>(folders.keySet()));
+    List<RecordingIndex.Entry> unprobedEntries = new ArrayList<>();
+    List<String> walkedRoots = new ArrayList<>();
+    for (String root : library.getRoots()) {
+      // A root which can not be read e.g. an unmounted volume keeps its entries
+      if (folders.containsKey(root)) {
+        walkedRoots.add(root);
+      }
+    }
+    for (String directory : recordingIndex.getDirectories(walkedRoots)) {
+      // The folders which were not walked keep their entries, like the roots
+      if (!folders.containsKey(directory) && !isInFolders(directory, skippedFolders)) {
+        removeStaleEntries(recordingIndex, directory, Collections.emptyList(), null);
+      }
+    }
+    int fileCount = 0;
+    for (Map.Entry<String, List<File>> folder : folders.entrySet()) {
+      fileCount += folder.getValue().size();
+      unprobedEntries.addAll(
+          removeStaleEntries(recordingIndex, folder.getKey(), folder.getValue(), storeEntries));
+    }
+    requestStoreScan(context, storeEntries, unprobedEntries);
+    if (!probeInBatches(recordingIndex, unprobedEntries, isCancelled)) {
+      return false;
+    }
+    Log.d(
+        TAG,
+        "Scanned "
+            + fileCount
+            + " files in "
+            + folders.size()
+            + " folders, probed "
+            + unprobedEntries.size());
+    return true;
+  }
+
+  /**
+   * Brings the {@link RecordingIndex} up to date with the files of the directory. The metadata of
+   * the unchanged files is served from the index, only the new or modified files are probed. The
+   * files which no longer exist are removed from the index first, then the files to probe are
+   * probed newest first in batches, and every batch is committed to the index on its own. The
+   * batches start at about a screen of rows and double in size, so the observers of the index can
+   * list the first rows quickly and the rest are added with few list updates. A cancelled scan
+   * stops between two batches, the batches committed so far are kept.
+   *
+   * <p>Where the {@link MediaStoreSource} is supported, the size, the modification time and the
+   * duration of the files known to the media store are read from a single query instead of the
+   * files, only the files it does not know yet are stat-ed and probed.
+   *
+   * @param context Required for internal use
+   * @param path Files are scanned from this specified path. Note: It is not a recursive
+   * @param filenameFilter Used to filter the file matching the filter criteria
+   * @param isCancelled Polled between the batches
+   * @return Whether the scan completed, false if it was cancelled
+   */
+  public static boolean indexDirectory(
+      Context context, String path, FilenameFilter filenameFilter, BooleanSupplier isCancelled) {
+    createDirectory(path);
+    File[] files = new File(path).listFiles(filenameFilter);
 
     if (files == null) {
       // Means pathname does not denote a directory, or if an I/O error occurs.
       // Or could be due to missing storage permissions
       Log.e(TAG, "Problem accessing path: " + path);
-      return recordings;
+      return true;
+    }
+    if (isCancelled.getAsBoolean()) {
+      return false;
+    }
+
+    RecordingIndex recordingIndex = RecordingIndex.getInstance(context);
+    Map<String, RecordingIndex.Entry> storeEntries =
+        MediaStoreSource.query(context, Collections.singletonList(path));
+    List<RecordingIndex.Entry> unprobedEntries =
+        removeStaleEntries(recordingIndex, path, Arrays.asList(files), storeEntries);
+    requestStoreScan(context, storeEntries, unprobedEntries);
+    if (!probeInBatches(recordingIndex, unprobedEntries, isCancelled)) {
+      return false;
     }
-    Arrays.sort(files, (f1, f2) -> Long.compare(f2.lastModified(), f1.lastModified()));
+    Log.d(TAG, "Scanned " + files.length + " files, probed " + unprobedEntries.size());
+    return true;
+  }
+
+  private static boolean isInFolders(String directory, Set<String> folders) {
+    for (String folder : folders) {
+      if (directory.equals(folder) || directory.startsWith(folder + File.separator)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void createDirectory(String path) {
+    File directory = new File(path);
+    if (!directory.exists()) {
+      boolean dirCreated = directory.mkdirs();
+      Log.d(TAG, "Directory created: " + dirCreated);
+    }
+  }
+
+  /**
+   * Removes the entries of the files of the directory which no longer exist from the index. The
+   * files known to the media store are served from its rows, the new or modified ones are indexed
+   * right away when the store has their duration.
+   *
+   * @param storeEntries The entries read from the media store, null if it is not used
+   * @return The entries of the files which are new or were modified since they were indexed
+   */
+  private static List<RecordingIndex.Entry> removeStaleEntries(
+      RecordingIndex recordingIndex,
+      String directory,
+      List<File> files,
+      @Nullable Map<String, RecordingIndex.Entry> storeEntries) {
+    // Whatever is left in the map after the scan no longer exists
+    Map<String, RecordingIndex.Entry> indexedEntries = recordingIndex.getEntries(directory);
+    List<RecordingIndex.Entry> storedEntries = new ArrayList<>();
+    List<RecordingIndex.Entry> unprobedEntries = new ArrayList<>();
 
     for (File file : files) {
+      RecordingIndex.Entry entry = indexedEntries.remove(file.getPath());
+      RecordingIndex.Entry storeEntry =
+          storeEntries != null ? storeEntries.get(file.getPath()) : null;
+      if (storeEntry != null) {
+        if (entry != null && entry.matches(storeEntry.getSize(), storeEntry.getModified())) {
+          continue;
+        }
+        if (storeEntry.getDuration() != RecordingIndex.Entry.DURATION_UNKNOWN) {
+          storedEntries.add(storeEntry);
+        } else {
+          unprobedEntries.add(storeEntry);
+        }
+        continue;
+      }
+      long size = file.length();
+      long modified = file.lastModified();
+      if (entry == null || !entry.matches(size, modified)) {
+        unprobedEntries.add(
+            new RecordingIndex.Entry(
+                file.getPath(),
+                directory,
+                size,
+                modified,
+                RecordingIndex.Entry.DURATION_UNKNOWN));
+      }
+    }
+    recordingIndex.update(storedEntries, indexedEntries.keySet());
+    return unprobedEntries;
+  }
+
+  // The files missing from the store are probed this time, and served by the store next time
+  private static void requestStoreScan(
+      Context context,
+      @Nullable Map<String, RecordingIndex.Entry> storeEntries,
+      List<RecordingIndex.Entry> unprobedEntries) {
+    if (storeEntries == null) {
+      return;
+    }
+    List<String> paths = new ArrayList<>();
+    for (RecordingIndex.Entry entry : unprobedEntries) {
+      if (!storeEntries.containsKey(entry.getPath())) {
+        paths.add(entry.getPath());
+      }
+    }
+    MediaStoreSource.scanFiles(context, paths);
+  }
+
+  /** @return Whether all the entries were probed, false if cancelled */
+  private static boolean probeInBatches(
+      RecordingIndex recordingIndex,
+      List<RecordingIndex.Entry> unprobedEntries,
+      BooleanSupplier isCancelled) {
+    // Sorted before probing, so the batches are produced in the order of the list
+    Collections.sort(
+        unprobedEntries,
+        (e1, e2) -> {
+          int result = Long.compare(e2.getModified(), e1.getModified());
+          return result != 0 ? result : e1.getPath().compareTo(e2.getPath());
+        });
+
+    // The worker threads of the prober are shared by all the batches of the scan
+    MetadataProber metadataProber =
+        new MetadataProber(
+            MetadataProber.getDefaultThreadCount(),
+            runnable ->
+                new Thread(
+                    () -> {
+                      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                      runnable.run();
+                    },
+                    "MetadataProber"));
+    try {
+      int batchSize = FIRST_SCAN_BATCH_SIZE;
+      for (int start = 0; start < unprobedEntries.size(); start += batchSize) {
+        if (isCancelled.getAsBoolean()) {
+          Log.d(TAG, "Scan cancelled, probed " + start + " of " + unprobedEntries.size());
+          return false;
+        }
+        if (start > 0) {
+          batchSize = Math.min(batchSize * 2, MAX_SCAN_BATCH_SIZE);
+        }
+        List<RecordingIndex.Entry> batch =
+            unprobedEntries.subList(start, Math.min(unprobedEntries.size(), start + batchSize));
+        recordingIndex.update(probeEntries(metadataProber, batch), Collections.emptyList());
+      }
+      return true;
+    } finally {
+      metadataProber.shutdown();
+    }
+  }
+
+  // Probes the files in parallel, which mostly matters for the first scan of a large directory
+  private static List<RecordingIndex.Entry> probeEntries(
+      MetadataProber metadataProber, List<RecordingIndex.Entry> entries) {
+    List<File> files = new ArrayList<>(entries.size());
+    for (RecordingIndex.Entry entry : entries) {
+      files.add(new File(entry.getPath()));
+    }
+
+    long[] durations;
+    try {
+      durations = metadataProber.probeAll(files, FileUtils::probeDuration);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // Nothing is indexed, the files are probed again by the next scan
+      return Collections.emptyList();
+    }
+
+    List<RecordingIndex.Entry> probedEntries = new ArrayList<>(entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      RecordingIndex.Entry entry = entries.get(i);
+      probedEntries.add(
+          new RecordingIndex.Entry(
+              entry.getPath(),
+              entry.getDirectory(),
+              entry.getSize(),
+              entry.getModified(),
+              durations[i]));
+    }
+    return probedEntries;
+  }
+
+  /**
+   * The duration is read from the headers by {@link DurationParser} when the format is supported,
+   * a {@link MediaMetadataRetriever} is only used for the other formats.
+   *
+   * @param file The media file
+   * @return The duration of the media file in milliseconds, {@link
+   *     RecordingIndex.Entry#DURATION_UNKNOWN} if it could not be determined
+   */
+  public static long probeDuration(File file) {
+    try {
+      long duration = DurationParser.parseDuration(file);
+      if (duration != RecordingIndex.Entry.DURATION_UNKNOWN) {
+        return duration;
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "Error parsing file: " + e.getMessage());
+    }
+    return probeDurationWithRetriever(file);
+  }
+
+  private static long probeDurationWithRetriever(File file) {
+    // Do not use instantiate MediaMetadataRetriever using try-with-resources
+    // Just call release method manually
+    // Since this class is updated with AutoClosable implementation in api 10
+    // If instantiated using try-with-resources it fails on older apis
+    // https://stackoverflow.com/questions/63631916/android-try-with-resources-no-method-found-close
+    @SuppressWarnings("java:S2095")
+    MediaMetadataRetriever mmr = new MediaMetadataRetriever();
+    try {
+      mmr.setDataSource(file.getPath());
+      return Long.parseLong(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+    } catch (Exception e) {
+      Log.e(TAG, "Error scanning file: " + e.getMessage());
+      return RecordingIndex.Entry.DURATION_UNKNOWN;
+    } finally {
       try {
-        // Do not use instantiate MediaMetadataRetriever using try-with-resources
-        // Just call release method manually
-        // Since this class is updated with AutoClosable implementation in api 10
-        // If instantiated using try-with-resources it fails on older apis
-        // https://stackoverflow.com/questions/63631916/android-try-with-resources-no-method-found-close
-
-        @SuppressWarnings("java:S2095")
-        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
-        Recording rec = new Recording();
-        rec.setName(getFilenameWithoutExt(file.getName()));
-        rec.setPath(file.getPath());
-        rec.setSize(file.length());
-        rec.setSizeInString(humanReadableByteCount(file.length(), true));
-        rec.setModifiedDateMilliSec(file.lastModified());
-        rec.setModifiedDateInString(humanReadableDate(file.lastModified()));
-        mmr.setDataSource(file.getPath());
-        long duration =
-            Long.parseLong(mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
-        rec.setDuration(duration);
-        rec.setDurationDetailedInString(humanReadableDurationDetailed(context, duration));
-        rec.setDurationShortInString(humanReadableDurationShort(context, duration));
-        recordings.add(rec);
         mmr.release();
       } catch (Exception e) {
-        Log.e(TAG, "Error scanning file: " + e.getMessage());
+        Log.e(TAG, "Error releasing retriever: " + e.getMessage());
       }
     }
-
-    return recordings;
   }
 
-  private static String getFilenameWithoutExt(String filename) {
-    return filename.replaceFirst("[.][^.]+$", "");
+  /**
+   * @param entry The indexed metadata of the recording
+   * @return The recording, its display strings are formatted when it is shown
+   */
+  static Recording createRecording(RecordingIndex.Entry entry) {
+    Recording rec = new Recording();
+    rec.setPath(entry.getPath());
+    rec.setSize(entry.getSize());
+    rec.setModifiedDateMilliSec(entry.getModified());
+    rec.setDuration(entry.getDuration());
+    return rec;
   }
 
   /**
@@ -132,8 +417,7 @@ public class FileUtils {
    * @return The date in "dd-MM-yyyy, hh:mm aa" format
    */
   public static String humanReadableDate(Date date) {
-    SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy, hh:mm aa", Locale.getDefault());
-    return dateFormat.format(date);
+    return getDateFormat().format(date);
   }
 
   /**
@@ -141,9 +425,19 @@ public class FileUtils {
    * @return The date in "dd-MM-yyyy, hh:mm aa" format
    */
   public static String humanReadableDate(long timestamp) {
-    Date date = new Date(timestamp);
-    SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy, hh:mm aa", Locale.getDefault());
-    return dateFormat.format(date);
+    return getDateFormat().format(new Date(timestamp));
+  }
+
+  // SimpleDateFormat is not thread safe and costly to create, every thread reuses its own
+  private static SimpleDateFormat getDateFormat() {
+    SimpleDateFormat dateFormat = DATE_FORMAT.get();
+    Locale locale = Locale.getDefault();
+    if (dateFormat == null || !locale.equals(DATE_FORMAT_LOCALE.get())) {
+      dateFormat = new SimpleDateFormat(READABLE_DATE_FORMAT, locale);
+      DATE_FORMAT.set(dateFormat);
+      DATE_FORMAT_LOCALE.set(locale);
+    }
+    return dateFormat;
   }
 
   /**
@@ -243,6 +537,54 @@ public class FileUtils {
         MainActivity.KEY_PREF_RECORDING_STORAGE_PATH, FileListFragment.DEFAULT_STORAGE_PATH);
   }
 
+  /**
+   * Lists the folders of the library, which is a disk operation, it must not be called on the UI
+   * thread
+   *
+   * @param context Required for internal use
+   * @param library The listed folders
+   * @param paths The paths of the moved files
+   * @return The roots of the library, their visible sub folders and the indexed folders below the
+   *     roots in library mode, sorted by path. The folder all the files are in is left out
+   */
+  public static List<String> getMoveTargetDirectories(
+      Context context, RecordingLibrary library, List<String> paths) {
+    SortedSet<String> directories = new TreeSet<>(library.getRoots());
+    for (String root : library.getRoots()) {
+      File[] subDirectories =
+          new File(root).listFiles(file -> file.isDirectory() && !file.isHidden());
+      if (subDirectories != null) {
+        for (File subDirectory : subDirectories) {
+          directories.add(subDirectory.getPath());
+        }
+      }
+    }
+    if (library.isRecursive()) {
+      directories.addAll(RecordingIndex.getInstance(context).getDirectories(library.getRoots()));
+    }
+    Set<String> sourceDirectories = new HashSet<>();
+    for (String path : paths) {
+      sourceDirectories.add(new File(path).getParent());
+    }
+    if (sourceDirectories.size() == 1) {
+      directories.removeAll(sourceDirectories);
+    }
+    return new ArrayList<>(directories);
+  }
+
+  /**
+   * @param context Required for internal use
+   * @return The folder of the app in the public downloads folder, the recordings are exported to
+   */
+  // The export is a FileBatch copying through file paths, which the legacy storage of the app
+  // allows, MediaStore.Downloads would need a content URI stream per file instead
+  @SuppressWarnings("deprecation")
+  public static File getExportDirectory(Context context) {
+    File downloads =
+        Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+    return new File(downloads, context.getString(R.string.app_name));
+  }
+
   public static String getBaseStoragePath() {
     return getExternalStorageDirectory().getAbsolutePath();
   }
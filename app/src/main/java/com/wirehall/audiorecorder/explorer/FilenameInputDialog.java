@@ -4,10 +4,7 @@ import android.app.Dialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.graphics.Color;
-import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -16,6 +13,9 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
+import androidx.annotation.Nullable;
+
+import com.wirehall.audiorecorder.IoExecutor;
 import com.wirehall.audiorecorder.R;
 import com.wirehall.audiorecorder.explorer.model.Recording;
 
@@ -54,58 +54,63 @@ public class FilenameInputDialog extends Dialog implements OnClickListener {
     final EditText editText = findViewById(R.id.et_filename_input_dialog);
 
     DialogInterface self = this;
-    Handler main = new Handler(Looper.getMainLooper());
+    IoExecutor ioExecutor = IoExecutor.getInstance();
 
     okButton.setOnClickListener(
         v -> {
-          AsyncTask.execute(() -> {
-            try {
-              String newRecordingName = editText.getText().toString();
-              if (newRecordingName.trim().isEmpty()) {
-                editText.setHintTextColor(Color.RED);
-                return;
-              }
-              File sourceFile = new File(filePath);
-              File targetFile =
-                      new File(
-                              sourceFile.getParent(),
-                              newRecordingName + FileUtils.DEFAULT_REC_FILENAME_EXTENSION);
-              if (sourceFile.exists() && sourceFile.renameTo(targetFile)) {
-                recording = new Recording();
-                recording.setName(newRecordingName);
-                recording.setPath(targetFile.getPath());
-              } else {
-                Log.e(TAG, "Problem renaming file: " + filePath + " to: " + newRecordingName);
-              }
-            } catch (Exception e) {
-              Log.e(TAG, e.getMessage());
-            }
-
-            main.post(() -> {
-              dismiss();
-              if (onSuccessDismissListener != null) {
-                onSuccessDismissListener.onDismiss(self);
-              }
-            });
-          });
+          String newRecordingName = editText.getText().toString();
+          if (newRecordingName.trim().isEmpty()) {
+            editText.setHintTextColor(Color.RED);
+            return;
+          }
+          ioExecutor.execute(
+              IoExecutor.Priority.USER_BLOCKING,
+              () -> renameFile(newRecordingName),
+              renamedRecording -> {
+                recording = renamedRecording;
+                dismiss();
+                if (onSuccessDismissListener != null) {
+                  onSuccessDismissListener.onDismiss(self);
+                }
+              });
         });
 
     cancelButton.setOnClickListener(
-            v -> {
-              AsyncTask.execute(() -> {
-                try {
-                  FileUtils.deleteFile(filePath);
-                } catch (Exception e) {
-                  Log.e(TAG, e.getMessage());
-                }
-
-                main.post(() -> dismiss());
-              });
-            });
+        v ->
+            ioExecutor.execute(
+                IoExecutor.Priority.USER_BLOCKING,
+                () -> {
+                  try {
+                    FileUtils.deleteFile(filePath);
+                  } catch (Exception e) {
+                    Log.e(TAG, e.getMessage());
+                  }
+                  return null;
+                },
+                result -> dismiss()));
 
     editText.setText(initialName);
   }
 
+  @Nullable
+  private Recording renameFile(String newRecordingName) {
+    try {
+      File sourceFile = new File(filePath);
+      File targetFile =
+          new File(
+              sourceFile.getParent(), newRecordingName + FileUtils.DEFAULT_REC_FILENAME_EXTENSION);
+      if (sourceFile.exists() && sourceFile.renameTo(targetFile)) {
+        Recording renamedRecording = new Recording();
+        renamedRecording.setPath(targetFile.getPath());
+        return renamedRecording;
+      }
+      Log.e(TAG, "Problem renaming file: " + filePath + " to: " + newRecordingName);
+    } catch (Exception e) {
+      Log.e(TAG, e.getMessage());
+    }
+    return null;
+  }
+
   public Recording getRenamedRecording() {
     return recording;
   }
@@ -0,0 +1,41 @@
+package com.wirehall.audiorecorder.explorer;
+
+import androidx.annotation.StringRes;
+
+import com.wirehall.audiorecorder.R;
+import com.wirehall.audiorecorder.explorer.index.RangeFilter;
+
+import java.util.concurrent.TimeUnit;
+
+/** The range filters offered in the list options menu of the file list */
+public enum ListFilterOption {
+  ALL(R.string.list_filter_all),
+  LAST_WEEK(R.string.list_filter_last_week),
+  LONGER_THAN_MINUTE(R.string.list_filter_longer_than_minute);
+
+  @StringRes private final int labelResId;
+
+  ListFilterOption(@StringRes int labelResId) {
+    this.labelResId = labelResId;
+  }
+
+  @StringRes
+  public int getLabelResId() {
+    return labelResId;
+  }
+
+  /**
+   * @param now The current time, the relative ranges are fixed when the option is selected
+   * @return The ranges of the option
+   */
+  public RangeFilter createRangeFilter(long now) {
+    switch (this) {
+      case LAST_WEEK:
+        return RangeFilter.NONE.withModified(now - TimeUnit.DAYS.toMillis(7), Long.MAX_VALUE);
+      case LONGER_THAN_MINUTE:
+        return RangeFilter.NONE.withDuration(TimeUnit.MINUTES.toMillis(1), Long.MAX_VALUE);
+      default:
+        return RangeFilter.NONE;
+    }
+  }
+}
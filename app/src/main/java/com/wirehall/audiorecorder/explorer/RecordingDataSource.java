@@ -0,0 +1,415 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.DataSource;
+import androidx.paging.PagedList;
+import androidx.paging.PositionalDataSource;
+
+import com.wirehall.audiorecorder.explorer.index.ListingSnapshot;
+import com.wirehall.audiorecorder.explorer.index.RangeFilter;
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex;
+import com.wirehall.audiorecorder.explorer.index.SearchIndex;
+import com.wirehall.audiorecorder.explorer.model.FileListItem;
+import com.wirehall.audiorecorder.explorer.model.RecordingFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Pages the recordings of a directory from the {@link RecordingIndex}, in the selected order of the
+ * file list and within the selected ranges. Only the pages around the visible rows are kept in
+ * memory, the rest of the list is made of placeholders, so the memory used by the list does not
+ * depend on the number of recordings. The data source is invalidated whenever the index changes,
+ * the list is then paged again from the current position. A change of order or of ranges only
+ * replaces the data source, the pages are read from the index of the new order on the paging
+ * thread.
+ *
+ * <p>The first data source of the list is served from the {@link ListingSnapshot} of the previous
+ * session when there is one, so the rows are shown before the index is even opened. The first
+ * change of the index, or the end of the scan, replaces it with a data source reading the index and
+ * the paged list applies the differences.
+ *
+ * <p>In library mode the recordings are grouped by folder, every folder is a section made of a
+ * {@link RecordingFolder} header followed by its recordings, none if the folder is collapsed. The
+ * sections are laid out from the recording count of every folder, which the index counts in a
+ * single pass, so a page is then read from the folders it overlaps alone.
+ *
+ * <p>While searching, the list is made of the recordings of the library matching the query, looked
+ * up in the {@link SearchIndex} once per data source, without the folder headers.
+ */
+class RecordingDataSource extends PositionalDataSource<FileListItem> {
+  // A file row is about 1/16 of the screen, a page covers about three screens of rows
+  private static final int PAGE_SIZE = 50;
+  // Loading starts once the rows come within two screens of the loaded ones, which is enough
+  // ahead of a fling for the rows to be bound before they scroll into view
+  private static final int PREFETCH_DISTANCE = 32;
+  private static final int INITIAL_LOAD_SIZE = PAGE_SIZE * 2;
+  // The pages farther away from the visible rows are dropped and replaced by placeholders
+  private static final int MAX_SIZE = PAGE_SIZE * 6;
+
+  private final RecordingIndex recordingIndex;
+  @Nullable private final SearchIndex searchIndex;
+  private final RecordingLibrary library;
+  private final Set<String> collapsedFolders;
+  @Nullable private final ListingSnapshot snapshot;
+  private final String query;
+  private final RecordingIndex.SortOrder sortOrder;
+  private final RangeFilter rangeFilter;
+  private final RecordingIndex.Observer indexObserver = this::invalidate;
+  // The last entry of every page read from the index, keyed by its position in the list, the pages
+  // are read from the closest one before them. Guarded by itself, the pages may load concurrently
+  private final NavigableMap<Integer, RecordingIndex.Entry> seekEntries = new TreeMap<>();
+  private int totalCount;
+  // Only in library mode, in the order of the list
+  private List<Section> sections;
+  // Only while searching
+  private List<RecordingIndex.Entry> searchResults;
+
+  private RecordingDataSource(
+      Context context,
+      RecordingLibrary library,
+      Set<String> collapsedFolders,
+      @Nullable ListingSnapshot snapshot,
+      String query,
+      RecordingIndex.SortOrder sortOrder,
+      RangeFilter rangeFilter) {
+    this.recordingIndex = RecordingIndex.getInstance(context);
+    this.searchIndex = query.isEmpty() ? null : SearchIndex.getInstance(context);
+    this.library = library;
+    this.collapsedFolders = collapsedFolders;
+    this.snapshot = snapshot;
+    this.query = query;
+    this.sortOrder = sortOrder;
+    this.rangeFilter = rangeFilter;
+    recordingIndex.addObserver(indexObserver);
+    addInvalidatedCallback(() -> recordingIndex.removeObserver(indexObserver));
+  }
+
+  /** @return The paging configuration of the file list */
+  static PagedList.Config createPagedListConfig() {
+    return new PagedList.Config.Builder()
+        .setPageSize(PAGE_SIZE)
+        .setPrefetchDistance(PREFETCH_DISTANCE)
+        .setInitialLoadSizeHint(INITIAL_LOAD_SIZE)
+        .setMaxSize(MAX_SIZE)
+        .setEnablePlaceholders(true)
+        .build();
+  }
+
+  @Override
+  public void loadInitial(
+      @NonNull LoadInitialParams params, @NonNull LoadInitialCallback<FileListItem> callback) {
+    if (searchIndex != null) {
+      searchResults =
+          searchIndex.search(
+              query,
+              entry -> library.contains(entry.getDirectory()) && rangeFilter.accepts(entry),
+              sortOrder.getComparator());
+      totalCount = searchResults.size();
+    } else if (library.isRecursive()) {
+      sections = createSections();
+      totalCount = sections.isEmpty() ? 0 : sections.get(sections.size() - 1).getEndPosition();
+    } else if (snapshot != null) {
+      totalCount = snapshot.getCount();
+    } else {
+      totalCount = recordingIndex.getListedCount(library.getStoragePath(), rangeFilter);
+    }
+    int position = computeInitialLoadPosition(params, totalCount);
+    int loadSize = computeInitialLoadSize(params, position, totalCount);
+    List<FileListItem> items = loadItems(position, loadSize, totalCount);
+    // Ignored by the paged list once invalidated
+    callback.onResult(items, position, totalCount);
+  }
+
+  @Override
+  public void loadRange(
+      @NonNull LoadRangeParams params, @NonNull LoadRangeCallback<FileListItem> callback) {
+    callback.onResult(loadItems(params.startPosition, params.loadSize, totalCount));
+  }
+
+  private List<FileListItem> loadItems(int position, int loadSize, int count) {
+    if (sections != null) {
+      return loadSectionItems(position, Math.max(0, Math.min(loadSize, count - position)));
+    }
+    String directory = library.getStoragePath();
+    List<RecordingIndex.Entry> entries;
+    if (searchResults != null) {
+      entries =
+          searchResults.subList(Math.min(position, count), Math.min(position + loadSize, count));
+    } else if (snapshot != null) {
+      entries = snapshot.getEntries(position, loadSize);
+    } else {
+      entries = getListedEntries(directory, 0, position, loadSize);
+    }
+    checkLoadedCount(entries.size(), Math.max(0, Math.min(loadSize, count - position)));
+
+    List<FileListItem> items = new ArrayList<>(entries.size());
+    for (RecordingIndex.Entry entry : entries) {
+      items.add(FileUtils.createRecording(entry));
+    }
+    return items;
+  }
+
+  // The rows of the directory start at the first position of the list
+  private List<RecordingIndex.Entry> getListedEntries(
+      String directory, int firstPosition, int position, int loadSize) {
+    Map.Entry<Integer, RecordingIndex.Entry> seekEntry;
+    synchronized (seekEntries) {
+      seekEntry = seekEntries.floorEntry(position - 1);
+    }
+    List<RecordingIndex.Entry> entries;
+    if (seekEntry != null && seekEntry.getKey() >= firstPosition) {
+      entries =
+          recordingIndex.getListedEntries(
+              directory,
+              sortOrder,
+              rangeFilter,
+              seekEntry.getValue(),
+              position - seekEntry.getKey() - 1,
+              loadSize);
+    } else {
+      entries =
+          recordingIndex.getListedEntries(
+              directory, sortOrder, rangeFilter, position - firstPosition, loadSize);
+    }
+    if (!entries.isEmpty()) {
+      synchronized (seekEntries) {
+        seekEntries.put(position + entries.size() - 1, entries.get(entries.size() - 1));
+      }
+    }
+    return entries;
+  }
+
+  private void checkLoadedCount(int loadedCount, int expectedCount) {
+    if (loadedCount != expectedCount) {
+      // The index changed after it was counted, the page would not fit the placeholders. The
+      // observer invalidates the data source anyway, this only closes the window until it does
+      invalidate();
+    }
+  }
+
+  private List<Section> createSections() {
+    Map<String, Integer> folderCounts =
+        recordingIndex.getListedFolderCounts(library.getRoots(), rangeFilter);
+    List<Section> newSections = new ArrayList<>(folderCounts.size());
+    int position = 0;
+    for (Map.Entry<String, Integer> folderCount : folderCounts.entrySet()) {
+      String path = folderCount.getKey();
+      boolean isCollapsed = collapsedFolders.contains(path);
+      RecordingFolder folder =
+          new RecordingFolder(path, getFolderName(path), folderCount.getValue(), isCollapsed);
+      Section section = new Section(folder, position, isCollapsed ? 0 : folderCount.getValue());
+      newSections.add(section);
+      position = section.getEndPosition();
+    }
+    return newSections;
+  }
+
+  // The path relative to the parent of its root, so the sub folders of the same name are told apart
+  private String getFolderName(String path) {
+    for (String root : library.getRoots()) {
+      if (path.equals(root) || path.startsWith(root + '/')) {
+        String rootParent = new File(root).getParent();
+        return rootParent != null ? path.substring(rootParent.length() + 1) : path;
+      }
+    }
+    return path;
+  }
+
+  private List<FileListItem> loadSectionItems(int position, int loadSize) {
+    List<FileListItem> items = new ArrayList<>(loadSize);
+    int end = position + loadSize;
+    int current = position;
+    int index = findSection(position);
+    while (current < end && index >= 0 && index < sections.size()) {
+      Section section = sections.get(index++);
+      if (current == section.startPosition) {
+        items.add(section.folder);
+        current++;
+      }
+      int rowOffset = current - section.startPosition - 1;
+      int rowCount = Math.min(section.rowCount - rowOffset, end - current);
+      if (rowCount > 0) {
+        List<RecordingIndex.Entry> entries =
+            getListedEntries(
+                section.folder.getPath(), section.startPosition + 1, current, rowCount);
+        for (RecordingIndex.Entry entry : entries) {
+          items.add(FileUtils.createRecording(entry));
+        }
+        current += rowCount;
+      }
+    }
+    checkLoadedCount(items.size(), loadSize);
+    return items;
+  }
+
+  // The section containing the position, by binary search over the start positions
+  private int findSection(int position) {
+    int low = 0;
+    int high = sections.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      Section section = sections.get(middle);
+      if (position < section.startPosition) {
+        high = middle - 1;
+      } else if (position >= section.getEndPosition()) {
+        low = middle + 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /** A folder header and the positions of its rows in the list */
+  private static class Section {
+    private final RecordingFolder folder;
+    private final int startPosition;
+    private final int rowCount;
+
+    private Section(RecordingFolder folder, int startPosition, int rowCount) {
+      this.folder = folder;
+      this.startPosition = startPosition;
+      this.rowCount = rowCount;
+    }
+
+    private int getEndPosition() {
+      return startPosition + 1 + rowCount;
+    }
+  }
+
+  /** Creates a data source for every generation of the paged list */
+  static class Factory extends DataSource.Factory<Integer, FileListItem> {
+    private final Context context;
+    private volatile RecordingLibrary library;
+    private volatile Set<String> collapsedFolders = Collections.emptySet();
+    private volatile String query = "";
+    private volatile RecordingIndex.SortOrder sortOrder = RecordingIndex.SortOrder.DATE;
+    private volatile RangeFilter rangeFilter = RangeFilter.NONE;
+    private volatile boolean isSnapshotPending = true;
+    private volatile boolean isServingSnapshot = false;
+
+    /**
+     * @param context Context required for internal operations
+     * @param library The folders whose recordings are listed
+     */
+    Factory(Context context, RecordingLibrary library) {
+      this.context = context.getApplicationContext();
+      this.library = library;
+    }
+
+    /**
+     * The current data source must be invalidated for the change to take effect
+     *
+     * @param library The folders whose recordings are listed
+     * @return Whether the library changed
+     */
+    boolean setLibrary(RecordingLibrary library) {
+      if (library.equals(this.library)) {
+        return false;
+      }
+      this.library = library;
+      return true;
+    }
+
+    /**
+     * The current data source must be invalidated for the change to take effect
+     *
+     * @param collapsedFolders The paths of the folders whose recordings are hidden in library mode
+     */
+    void setCollapsedFolders(Set<String> collapsedFolders) {
+      this.collapsedFolders = Collections.unmodifiableSet(new HashSet<>(collapsedFolders));
+    }
+
+    /**
+     * The current data source must be invalidated for the change to take effect
+     *
+     * @param query The words the listed recordings must contain, empty to list them all
+     * @return Whether the query changed
+     */
+    boolean setQuery(String query) {
+      if (query.equals(this.query)) {
+        return false;
+      }
+      this.query = query;
+      return true;
+    }
+
+    /**
+     * The current data source must be invalidated for the change to take effect
+     *
+     * @param sortOrder The order of the list
+     * @return Whether the order changed
+     */
+    boolean setSortOrder(RecordingIndex.SortOrder sortOrder) {
+      if (sortOrder == this.sortOrder) {
+        return false;
+      }
+      this.sortOrder = sortOrder;
+      return true;
+    }
+
+    /**
+     * The current data source must be invalidated for the change to take effect
+     *
+     * @param rangeFilter The ranges the listed recordings fall in
+     * @return Whether the ranges changed
+     */
+    boolean setRangeFilter(RangeFilter rangeFilter) {
+      if (rangeFilter.equals(this.rangeFilter)) {
+        return false;
+      }
+      this.rangeFilter = rangeFilter;
+      return true;
+    }
+
+    /**
+     * The current data source must be invalidated for the index to be read instead
+     *
+     * @return Whether the current data source is served from the listing snapshot
+     */
+    boolean isServingSnapshot() {
+      return isServingSnapshot;
+    }
+
+    @NonNull
+    @Override
+    public DataSource<Integer, FileListItem> create() {
+      RecordingLibrary currentLibrary = library;
+      String currentQuery = query;
+      RecordingIndex.SortOrder currentSortOrder = sortOrder;
+      RangeFilter currentRangeFilter = rangeFilter;
+      // Only the first data source, the following ones read the reconciled index. The snapshot
+      // only holds the unfiltered listing of a single directory in the default order
+      ListingSnapshot snapshot = null;
+      if (isSnapshotPending) {
+        isSnapshotPending = false;
+        if (!currentLibrary.isRecursive()
+            && currentQuery.isEmpty()
+            && currentSortOrder == RecordingIndex.SortOrder.DATE
+            && currentRangeFilter.equals(RangeFilter.NONE)) {
+          snapshot = ListingSnapshot.load(context, currentLibrary.getStoragePath());
+        }
+      }
+      isServingSnapshot = snapshot != null;
+      return new RecordingDataSource(
+          context,
+          currentLibrary,
+          collapsedFolders,
+          snapshot,
+          currentQuery,
+          currentSortOrder,
+          currentRangeFilter);
+    }
+  }
+}
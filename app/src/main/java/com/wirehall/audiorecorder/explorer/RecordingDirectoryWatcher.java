@@ -0,0 +1,146 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.content.Context;
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Watches the recording storage directory and applies the changed files to the {@link
+ * RecordingIndex}, so the file list is updated without scanning the whole directory again. The
+ * events are coalesced for a short while, e.g. a move produces two events and a recording being
+ * written produces a create and a close event.
+ */
+class RecordingDirectoryWatcher {
+  private static final String TAG = RecordingDirectoryWatcher.class.getName();
+  // A modification is applied once the writer closes the file
+  private static final int EVENT_MASK =
+      FileObserver.CREATE
+          | FileObserver.CLOSE_WRITE
+          | FileObserver.DELETE
+          | FileObserver.MOVED_FROM
+          | FileObserver.MOVED_TO;
+  private static final long COALESCE_DELAY_MS = 300;
+
+  private final Context context;
+  private final String path;
+  private final FilenameFilter filenameFilter;
+  private final Listener listener;
+  private final Set<String> pendingNames = new HashSet<>();
+  private final Runnable applyPendingChangesRunnable = this::applyPendingChanges;
+  private FileObserver fileObserver;
+  private HandlerThread handlerThread;
+  private Handler handler;
+
+  /**
+   * @param context Context required for internal operations
+   * @param path The watched directory
+   * @param filenameFilter Only the files matching the filter are indexed
+   * @param listener Notified on the watcher thread once the changes are applied to the index
+   */
+  RecordingDirectoryWatcher(
+      Context context, String path, FilenameFilter filenameFilter, Listener listener) {
+    this.context = context.getApplicationContext();
+    this.path = path;
+    this.filenameFilter = filenameFilter;
+    this.listener = listener;
+  }
+
+  /** Starts watching, the changes made while not watching are picked up by the next scan */
+  @SuppressWarnings("deprecation")
+  void start() {
+    if (fileObserver != null) {
+      return;
+    }
+    handlerThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+    handlerThread.start();
+    handler = new Handler(handlerThread.getLooper());
+
+    final File directory = new File(path);
+    // The File constructor requires API 29
+    fileObserver =
+        new FileObserver(path, EVENT_MASK) {
+          @Override
+          public void onEvent(int event, @Nullable String name) {
+            if (name == null || !filenameFilter.accept(directory, name)) {
+              return;
+            }
+            synchronized (pendingNames) {
+              pendingNames.add(name);
+            }
+            handler.removeCallbacks(applyPendingChangesRunnable);
+            handler.postDelayed(applyPendingChangesRunnable, COALESCE_DELAY_MS);
+          }
+        };
+    fileObserver.startWatching();
+  }
+
+  /** Stops watching, the pending changes are dropped */
+  void stop() {
+    if (fileObserver == null) {
+      return;
+    }
+    fileObserver.stopWatching();
+    fileObserver = null;
+    handler.removeCallbacksAndMessages(null);
+    handlerThread.quitSafely();
+    synchronized (pendingNames) {
+      pendingNames.clear();
+    }
+  }
+
+  private void applyPendingChanges() {
+    List<String> names;
+    synchronized (pendingNames) {
+      names = new ArrayList<>(pendingNames);
+      pendingNames.clear();
+    }
+
+    RecordingIndex recordingIndex = RecordingIndex.getInstance(context);
+    List<RecordingIndex.Entry> changedEntries = new ArrayList<>();
+    List<File> changedFiles = new ArrayList<>();
+    List<String> removedPaths = new ArrayList<>();
+    for (String name : names) {
+      File file = new File(path, name);
+      if (!file.isFile()) {
+        removedPaths.add(file.getPath());
+        continue;
+      }
+      long size = file.length();
+      long modified = file.lastModified();
+      RecordingIndex.Entry entry = recordingIndex.getEntry(file.getPath());
+      if (entry == null || !entry.matches(size, modified)) {
+        changedEntries.add(
+            new RecordingIndex.Entry(
+                file.getPath(), path, size, modified, FileUtils.probeDuration(file)));
+        changedFiles.add(file);
+      }
+    }
+    if (changedEntries.isEmpty() && removedPaths.isEmpty()) {
+      return;
+    }
+
+    Log.d(TAG, "Changed: " + changedEntries.size() + ", removed: " + removedPaths.size());
+    recordingIndex.update(changedEntries, removedPaths);
+    listener.onRecordingsChanged(changedFiles);
+  }
+
+  /** Listener notified when the watched directory changes */
+  interface Listener {
+    /** @param changedFiles The new or modified files, the index is already updated */
+    void onRecordingsChanged(List<File> changedFiles);
+  }
+}
@@ -0,0 +1,95 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.content.Context;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats the metadata of the recordings for display when they are shown. The recent strings are
+ * kept in small LRU caches keyed by the formatted value, so a row scrolling back into view or rows
+ * sharing e.g. the same duration are not formatted again. An instance is confined to the thread
+ * using it, the file list uses its own on the UI thread.
+ */
+public class RecordingFormatter {
+  static final int CACHE_SIZE = 128; // a few screens of rows
+
+  private final Context context;
+  private final Map<Long, String> sizeCache = createCache();
+  private final Map<Long, String> dateCache = createCache();
+  private final Map<Long, String> durationCache = createCache();
+  private Locale locale = Locale.getDefault();
+
+  /** @param context Context required for the duration strings */
+  public RecordingFormatter(Context context) {
+    this.context = context;
+  }
+
+  private static Map<Long, String> createCache() {
+    return new LinkedHashMap<Long, String>(CACHE_SIZE, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+        return size() > CACHE_SIZE;
+      }
+    };
+  }
+
+  /**
+   * @param size The size in bytes
+   * @return The size with SI prefix e.g. "1.7 kB"
+   */
+  public String formatSize(long size) {
+    checkLocale();
+    String text = sizeCache.get(size);
+    if (text == null) {
+      text = FileUtils.humanReadableByteCount(size, true);
+      sizeCache.put(size, text);
+    }
+    return text;
+  }
+
+  /**
+   * @param modified The modification time in milliseconds
+   * @return The date in "dd-MM-yyyy, hh:mm aa" format
+   */
+  public String formatModifiedDate(long modified) {
+    checkLocale();
+    // The format has a resolution of a minute
+    long minutes = Math.floorDiv(modified, TimeUnit.MINUTES.toMillis(1));
+    String text = dateCache.get(minutes);
+    if (text == null) {
+      text = FileUtils.humanReadableDate(modified);
+      dateCache.put(minutes, text);
+    }
+    return text;
+  }
+
+  /**
+   * @param duration The duration in milliseconds
+   * @return The duration in the short "mm:ss" or "hh:mm:ss" format
+   */
+  public String formatDuration(long duration) {
+    checkLocale();
+    // The format has a resolution of a second
+    long seconds = TimeUnit.MILLISECONDS.toSeconds(duration);
+    String text = durationCache.get(seconds);
+    if (text == null) {
+      text = FileUtils.humanReadableDurationShort(context, duration);
+      durationCache.put(seconds, text);
+    }
+    return text;
+  }
+
+  // The cached strings are formatted for the locale in use when they were cached
+  private void checkLocale() {
+    Locale currentLocale = Locale.getDefault();
+    if (!currentLocale.equals(locale)) {
+      locale = currentLocale;
+      sizeCache.clear();
+      dateCache.clear();
+      durationCache.clear();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.preference.PreferenceManager;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static com.wirehall.audiorecorder.setting.SettingActivity.KEY_PREF_LIBRARY_MODE;
+
+/**
+ * The folders whose recordings are listed. By default only the recording storage directory is
+ * listed. In library mode the sub folders are listed too, grouped by folder, and so is the same
+ * directory on the other mounted storage volumes e.g. an SD card.
+ */
+public final class RecordingLibrary {
+  private final List<String> roots;
+  private final boolean isRecursive;
+
+  /**
+   * @param roots The listed folders, the first one is the recording storage directory
+   * @param isRecursive Whether the sub folders of the roots are listed too
+   */
+  RecordingLibrary(List<String> roots, boolean isRecursive) {
+    this.roots = Collections.unmodifiableList(new ArrayList<>(roots));
+    this.isRecursive = isRecursive;
+  }
+
+  /**
+   * Lists the mounted storage volumes, which is a disk operation, it must not be called on the UI
+   * thread
+   *
+   * @param context Context required for internal operations
+   * @return The library configured in the preferences
+   */
+  public static RecordingLibrary fromPreferences(Context context) {
+    RecordingLibrary storageLibrary = ofStorageDirectory(context);
+    if (!storageLibrary.isRecursive()) {
+      return storageLibrary;
+    }
+
+    String storagePath = storageLibrary.getStoragePath();
+    List<String> roots = new ArrayList<>();
+    roots.add(storagePath);
+    String basePath = FileUtils.getBaseStoragePath();
+    if (storagePath.startsWith(basePath + '/')) {
+      String relativePath = storagePath.substring(basePath.length());
+      for (String volumePath : getOtherVolumePaths(context, basePath)) {
+        File volumeDirectory = new File(volumePath + relativePath);
+        if (volumeDirectory.isDirectory()) {
+          roots.add(volumeDirectory.getPath());
+        }
+      }
+    }
+    return new RecordingLibrary(roots, true);
+  }
+
+  /**
+   * Same as {@link #fromPreferences(Context)} without the other storage volumes, so it can be
+   * called on the UI thread
+   *
+   * @param context Context required for internal operations
+   * @return The library of the recording storage directory alone, in the configured mode
+   */
+  public static RecordingLibrary ofStorageDirectory(Context context) {
+    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+    // Normalized like the paths of the listed files
+    String storagePath = new File(FileUtils.getRecordingStoragePath(context)).getPath();
+    return new RecordingLibrary(
+        Collections.singletonList(storagePath), prefs.getBoolean(KEY_PREF_LIBRARY_MODE, false));
+  }
+
+  // The app specific directories are at Android/data/<package>/files of every mounted volume
+  private static List<String> getOtherVolumePaths(Context context, String basePath) {
+    List<String> volumePaths = new ArrayList<>();
+    for (File appDirectory : context.getExternalFilesDirs(null)) {
+      if (appDirectory == null) {
+        // The volume is not mounted
+        continue;
+      }
+      String path = appDirectory.getPath();
+      int dataIndex = path.indexOf("/Android/data/");
+      if (dataIndex > 0 && !path.substring(0, dataIndex).equals(basePath)) {
+        volumePaths.add(path.substring(0, dataIndex));
+      }
+    }
+    return volumePaths;
+  }
+
+  /** @return The listed folders, the first one is the recording storage directory */
+  public List<String> getRoots() {
+    return roots;
+  }
+
+  /** @return The recording storage directory */
+  public String getStoragePath() {
+    return roots.get(0);
+  }
+
+  /** @return Whether the sub folders of the roots are listed too, grouped by folder */
+  public boolean isRecursive() {
+    return isRecursive;
+  }
+
+  /**
+   * @param directory The path of a folder
+   * @return Whether the recordings of the folder are listed
+   */
+  public boolean contains(String directory) {
+    for (String root : roots) {
+      if (directory.equals(root) || (isRecursive && directory.startsWith(root + '/'))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    return "RecordingLibrary{" + "roots=" + roots + ", isRecursive=" + isRecursive + '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    RecordingLibrary that = (RecordingLibrary) o;
+    return isRecursive == that.isRecursive && roots.equals(that.roots);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(roots, isRecursive);
+  }
+}
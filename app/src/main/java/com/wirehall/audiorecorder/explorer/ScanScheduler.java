@@ -0,0 +1,217 @@
+package com.wirehall.audiorecorder.explorer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.wirehall.audiorecorder.IoExecutor;
+
+import java.io.FilenameFilter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This is a singleton class running the scans of the recording storage directory one at a time.
+ * A request made while a scan is running cancels it, the scan stops after the batch it is indexing,
+ * and the requests made meanwhile are coalesced into a single scan. Only the newest request is
+ * notified of the completion, so the requests made in quick succession (save, rename, settings
+ * change) can not finish out of order. A scan which fails is counted apart from the cancelled
+ * ones, its request is notified like a completed one so the list shows what was indexed.
+ */
+public class ScanScheduler {
+  private static final String TAG = ScanScheduler.class.getName();
+
+  private static ScanScheduler scanScheduler;
+
+  private final Executor executor;
+  private final Executor mainExecutor;
+  private final AtomicInteger generation = new AtomicInteger();
+
+  // Guarded by this
+  private ScanRequest pendingRequest;
+  private boolean isRunning = false;
+  private int requestCount;
+  private int coalescedCount;
+  private int cancelledCount;
+  private int failedCount;
+  private int completedCount;
+  private long totalScanNanos;
+  private long maxScanNanos;
+  private long lastScanNanos;
+
+  /**
+   * @param executor Runs the scans
+   * @param mainExecutor Notifies the listeners, on the UI thread outside of the tests
+   */
+  ScanScheduler(Executor executor, Executor mainExecutor) {
+    this.executor = executor;
+    this.mainExecutor = mainExecutor;
+  }
+
+  /** @return The singleton instance of ScanScheduler */
+  public static synchronized ScanScheduler getInstance() {
+    if (scanScheduler == null) {
+      Handler mainHandler = new Handler(Looper.getMainLooper());
+      scanScheduler =
+          new ScanScheduler(
+              task -> IoExecutor.getInstance().execute(IoExecutor.Priority.BACKGROUND, task),
+              mainHandler::post);
+    }
+    return scanScheduler;
+  }
+
+  /**
+   * Requests a scan of the library into the recording index, see {@link FileUtils#indexLibrary}.
+   * A running scan is cancelled in favour of the new request.
+   *
+   * @param context Context required for internal operations
+   * @param library The scanned folders
+   * @param filenameFilter Used to filter the file matching the filter criteria
+   * @param listener Notified on the UI thread once the scan is done, unless a newer request is
+   *     made meanwhile
+   */
+  public void requestScan(
+      Context context, RecordingLibrary library, FilenameFilter filenameFilter, Listener listener) {
+    final Context appContext = context.getApplicationContext();
+    requestScan(
+        library,
+        isCancelled -> FileUtils.indexLibrary(appContext, library, filenameFilter, isCancelled),
+        listener);
+  }
+
+  /**
+   * @param library The scanned folders
+   * @param scan Runs the scan
+   * @param listener Notified once the scan is done, unless a newer request is made meanwhile
+   */
+  synchronized void requestScan(RecordingLibrary library, Scan scan, Listener listener) {
+    requestCount++;
+    if (pendingRequest != null) {
+      coalescedCount++;
+    }
+    pendingRequest = new ScanRequest(generation.incrementAndGet(), library, scan, listener);
+    if (!isRunning) {
+      isRunning = true;
+      // A single scan runs at a time, the requests made meanwhile are picked up by the same task
+      executor.execute(this::runPendingRequests);
+    }
+  }
+
+  private void runPendingRequests() {
+    while (true) {
+      ScanRequest request;
+      synchronized (this) {
+        request = pendingRequest;
+        pendingRequest = null;
+        if (request == null) {
+          isRunning = false;
+          return;
+        }
+      }
+
+      long startNanos = System.nanoTime();
+      Result result;
+      try {
+        boolean isCompleted = request.scan.run(() -> request.generation != generation.get());
+        result = isCompleted ? Result.COMPLETED : Result.CANCELLED;
+      } catch (Exception e) {
+        Log.e(TAG, "Problem scanning " + request.library + ": " + e.getMessage());
+        result = Result.FAILED;
+      }
+      onScanEnded(request, result, System.nanoTime() - startNanos);
+    }
+  }
+
+  private void onScanEnded(ScanRequest request, Result result, long scanNanos) {
+    synchronized (this) {
+      switch (result) {
+        case COMPLETED:
+          completedCount++;
+          totalScanNanos += scanNanos;
+          maxScanNanos = Math.max(maxScanNanos, scanNanos);
+          lastScanNanos = scanNanos;
+          break;
+        case CANCELLED:
+          cancelledCount++;
+          break;
+        case FAILED:
+          failedCount++;
+          break;
+      }
+    }
+    Log.d(TAG, "Scan " + result.name().toLowerCase(Locale.ROOT) + " in " + scanNanos + "ns");
+
+    mainExecutor.execute(
+        () -> {
+          // A newer request may have been made while the result was posted
+          if (request.generation == generation.get()) {
+            request.listener.onScanFinished(request.library);
+          }
+        });
+  }
+
+  /**
+   * Dumps the scan metrics
+   *
+   * @param prefix Prefix of every line
+   * @param writer Writer used for the output
+   */
+  public synchronized void dump(String prefix, PrintWriter writer) {
+    writer.print(prefix);
+    writer.println("Recording scans:");
+    writer.print(prefix);
+    writer.println(
+        String.format(
+            Locale.US,
+            "  requests=%d coalesced=%d cancelled=%d failed=%d completed=%d"
+                + " avg=%dms max=%dms last=%dms",
+            requestCount,
+            coalescedCount,
+            cancelledCount,
+            failedCount,
+            completedCount,
+            completedCount > 0 ? TimeUnit.NANOSECONDS.toMillis(totalScanNanos / completedCount) : 0,
+            TimeUnit.NANOSECONDS.toMillis(maxScanNanos),
+            TimeUnit.NANOSECONDS.toMillis(lastScanNanos)));
+  }
+
+  /** Listener notified when the newest requested scan is done */
+  public interface Listener {
+    /** @param library The scanned folders */
+    void onScanFinished(RecordingLibrary library);
+  }
+
+  /** A single scan of the library */
+  interface Scan {
+    /**
+     * @param isCancelled Whether a newer request was made, the scan then stops early
+     * @return True if the scan completed, false if it was cancelled
+     */
+    boolean run(BooleanSupplier isCancelled);
+  }
+
+  private enum Result {
+    COMPLETED,
+    CANCELLED,
+    FAILED
+  }
+
+  private static class ScanRequest {
+    private final int generation;
+    private final RecordingLibrary library;
+    private final Scan scan;
+    private final Listener listener;
+
+    private ScanRequest(int generation, RecordingLibrary library, Scan scan, Listener listener) {
+      this.generation = generation;
+      this.library = library;
+      this.scan = scan;
+      this.listener = listener;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Walks trees of folders in parallel on a work-stealing pool. Every folder is listed by its own
+ * task, which forks one task per sub folder, so an idle worker steals the pending folders of a busy
+ * one and a deep or wide tree keeps all the workers busy. Hidden folders and symbolic links are
+ * not followed, the latter could make the walk loop.
+ */
+public class DirectoryWalker {
+  // Deeper folders are not walked, a safeguard against pathological trees
+  static final int MAX_DEPTH = 16;
+
+  private final int parallelism;
+
+  /** @param parallelism The maximum number of folders listed at once */
+  public DirectoryWalker(int parallelism) {
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * @param roots The folders to walk, together with all their sub folders
+   * @param filenameFilter Used to filter the file matching the filter criteria
+   * @param isCancelled Polled before every folder is listed
+   * @param skippedFolders Filled with the existing folders which were not walked, i.e. the folders
+   *     which can not be read and the folders deeper than {@link #MAX_DEPTH}. Their contents are
+   *     unknown, unlike the contents of the folders which no longer exist
+   * @return The matching files of every walked folder keyed by the path of the folder, including
+   *     the folders which have none, sorted by path. Incomplete if the walk was cancelled
+   */
+  public SortedMap<String, List<File>> walk(
+      List<String> roots,
+      FilenameFilter filenameFilter,
+      BooleanSupplier isCancelled,
+      Set<String> skippedFolders) {
+    SortedMap<String, List<File>> folders = new ConcurrentSkipListMap<>();
+    Set<String> skipped = new ConcurrentSkipListSet<>();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<WalkTask> tasks = new ArrayList<>(roots.size());
+      for (String root : roots) {
+        tasks.add(
+            new WalkTask(new File(root), 0, filenameFilter, isCancelled, folders, skipped));
+      }
+      pool.invoke(
+          new RecursiveAction() {
+            @Override
+            protected void compute() {
+              invokeAll(tasks);
+            }
+          });
+    } finally {
+      pool.shutdown();
+    }
+    skippedFolders.addAll(skipped);
+    return folders;
+  }
+
+  private static class WalkTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final File folder;
+    private final int depth;
+    private final FilenameFilter filenameFilter;
+    private final BooleanSupplier isCancelled;
+    private final SortedMap<String, List<File>> folders;
+    private final Set<String> skippedFolders;
+
+    private WalkTask(
+        File folder,
+        int depth,
+        FilenameFilter filenameFilter,
+        BooleanSupplier isCancelled,
+        SortedMap<String, List<File>> folders,
+        Set<String> skippedFolders) {
+      this.folder = folder;
+      this.depth = depth;
+      this.filenameFilter = filenameFilter;
+      this.isCancelled = isCancelled;
+      this.folders = folders;
+      this.skippedFolders = skippedFolders;
+    }
+
+    @Override
+    protected void compute() {
+      if (isCancelled.getAsBoolean()) {
+        return;
+      }
+      String[] names = folder.list();
+      if (names == null) {
+        // Not a folder anymore, or it can not be read
+        if (folder.isDirectory()) {
+          skippedFolders.add(folder.getPath());
+        }
+        return;
+      }
+
+      List<File> files = new ArrayList<>();
+      List<WalkTask> subTasks = new ArrayList<>();
+      for (String name : names) {
+        File file = new File(folder, name);
+        // Matched by name alone like File.listFiles(FilenameFilter), only the others are stat-ed
+        if (filenameFilter.accept(folder, name)) {
+          files.add(file);
+        } else if (!name.startsWith(".")
+            && file.isDirectory()
+            && !Files.isSymbolicLink(file.toPath())) {
+          if (depth < MAX_DEPTH) {
+            subTasks.add(
+                new WalkTask(
+                    file, depth + 1, filenameFilter, isCancelled, folders, skippedFolders));
+          } else {
+            skippedFolders.add(file.getPath());
+          }
+        }
+      }
+      folders.put(folder.getPath(), files.isEmpty() ? Collections.emptyList() : files);
+      invokeAll(subTasks);
+    }
+  }
+}
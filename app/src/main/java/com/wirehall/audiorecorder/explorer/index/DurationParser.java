@@ -0,0 +1,279 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the duration of the audio files from their headers alone, without decoding them or
+ * starting a native extractor. Two containers are supported:
+ *
+ * <ul>
+ *   <li>ADTS, the format written by the recorder: the frame headers are walked by skipping the
+ *       frame length, counting the samples of the complete frames. The file is read sequentially
+ *       through a reused buffer, mapping every scanned file would exhaust the address space
+ *       mappings of a large scan before they are released.
+ *   <li>MP4: the duration is read from the movie header, or from the media headers of the tracks
+ *       when the movie header has none. The boxes in between are skipped without being read.
+ * </ul>
+ *
+ * {@link RecordingIndex.Entry#DURATION_UNKNOWN} is returned for any other or malformed file, the
+ * caller is expected to fall back to a full probe then.
+ */
+public class DurationParser {
+  private static final int ADTS_HEADER_SIZE = 7;
+  private static final int ADTS_READ_SIZE = 64 * 1024;
+  private static final int ADTS_SAMPLES_PER_BLOCK = 1024;
+  private static final int[] ADTS_SAMPLE_RATES = {
+    96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+  };
+  private static final int ID3_HEADER_SIZE = 10;
+  private static final int ID3V1_TAG_SIZE = 128;
+  private static final int BOX_HEADER_SIZE = 8;
+  private static final int BOX_TYPE_FTYP = boxType("ftyp");
+  private static final int BOX_TYPE_MOOV = boxType("moov");
+  private static final int BOX_TYPE_MVHD = boxType("mvhd");
+  private static final int BOX_TYPE_TRAK = boxType("trak");
+  private static final int BOX_TYPE_MDIA = boxType("mdia");
+  private static final int BOX_TYPE_MDHD = boxType("mdhd");
+
+  private DurationParser() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /**
+   * @param file The audio file
+   * @return The duration in milliseconds, {@link RecordingIndex.Entry#DURATION_UNKNOWN} if the
+   *     format is not supported or the headers are malformed
+   * @throws IOException If the file could not be read
+   */
+  public static long parseDuration(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      ByteBuffer header = ByteBuffer.allocate(ID3_HEADER_SIZE);
+      if (!readFully(channel, header, 0)) {
+        return RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+
+      if (header.getInt(4) == BOX_TYPE_FTYP) {
+        return parseMp4Duration(channel, fileSize);
+      }
+      long start = 0;
+      if (header.get(0) == 'I' && header.get(1) == 'D' && header.get(2) == '3') {
+        // The size of the ID3v2 tag is a 28 bit syncsafe integer
+        start =
+            ID3_HEADER_SIZE
+                + ((header.get(6) & 0x7F) << 21
+                    | (header.get(7) & 0x7F) << 14
+                    | (header.get(8) & 0x7F) << 7
+                    | (header.get(9) & 0x7F));
+      }
+      return parseAdtsDuration(channel, start, fileSize);
+    }
+  }
+
+  private static long parseAdtsDuration(FileChannel channel, long start, long fileSize)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(ADTS_READ_SIZE);
+    long bufferStart = 0;
+    buffer.limit(0);
+    long position = start;
+    int sampleRate = 0;
+    long samples = 0;
+
+    while (position + ADTS_HEADER_SIZE <= fileSize) {
+      if (position + ADTS_HEADER_SIZE > bufferStart + buffer.limit()) {
+        // The frames are only a few hundred bytes, a read covers many headers
+        buffer.clear();
+        readFully(channel, buffer, position);
+        buffer.flip();
+        bufferStart = position;
+        if (buffer.limit() < ADTS_HEADER_SIZE) {
+          // The file was truncated meanwhile
+          break;
+        }
+      }
+      int offset = (int) (position - bufferStart);
+      if ((buffer.get(offset) & 0xFF) != 0xFF || (buffer.get(offset + 1) & 0xF6) != 0xF0) {
+        if (sampleRate != 0 && isId3v1Tag(buffer, offset, fileSize - position)) {
+          break;
+        }
+        // Not ADTS, or the stream is corrupt
+        return RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+      int sampleRateIndex = (buffer.get(offset + 2) & 0x3C) >> 2;
+      int frameLength =
+          (buffer.get(offset + 3) & 0x03) << 11
+              | (buffer.get(offset + 4) & 0xFF) << 3
+              | (buffer.get(offset + 5) & 0xE0) >> 5;
+      int blocks = (buffer.get(offset + 6) & 0x03) + 1;
+      if (sampleRateIndex >= ADTS_SAMPLE_RATES.length || frameLength < ADTS_HEADER_SIZE) {
+        return RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+      if (sampleRate == 0) {
+        sampleRate = ADTS_SAMPLE_RATES[sampleRateIndex];
+      }
+      if (position + frameLength > fileSize) {
+        // The last frame is incomplete e.g. the file is still being written
+        break;
+      }
+      samples += (long) blocks * ADTS_SAMPLES_PER_BLOCK;
+      position += frameLength;
+    }
+
+    if (sampleRate == 0) {
+      return RecordingIndex.Entry.DURATION_UNKNOWN;
+    }
+    return samples * 1000 / sampleRate;
+  }
+
+  private static boolean isId3v1Tag(ByteBuffer buffer, int offset, long remaining) {
+    return remaining == ID3V1_TAG_SIZE
+        && buffer.get(offset) == 'T'
+        && buffer.get(offset + 1) == 'A'
+        && buffer.get(offset + 2) == 'G';
+  }
+
+  private static long parseMp4Duration(FileChannel channel, long fileSize) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(BOX_HEADER_SIZE);
+    long position = 0;
+    while (position < fileSize) {
+      long[] box = readBoxHeader(channel, header, position, fileSize);
+      if (box == null) {
+        return RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+      if (box[0] == BOX_TYPE_MOOV) {
+        return parseMoovDuration(channel, position + box[1], position + box[2]);
+      }
+      position += box[2];
+    }
+    return RecordingIndex.Entry.DURATION_UNKNOWN;
+  }
+
+  // The movie header has the duration of the longest track, unless it is left empty
+  private static long parseMoovDuration(FileChannel channel, long start, long end)
+      throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(BOX_HEADER_SIZE);
+    long trackDuration = RecordingIndex.Entry.DURATION_UNKNOWN;
+    long position = start;
+    while (position < end) {
+      long[] box = readBoxHeader(channel, header, position, end);
+      if (box == null) {
+        return RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+      if (box[0] == BOX_TYPE_MVHD) {
+        long duration = readHeaderDuration(channel, position + box[1], position + box[2]);
+        if (duration > 0) {
+          return duration;
+        }
+      } else if (box[0] == BOX_TYPE_TRAK) {
+        long duration = parseContainerDuration(channel, position + box[1], position + box[2]);
+        trackDuration = Math.max(trackDuration, duration);
+      }
+      position += box[2];
+    }
+    return trackDuration;
+  }
+
+  // Finds the media header inside the trak and mdia boxes
+  private static long parseContainerDuration(FileChannel channel, long start, long end)
+      throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(BOX_HEADER_SIZE);
+    long position = start;
+    while (position < end) {
+      long[] box = readBoxHeader(channel, header, position, end);
+      if (box == null) {
+        return RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+      if (box[0] == BOX_TYPE_MDIA) {
+        return parseContainerDuration(channel, position + box[1], position + box[2]);
+      } else if (box[0] == BOX_TYPE_MDHD) {
+        long duration = readHeaderDuration(channel, position + box[1], position + box[2]);
+        return duration > 0 ? duration : RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+      position += box[2];
+    }
+    return RecordingIndex.Entry.DURATION_UNKNOWN;
+  }
+
+  /**
+   * @return The type, the header size and the total size of the box at the position, null if the
+   *     box does not fit the parent
+   */
+  private static long[] readBoxHeader(
+      FileChannel channel, ByteBuffer header, long position, long end) throws IOException {
+    header.clear();
+    if (position + BOX_HEADER_SIZE > end || !readFully(channel, header, position)) {
+      return null;
+    }
+    long boxSize = header.getInt(0) & 0xFFFFFFFFL;
+    int type = header.getInt(4);
+    int headerSize = BOX_HEADER_SIZE;
+    if (boxSize == 1) {
+      // The 64 bit size follows the type
+      header.clear();
+      if (!readFully(channel, header, position + BOX_HEADER_SIZE)) {
+        return null;
+      }
+      boxSize = header.getLong(0);
+      headerSize += BOX_HEADER_SIZE;
+    } else if (boxSize == 0) {
+      // The box extends to the end of its parent
+      boxSize = end - position;
+    }
+    if (boxSize < headerSize || position + boxSize > end) {
+      return null;
+    }
+    return new long[] {type, headerSize, boxSize};
+  }
+
+  // The movie and media headers share the layout up to the duration
+  private static long readHeaderDuration(FileChannel channel, long start, long end)
+      throws IOException {
+    ByteBuffer content = ByteBuffer.allocate(32);
+    content.limit((int) Math.min(content.capacity(), end - start));
+    if (!readFully(channel, content, start) || content.limit() < 20) {
+      return RecordingIndex.Entry.DURATION_UNKNOWN;
+    }
+    int version = content.get(0) & 0xFF;
+    long timescale;
+    long duration;
+    if (version == 1) {
+      if (content.limit() < 32) {
+        return RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+      timescale = content.getInt(20) & 0xFFFFFFFFL;
+      duration = content.getLong(24);
+    } else {
+      timescale = content.getInt(12) & 0xFFFFFFFFL;
+      duration = content.getInt(16) & 0xFFFFFFFFL;
+      if (duration == 0xFFFFFFFFL) {
+        // All ones means the duration is unknown
+        return RecordingIndex.Entry.DURATION_UNKNOWN;
+      }
+    }
+    if (timescale == 0 || duration < 0) {
+      return RecordingIndex.Entry.DURATION_UNKNOWN;
+    }
+    // Split to not overflow with large durations
+    return duration / timescale * 1000 + duration % timescale * 1000 / timescale;
+  }
+
+  /** @return Whether the buffer was filled, false if the end of the file was reached first */
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int boxType(String type) {
+    return type.charAt(0) << 24 | type.charAt(1) << 16 | type.charAt(2) << 8 | type.charAt(3);
+  }
+}
@@ -0,0 +1,224 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view of the last known listing of a directory, memory-mapped from a snapshot file. The
+ * snapshot is read without opening the recording index, so the file list can show the rows of the
+ * previous session right away while the index is reconciled with the file system in the
+ * background.
+ *
+ * <p>File layout: a header of {@code magic, version, count, directoryLength}, followed by one fixed
+ * width record of {@code size, modified, duration, nameOffset, nameLength} per entry in the order
+ * of the file list, then the string table holding the UTF-8 encoded directory followed by the file
+ * names. The name offsets are relative to the string table.
+ */
+public class ListingSnapshot {
+  private static final String TAG = ListingSnapshot.class.getName();
+  private static final String SNAPSHOT_FILE_NAME = "listing.snapshot";
+
+  static final int MAGIC = 0x4C495354; // "LIST"
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 16;
+  static final int RECORD_SIZE = 32;
+
+  private final MappedByteBuffer buffer;
+  private final String directory;
+  private final int count;
+  private final int stringTableOffset;
+
+  private ListingSnapshot(MappedByteBuffer buffer, String directory, int count) {
+    this.buffer = buffer;
+    this.directory = directory;
+    this.count = count;
+    this.stringTableOffset = HEADER_SIZE + count * RECORD_SIZE;
+  }
+
+  /**
+   * @param context Context required for internal operations
+   * @param directory The listed directory
+   * @return The snapshot of the directory, null if there is none or it can not be read
+   */
+  @Nullable
+  public static ListingSnapshot load(Context context, String directory) {
+    File file = getSnapshotFile(context);
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      ListingSnapshot snapshot = open(file);
+      // Only the listing of the last directory is kept
+      return snapshot.getDirectory().equals(directory) ? snapshot : null;
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to read the listing snapshot: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Saves the current listing of the directory from the recording index, replacing the previous
+   * snapshot. Reads the whole listing, it must not be called on the UI thread.
+   *
+   * @param context Context required for internal operations
+   * @param directory The listed directory
+   */
+  public static void save(Context context, String directory) {
+    RecordingIndex recordingIndex = RecordingIndex.getInstance(context);
+    List<RecordingIndex.Entry> entries =
+        recordingIndex.getListedEntries(directory, 0, recordingIndex.getListedCount(directory));
+    try {
+      write(getSnapshotFile(context), directory, entries);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to write the listing snapshot: " + e.getMessage());
+    }
+  }
+
+  private static File getSnapshotFile(Context context) {
+    return new File(context.getCacheDir(), SNAPSHOT_FILE_NAME);
+  }
+
+  /**
+   * @param file The snapshot file written by {@link #write}
+   * @return The memory-mapped snapshot
+   * @throws IOException If the file can not be read or is not a valid snapshot
+   */
+  static ListingSnapshot open(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        FileChannel channel = randomAccessFile.getChannel()) {
+      // The mapping stays valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.capacity() < HEADER_SIZE
+          || buffer.getInt(0) != MAGIC
+          || buffer.getInt(4) != VERSION) {
+        throw new IOException("Not a listing snapshot: " + file);
+      }
+      int count = buffer.getInt(8);
+      int directoryLength = buffer.getInt(12);
+      long stringTableOffset = HEADER_SIZE + (long) count * RECORD_SIZE;
+      if (count < 0 || directoryLength < 0) {
+        throw new IOException("Corrupt listing snapshot header: " + file);
+      }
+      // The names are written one after another, the last one ends the file
+      long expectedSize = stringTableOffset + directoryLength;
+      if (count > 0 && stringTableOffset <= buffer.capacity()) {
+        int lastRecord = HEADER_SIZE + (count - 1) * RECORD_SIZE;
+        expectedSize =
+            stringTableOffset + buffer.getInt(lastRecord + 24) + buffer.getInt(lastRecord + 28);
+      }
+      if (expectedSize != buffer.capacity()) {
+        throw new IOException("Truncated listing snapshot: " + file);
+      }
+      String directory = decode(buffer, (int) stringTableOffset, directoryLength);
+      return new ListingSnapshot(buffer, directory, count);
+    }
+  }
+
+  /**
+   * The snapshot is written under a temporary name and renamed, so readers never see a partially
+   * written file.
+   *
+   * @param file The snapshot file
+   * @param directory The listed directory
+   * @param entries The listed entries of the directory in the order of the file list
+   * @throws IOException If the file can not be written
+   */
+  static void write(File file, String directory, List<RecordingIndex.Entry> entries)
+      throws IOException {
+    byte[] directoryBytes = directory.getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream stringTable = new ByteArrayOutputStream();
+    stringTable.write(directoryBytes);
+
+    File tempFile = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(entries.size());
+      out.writeInt(directoryBytes.length);
+      for (RecordingIndex.Entry entry : entries) {
+        byte[] name = new File(entry.getPath()).getName().getBytes(StandardCharsets.UTF_8);
+        out.writeLong(entry.getSize());
+        out.writeLong(entry.getModified());
+        out.writeLong(entry.getDuration());
+        out.writeInt(stringTable.size());
+        out.writeInt(name.length);
+        stringTable.write(name);
+      }
+      stringTable.writeTo(out);
+    }
+    if (!tempFile.renameTo(file)) {
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
+      throw new IOException("Unable to rename " + tempFile + " to " + file);
+    }
+  }
+
+  private static String decode(MappedByteBuffer buffer, int offset, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(offset + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** @return The listed directory */
+  public String getDirectory() {
+    return directory;
+  }
+
+  /** @return The number of listed entries */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @param position Position of the entry in the list
+   * @return The entry at the position, only its record and name are read
+   */
+  public RecordingIndex.Entry getEntry(int position) {
+    if (position < 0 || position >= count) {
+      throw new IndexOutOfBoundsException("Position " + position + " of " + count);
+    }
+    int record = HEADER_SIZE + position * RECORD_SIZE;
+    String name =
+        decode(
+            buffer, stringTableOffset + buffer.getInt(record + 24), buffer.getInt(record + 28));
+    // Same path as the one listed by the scan
+    return new RecordingIndex.Entry(
+        new File(directory, name).getPath(),
+        directory,
+        buffer.getLong(record),
+        buffer.getLong(record + 8),
+        buffer.getLong(record + 16));
+  }
+
+  /**
+   * @param offset Position of the first entry in the list
+   * @param limit Maximum number of entries
+   * @return The entries at the given positions, in the order of the file list
+   */
+  public List<RecordingIndex.Entry> getEntries(int offset, int limit) {
+    int end = Math.min(count, offset + limit);
+    List<RecordingIndex.Entry> entries = new ArrayList<>(Math.max(0, end - offset));
+    for (int position = offset; position < end; position++) {
+      entries.add(getEntry(position));
+    }
+    return entries;
+  }
+}
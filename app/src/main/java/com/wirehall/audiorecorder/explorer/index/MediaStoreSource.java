@@ -0,0 +1,159 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the metadata of the recordings from the audio table of the media store. The size, the
+ * modification time and the duration of all the recordings of the listed folders are returned by a
+ * single query on the bucket id of the rows, which the store indexes, so the scans neither stat nor
+ * probe the files the store knows. The store is only used from Android 11 on, where it is updated
+ * whenever a file written through its path is closed, on the older versions its rows may be stale.
+ */
+public final class MediaStoreSource {
+  private static final String TAG = MediaStoreSource.class.getName();
+  // Below the limit of the bound arguments of a query
+  private static final int MAX_FOLDERS_PER_QUERY = 500;
+
+  @SuppressWarnings("deprecation") // The path of the file is the key of the index
+  private static final String[] PROJECTION = {
+    MediaStore.Audio.Media.DATA,
+    MediaStore.Audio.Media.SIZE,
+    MediaStore.Audio.Media.DATE_MODIFIED,
+    MediaStore.Audio.Media.DURATION
+  };
+
+  private MediaStoreSource() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /** @return Whether the rows of the media store can be used instead of the files themselves */
+  public static boolean isSupported() {
+    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+  }
+
+  /**
+   * @param context Context required for internal operations
+   * @param folders The listed folders, their sub folders are listed on their own
+   * @return The entries of the recordings known to the store keyed by their path, including the
+   *     files the scans filter out. Null if the store is not supported or could not be queried,
+   *     e.g. without the storage permission
+   */
+  @Nullable
+  public static Map<String, RecordingIndex.Entry> query(Context context, List<String> folders) {
+    if (!isSupported()) {
+      return null;
+    }
+    Map<String, RecordingIndex.Entry> entries = new HashMap<>();
+    Set<Integer> bucketIds = new LinkedHashSet<>();
+    for (String folder : folders) {
+      bucketIds.add(getBucketId(folder));
+    }
+    List<Integer> pendingBucketIds = new ArrayList<>(bucketIds);
+    for (int start = 0; start < pendingBucketIds.size(); start += MAX_FOLDERS_PER_QUERY) {
+      List<Integer> queryBucketIds =
+          pendingBucketIds.subList(
+              start, Math.min(pendingBucketIds.size(), start + MAX_FOLDERS_PER_QUERY));
+      if (!query(context, queryBucketIds, entries)) {
+        return null;
+      }
+    }
+    return entries;
+  }
+
+  // The rows of the folders which share a bucket id with the listed ones are queried too
+  private static boolean query(
+      Context context, List<Integer> bucketIds, Map<String, RecordingIndex.Entry> entries) {
+    StringBuilder selection = new StringBuilder(MediaStore.Audio.Media.BUCKET_ID).append(" IN (");
+    String[] selectionArgs = new String[bucketIds.size()];
+    for (int i = 0; i < bucketIds.size(); i++) {
+      selection.append(i > 0 ? ",?" : "?");
+      selectionArgs[i] = Integer.toString(bucketIds.get(i));
+    }
+    selection.append(')');
+
+    Uri uri = MediaStore.Audio.Media.getContentUri(MediaStore.VOLUME_EXTERNAL);
+    try (Cursor cursor =
+        context
+            .getContentResolver()
+            .query(uri, PROJECTION, selection.toString(), selectionArgs, null)) {
+      if (cursor == null) {
+        return false;
+      }
+      while (cursor.moveToNext()) {
+        RecordingIndex.Entry entry =
+            createEntry(
+                cursor.getString(0), cursor.getLong(1), cursor.getLong(2), cursor.getLong(3));
+        if (entry != null) {
+          entries.put(entry.getPath(), entry);
+        }
+      }
+      return true;
+    } catch (RuntimeException e) {
+      // A security exception without the permission, the files are read instead
+      Log.e(TAG, "Error querying media store: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Asks the store to read files it does not know yet, so that the next scans find their rows
+   *
+   * @param context Context required for internal operations
+   * @param paths The paths of the files
+   */
+  public static void scanFiles(Context context, List<String> paths) {
+    if (isSupported() && !paths.isEmpty()) {
+      MediaScannerConnection.scanFile(
+          context.getApplicationContext(), paths.toArray(new String[0]), null, null);
+    }
+  }
+
+  /**
+   * @param path The path of the file, null for the rows of the store which have none
+   * @param size The size of the file in bytes
+   * @param dateModified The modification time of the file in seconds
+   * @param duration The duration of the recording in milliseconds, 0 if the store has none
+   * @return The entry of the recording, null if the row has no path
+   */
+  @Nullable
+  static RecordingIndex.Entry createEntry(
+      @Nullable String path, long size, long dateModified, long duration) {
+    if (path == null) {
+      return null;
+    }
+    File file = new File(path);
+    return new RecordingIndex.Entry(
+        file.getPath(),
+        file.getParent(),
+        size,
+        TimeUnit.SECONDS.toMillis(dateModified),
+        duration > 0 ? duration : RecordingIndex.Entry.DURATION_UNKNOWN);
+  }
+
+  /**
+   * @param folder The path of a folder
+   * @return The bucket id of the files of the folder, computed by the store from the lower case
+   *     path of the folder
+   */
+  static int getBucketId(String folder) {
+    return new File(folder.toLowerCase(Locale.ROOT)).getPath().hashCode();
+  }
+}
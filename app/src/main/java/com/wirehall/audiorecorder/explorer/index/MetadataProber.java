@@ -0,0 +1,129 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Probes the metadata of many files on a bounded pool of worker threads. The workers pull the next
+ * file from a shared counter, so a slow file only holds up its own worker, and the results are
+ * stored by the index of the file so their order does not depend on the scheduling. A failure is
+ * isolated to the file it happened on.
+ *
+ * <p>The worker threads are started by the first parallel probe and reused by the next ones, so a
+ * scan probing its files in several batches uses a single prober and calls {@link #shutdown()}
+ * once it is done.
+ */
+public class MetadataProber {
+  // Below this the thread startup costs more than it saves
+  private static final int MIN_FILES_PER_THREAD = 4;
+
+  private final int threadCount;
+  private final ThreadFactory threadFactory;
+  @Nullable private ExecutorService executor;
+
+  /** @param threadCount The maximum number of files probed at once */
+  public MetadataProber(int threadCount) {
+    this(threadCount, Executors.defaultThreadFactory());
+  }
+
+  /**
+   * @param threadCount The maximum number of files probed at once
+   * @param threadFactory Creates the worker threads
+   */
+  public MetadataProber(int threadCount, ThreadFactory threadFactory) {
+    this.threadCount = Math.max(1, threadCount);
+    this.threadFactory = threadFactory;
+  }
+
+  /** @return The default number of worker threads, one per core */
+  public static int getDefaultThreadCount() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * @param files The files to probe
+   * @param probe Probes a single file, called concurrently from the worker threads
+   * @return The durations in the order of the files, {@link RecordingIndex.Entry#DURATION_UNKNOWN}
+   *     for the files which could not be probed
+   * @throws InterruptedException If interrupted while waiting for the workers
+   */
+  public long[] probeAll(final List<File> files, final Probe probe) throws InterruptedException {
+    final long[] durations = new long[files.size()];
+    final AtomicInteger nextIndex = new AtomicInteger();
+    Callable<Void> worker =
+        () -> {
+          int index;
+          while ((index = nextIndex.getAndIncrement()) < files.size()) {
+            durations[index] = probeSafely(probe, files.get(index));
+          }
+          return null;
+        };
+
+    int workerCount = Math.min(threadCount, files.size() / MIN_FILES_PER_THREAD);
+    if (workerCount <= 1) {
+      callUnchecked(worker);
+      return durations;
+    }
+
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(threadCount, threadFactory);
+    }
+    try {
+      List<Callable<Void>> workers = new ArrayList<>();
+      for (int i = 0; i < workerCount; i++) {
+        workers.add(worker);
+      }
+      for (Future<Void> future : executor.invokeAll(workers)) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      // probeSafely catches everything, only an Error can get here
+      throw new IllegalStateException(e.getCause());
+    }
+    // The futures make the writes of the workers visible to this thread
+    return durations;
+  }
+
+  /** Stops the worker threads, the prober can not be used afterwards */
+  public void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private static long probeSafely(Probe probe, File file) {
+    try {
+      return probe.probe(file);
+    } catch (RuntimeException e) {
+      return RecordingIndex.Entry.DURATION_UNKNOWN;
+    }
+  }
+
+  private static void callUnchecked(Callable<Void> callable) {
+    try {
+      callable.call();
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Probes the metadata of a single file */
+  public interface Probe {
+    /**
+     * @param file The file to probe
+     * @return The duration of the file in milliseconds, {@link
+     *     RecordingIndex.Entry#DURATION_UNKNOWN} if it could not be determined
+     */
+    long probe(File file);
+  }
+}
@@ -0,0 +1,139 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+/**
+ * The ranges of size, duration and modification time the listed recordings must fall in. The
+ * bounds are inclusive, an unbounded side accepts any value. The index selects the ranges in SQL,
+ * the in-memory views of the index with {@link #accepts(RecordingIndex.Entry)}.
+ */
+public final class RangeFilter {
+  /** Accepts every recording */
+  public static final RangeFilter NONE =
+      new RangeFilter(0, Long.MAX_VALUE, 0, Long.MAX_VALUE, 0, Long.MAX_VALUE);
+
+  private final long minSize;
+  private final long maxSize;
+  private final long minDuration;
+  private final long maxDuration;
+  private final long minModified;
+  private final long maxModified;
+
+  private RangeFilter(
+      long minSize,
+      long maxSize,
+      long minDuration,
+      long maxDuration,
+      long minModified,
+      long maxModified) {
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.minDuration = minDuration;
+    this.maxDuration = maxDuration;
+    this.minModified = minModified;
+    this.maxModified = maxModified;
+  }
+
+  /**
+   * @param min The minimum size in bytes
+   * @param max The maximum size in bytes, Long.MAX_VALUE for no maximum
+   * @return A copy of this filter with the given size range
+   */
+  public RangeFilter withSize(long min, long max) {
+    return new RangeFilter(min, max, minDuration, maxDuration, minModified, maxModified);
+  }
+
+  /**
+   * @param min The minimum duration in milliseconds
+   * @param max The maximum duration in milliseconds, Long.MAX_VALUE for no maximum
+   * @return A copy of this filter with the given duration range
+   */
+  public RangeFilter withDuration(long min, long max) {
+    return new RangeFilter(minSize, maxSize, min, max, minModified, maxModified);
+  }
+
+  /**
+   * @param min The earliest modification time
+   * @param max The latest modification time, Long.MAX_VALUE for no maximum
+   * @return A copy of this filter with the given modification time range
+   */
+  public RangeFilter withModified(long min, long max) {
+    return new RangeFilter(minSize, maxSize, minDuration, maxDuration, min, max);
+  }
+
+  /**
+   * @param entry The indexed metadata of a listed recording
+   * @return Whether the recording falls in all the ranges
+   */
+  public boolean accepts(RecordingIndex.Entry entry) {
+    return entry.getSize() >= minSize
+        && entry.getSize() <= maxSize
+        && entry.getDuration() >= minDuration
+        && entry.getDuration() <= maxDuration
+        && entry.getModified() >= minModified
+        && entry.getModified() <= maxModified;
+  }
+
+  public long getMinSize() {
+    return minSize;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public long getMinDuration() {
+    return minDuration;
+  }
+
+  public long getMaxDuration() {
+    return maxDuration;
+  }
+
+  public long getMinModified() {
+    return minModified;
+  }
+
+  public long getMaxModified() {
+    return maxModified;
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    return "RangeFilter{"
+        + "size="
+        + minSize
+        + ".."
+        + maxSize
+        + ", duration="
+        + minDuration
+        + ".."
+        + maxDuration
+        + ", modified="
+        + minModified
+        + ".."
+        + maxModified
+        + '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    RangeFilter that = (RangeFilter) o;
+    return minSize == that.minSize
+        && maxSize == that.maxSize
+        && minDuration == that.minDuration
+        && maxDuration == that.maxDuration
+        && minModified == that.minModified
+        && maxModified == that.maxModified;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(minSize, maxSize, minDuration, maxDuration, minModified, maxModified);
+  }
+}
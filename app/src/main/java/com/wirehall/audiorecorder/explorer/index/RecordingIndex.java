@@ -0,0 +1,700 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * This is a singleton class persisting the metadata of the scanned recordings, so that a scan only
+ * has to probe the files which are new or were modified since the previous scan. An entry is valid
+ * as long as the size and the modification time of its file are unchanged.
+ *
+ * <p>The listed entries of a directory can be read a page at a time in any of the {@link
+ * SortOrder}s of the file list, each of which is served by its own index so the pages do not get
+ * slower to read as the directory grows and switching order never sorts the table. A page is read
+ * from the last entry of the page before it, so it does not skip all the rows above it. A {@link
+ * RangeFilter} is applied while the index is walked. The registered observers are notified after
+ * every update, so the readers know when to read again.
+ */
+public class RecordingIndex extends SQLiteOpenHelper {
+  private static final String DATABASE_NAME = "recording_index.db";
+  private static final int DATABASE_VERSION = 3;
+
+  private static final String TABLE_RECORDINGS = "recordings";
+  private static final String COLUMN_PATH = "path";
+  private static final String COLUMN_DIRECTORY = "directory";
+  private static final String COLUMN_SIZE = "size";
+  private static final String COLUMN_MODIFIED = "modified";
+  private static final String COLUMN_DURATION = "duration";
+  private static final String LISTED_SELECTION =
+      COLUMN_DIRECTORY + " = ? AND " + COLUMN_DURATION + " != ?";
+
+  private static RecordingIndex recordingIndex;
+
+  private final Set<Observer> observers = new CopyOnWriteArraySet<>();
+
+  private RecordingIndex(Context context) {
+    super(context, DATABASE_NAME, null, DATABASE_VERSION);
+  }
+
+  /**
+   * @param context Context required for internal operations
+   * @return The singleton instance of RecordingIndex
+   */
+  public static synchronized RecordingIndex getInstance(Context context) {
+    if (recordingIndex == null) {
+      recordingIndex = new RecordingIndex(context.getApplicationContext());
+    }
+    return recordingIndex;
+  }
+
+  /** @param observer Notified on the writing thread after every update of the index */
+  public void addObserver(Observer observer) {
+    observers.add(observer);
+  }
+
+  /** @param observer The observer which is no longer notified */
+  public void removeObserver(Observer observer) {
+    observers.remove(observer);
+  }
+
+  @Override
+  public void onConfigure(SQLiteDatabase db) {
+    // Scans write while the list may be reading
+    db.enableWriteAheadLogging();
+  }
+
+  @Override
+  public void onCreate(SQLiteDatabase db) {
+    db.execSQL(
+        "CREATE TABLE "
+            + TABLE_RECORDINGS
+            + " ("
+            + COLUMN_PATH
+            + " TEXT PRIMARY KEY NOT NULL, "
+            + COLUMN_DIRECTORY
+            + " TEXT NOT NULL, "
+            + COLUMN_SIZE
+            + " INTEGER NOT NULL, "
+            + COLUMN_MODIFIED
+            + " INTEGER NOT NULL, "
+            + COLUMN_DURATION
+            + " INTEGER NOT NULL)");
+    createOrderIndexes(db);
+  }
+
+  // One index per order, the rows of a directory are read from it already sorted
+  private static void createOrderIndexes(SQLiteDatabase db) {
+    for (SortOrder sortOrder : SortOrder.values()) {
+      db.execSQL(
+          "CREATE INDEX IF NOT EXISTS idx_recordings_directory_"
+              + sortOrder.name().toLowerCase(Locale.ROOT)
+              + " ON "
+              + TABLE_RECORDINGS
+              + " ("
+              + COLUMN_DIRECTORY
+              + ", "
+              + sortOrder.orderBy
+              + ")");
+    }
+  }
+
+  @Override
+  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    if (oldVersion == 2) {
+      // Only the indexes changed, the entries are kept
+      db.execSQL("DROP INDEX IF EXISTS idx_recordings_directory_order");
+      createOrderIndexes(db);
+      return;
+    }
+    // The index is only a cache of the file system, it is simply rebuilt
+    db.execSQL("DROP TABLE IF EXISTS " + TABLE_RECORDINGS);
+    onCreate(db);
+  }
+
+  @Override
+  public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    onUpgrade(db, oldVersion, newVersion);
+  }
+
+  /**
+   * @param directory The scanned directory
+   * @return The indexed entries of the directory keyed by their path
+   */
+  @NonNull
+  public Map<String, Entry> getEntries(String directory) {
+    Map<String, Entry> entries = new HashMap<>();
+    try (Cursor cursor =
+        getReadableDatabase()
+            .query(
+                TABLE_RECORDINGS,
+                new String[] {COLUMN_PATH, COLUMN_SIZE, COLUMN_MODIFIED, COLUMN_DURATION},
+                COLUMN_DIRECTORY + " = ?",
+                new String[] {directory},
+                null,
+                null,
+                null)) {
+      while (cursor.moveToNext()) {
+        Entry entry =
+            new Entry(
+                cursor.getString(0),
+                directory,
+                cursor.getLong(1),
+                cursor.getLong(2),
+                cursor.getLong(3));
+        entries.put(entry.getPath(), entry);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * @param directory The scanned directory
+   * @return The number of entries of the directory which are listed i.e. have a known duration
+   */
+  public int getListedCount(String directory) {
+    return getListedCount(directory, RangeFilter.NONE);
+  }
+
+  /**
+   * @param directory The scanned directory
+   * @param rangeFilter The ranges the counted entries fall in
+   * @return The number of entries of the directory which are listed and fall in the ranges
+   */
+  public int getListedCount(String directory, RangeFilter rangeFilter) {
+    return (int)
+        DatabaseUtils.queryNumEntries(
+            getReadableDatabase(),
+            TABLE_RECORDINGS,
+            LISTED_SELECTION + getRangeSelection(rangeFilter),
+            getListedArgs(directory));
+  }
+
+  /**
+   * @param directory The scanned directory
+   * @param offset Position of the first entry in the list
+   * @param limit Maximum number of entries
+   * @return The listed entries of the directory at the given positions, the most recently modified
+   *     first
+   */
+  @NonNull
+  public List<Entry> getListedEntries(String directory, int offset, int limit) {
+    return getListedEntries(directory, SortOrder.DATE, RangeFilter.NONE, offset, limit);
+  }
+
+  /**
+   * @param directory The scanned directory
+   * @param sortOrder The order of the list
+   * @param rangeFilter The ranges the returned entries fall in
+   * @param offset Position of the first entry in the list
+   * @param limit Maximum number of entries
+   * @return The listed entries of the directory which fall in the ranges, at the given positions
+   */
+  @NonNull
+  public List<Entry> getListedEntries(
+      String directory, SortOrder sortOrder, RangeFilter rangeFilter, int offset, int limit) {
+    return getListedEntries(directory, sortOrder, rangeFilter, null, offset, limit);
+  }
+
+  /**
+   * Reads the entries following an entry read before. The index of the order is then walked from
+   * the entry on rather than from the start of the directory, so reading a page costs the same at
+   * any depth of the list.
+   *
+   * @param directory The scanned directory
+   * @param sortOrder The order of the list
+   * @param rangeFilter The ranges the returned entries fall in
+   * @param after A listed entry of the directory, null to read from the start of the list
+   * @param offset Position of the first entry counted from the entry following {@code after}
+   * @param limit Maximum number of entries
+   * @return The listed entries of the directory which fall in the ranges, at the given positions
+   */
+  @NonNull
+  public List<Entry> getListedEntries(
+      String directory,
+      SortOrder sortOrder,
+      RangeFilter rangeFilter,
+      @Nullable Entry after,
+      int offset,
+      int limit) {
+    String selection = LISTED_SELECTION + getRangeSelection(rangeFilter);
+    String[] selectionArgs = getListedArgs(directory);
+    if (after != null) {
+      selection += sortOrder.getSeekSelection();
+      selectionArgs = concat(selectionArgs, sortOrder.getSeekArgs(after));
+    }
+    List<Entry> entries = new ArrayList<>(limit);
+    try (Cursor cursor =
+        getReadableDatabase()
+            .query(
+                TABLE_RECORDINGS,
+                new String[] {COLUMN_PATH, COLUMN_SIZE, COLUMN_MODIFIED, COLUMN_DURATION},
+                selection,
+                selectionArgs,
+                null,
+                null,
+                sortOrder.orderBy,
+                offset + "," + limit)) {
+      while (cursor.moveToNext()) {
+        entries.add(
+            new Entry(
+                cursor.getString(0),
+                directory,
+                cursor.getLong(1),
+                cursor.getLong(2),
+                cursor.getLong(3)));
+      }
+    }
+    return entries;
+  }
+
+  /** @return The listed entries of all the directories, in no particular order */
+  @NonNull
+  public List<Entry> getAllListedEntries() {
+    List<Entry> entries = new ArrayList<>();
+    try (Cursor cursor =
+        getReadableDatabase()
+            .query(
+                TABLE_RECORDINGS,
+                new String[] {
+                  COLUMN_PATH, COLUMN_DIRECTORY, COLUMN_SIZE, COLUMN_MODIFIED, COLUMN_DURATION
+                },
+                COLUMN_DURATION + " != ?",
+                new String[] {String.valueOf(Entry.DURATION_UNKNOWN)},
+                null,
+                null,
+                null)) {
+      while (cursor.moveToNext()) {
+        entries.add(
+            new Entry(
+                cursor.getString(0),
+                cursor.getString(1),
+                cursor.getLong(2),
+                cursor.getLong(3),
+                cursor.getLong(4)));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * @param roots The walked folders of the library
+   * @return The folders below the roots, or the roots themselves, which have indexed entries
+   */
+  @NonNull
+  public List<String> getDirectories(List<String> roots) {
+    List<String> directories = new ArrayList<>();
+    if (roots.isEmpty()) {
+      return directories;
+    }
+    try (Cursor cursor =
+        getReadableDatabase()
+            .query(
+                true,
+                TABLE_RECORDINGS,
+                new String[] {COLUMN_DIRECTORY},
+                getTreeSelection(roots.size()),
+                getTreeArgs(roots).toArray(new String[0]),
+                null,
+                null,
+                null,
+                null)) {
+      while (cursor.moveToNext()) {
+        directories.add(cursor.getString(0));
+      }
+    }
+    return directories;
+  }
+
+  /**
+   * Counts the listed entries of every folder in a single pass over the index
+   *
+   * @param roots The walked folders of the library
+   * @return The number of listed entries of the folders which have any, keyed by the folder and
+   *     sorted by it
+   */
+  @NonNull
+  public Map<String, Integer> getListedFolderCounts(List<String> roots) {
+    return getListedFolderCounts(roots, RangeFilter.NONE);
+  }
+
+  /**
+   * Counts the listed entries of every folder in a single pass over the index
+   *
+   * @param roots The walked folders of the library
+   * @param rangeFilter The ranges the counted entries fall in
+   * @return The number of listed entries of the folders which have any in the ranges, keyed by the
+   *     folder and sorted by it
+   */
+  @NonNull
+  public Map<String, Integer> getListedFolderCounts(List<String> roots, RangeFilter rangeFilter) {
+    Map<String, Integer> counts = new LinkedHashMap<>();
+    if (roots.isEmpty()) {
+      return counts;
+    }
+    List<String> args = getTreeArgs(roots);
+    args.add(String.valueOf(Entry.DURATION_UNKNOWN));
+    try (Cursor cursor =
+        getReadableDatabase()
+            .query(
+                TABLE_RECORDINGS,
+                new String[] {COLUMN_DIRECTORY, "COUNT(*)"},
+                "("
+                    + getTreeSelection(roots.size())
+                    + ") AND "
+                    + COLUMN_DURATION
+                    + " != ?"
+                    + getRangeSelection(rangeFilter),
+                args.toArray(new String[0]),
+                COLUMN_DIRECTORY,
+                null,
+                COLUMN_DIRECTORY)) {
+      while (cursor.moveToNext()) {
+        counts.put(cursor.getString(0), cursor.getInt(1));
+      }
+    }
+    return counts;
+  }
+
+  // Matches a root and the folders below it with a range of the directory index, unlike LIKE
+  // which is case insensitive and would need its wildcards escaped
+  private static String getTreeSelection(int rootCount) {
+    StringBuilder selection = new StringBuilder();
+    for (int i = 0; i < rootCount; i++) {
+      if (i > 0) {
+        selection.append(" OR ");
+      }
+      selection
+          .append(COLUMN_DIRECTORY)
+          .append(" = ? OR (")
+          .append(COLUMN_DIRECTORY)
+          .append(" >= ? AND ")
+          .append(COLUMN_DIRECTORY)
+          .append(" < ?)");
+    }
+    return selection.toString();
+  }
+
+  private static List<String> getTreeArgs(List<String> roots) {
+    List<String> args = new ArrayList<>(roots.size() * 3 + 1);
+    for (String root : roots) {
+      args.add(root);
+      args.add(root + '/');
+      // '0' is the character following '/'
+      args.add(root + '0');
+    }
+    return args;
+  }
+
+  // The bounds are numbers, they are inlined rather than bound
+  private static String getRangeSelection(RangeFilter rangeFilter) {
+    StringBuilder selection = new StringBuilder();
+    appendRange(selection, COLUMN_SIZE, rangeFilter.getMinSize(), rangeFilter.getMaxSize());
+    appendRange(
+        selection, COLUMN_DURATION, rangeFilter.getMinDuration(), rangeFilter.getMaxDuration());
+    appendRange(
+        selection, COLUMN_MODIFIED, rangeFilter.getMinModified(), rangeFilter.getMaxModified());
+    return selection.toString();
+  }
+
+  private static void appendRange(StringBuilder selection, String column, long min, long max) {
+    if (min > 0) {
+      selection.append(" AND ").append(column).append(" >= ").append(min);
+    }
+    if (max < Long.MAX_VALUE) {
+      selection.append(" AND ").append(column).append(" <= ").append(max);
+    }
+  }
+
+  private static String[] getListedArgs(String directory) {
+    return new String[] {directory, String.valueOf(Entry.DURATION_UNKNOWN)};
+  }
+
+  /**
+   * Compares the strings like the NOCASE collation of SQLite, which only folds the ASCII letters
+   * and compares the code points, so the entries held in memory are in the order of the index.
+   *
+   * @param first The first string
+   * @param second The second string
+   * @return A negative number, zero or a positive number if the first string is before, equal to or
+   *     after the second string
+   */
+  static int compareNoCase(String first, String second) {
+    int firstIndex = 0;
+    int secondIndex = 0;
+    while (firstIndex < first.length() && secondIndex < second.length()) {
+      int firstCodePoint = first.codePointAt(firstIndex);
+      int secondCodePoint = second.codePointAt(secondIndex);
+      int difference = toLowerAscii(firstCodePoint) - toLowerAscii(secondCodePoint);
+      if (difference != 0) {
+        return difference;
+      }
+      firstIndex += Character.charCount(firstCodePoint);
+      secondIndex += Character.charCount(secondCodePoint);
+    }
+    return Integer.compare(first.length() - firstIndex, second.length() - secondIndex);
+  }
+
+  private static int toLowerAscii(int codePoint) {
+    return codePoint >= 'A' && codePoint <= 'Z' ? codePoint + ('a' - 'A') : codePoint;
+  }
+
+  private static String[] concat(String[] first, String[] second) {
+    String[] args = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, args, first.length, second.length);
+    return args;
+  }
+
+  /**
+   * @param path The path of the file
+   * @return The indexed entry of the file, null if it is not indexed
+   */
+  @Nullable
+  public Entry getEntry(String path) {
+    try (Cursor cursor =
+        getReadableDatabase()
+            .query(
+                TABLE_RECORDINGS,
+                new String[] {COLUMN_DIRECTORY, COLUMN_SIZE, COLUMN_MODIFIED, COLUMN_DURATION},
+                COLUMN_PATH + " = ?",
+                new String[] {path},
+                null,
+                null,
+                null)) {
+      if (!cursor.moveToFirst()) {
+        return null;
+      }
+      return new Entry(
+          path, cursor.getString(0), cursor.getLong(1), cursor.getLong(2), cursor.getLong(3));
+    }
+  }
+
+  /**
+   * Applies the result of a scan in a single transaction
+   *
+   * @param changedEntries The entries of the new or modified files
+   * @param removedPaths The paths of the files which no longer exist
+   */
+  public void update(Collection<Entry> changedEntries, Collection<String> removedPaths) {
+    if (changedEntries.isEmpty() && removedPaths.isEmpty()) {
+      return;
+    }
+
+    SQLiteDatabase db = getWritableDatabase();
+    db.beginTransaction();
+    try (SQLiteStatement insert =
+            db.compileStatement(
+                "INSERT OR REPLACE INTO "
+                    + TABLE_RECORDINGS
+                    + " ("
+                    + COLUMN_PATH
+                    + ", "
+                    + COLUMN_DIRECTORY
+                    + ", "
+                    + COLUMN_SIZE
+                    + ", "
+                    + COLUMN_MODIFIED
+                    + ", "
+                    + COLUMN_DURATION
+                    + ") VALUES (?, ?, ?, ?, ?)");
+        SQLiteStatement delete =
+            db.compileStatement(
+                "DELETE FROM " + TABLE_RECORDINGS + " WHERE " + COLUMN_PATH + " = ?")) {
+      for (Entry entry : changedEntries) {
+        insert.bindString(1, entry.getPath());
+        insert.bindString(2, entry.getDirectory());
+        insert.bindLong(3, entry.getSize());
+        insert.bindLong(4, entry.getModified());
+        insert.bindLong(5, entry.getDuration());
+        insert.executeInsert();
+      }
+      for (String path : removedPaths) {
+        delete.bindString(1, path);
+        delete.executeUpdateDelete();
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    // The changes are delivered to every observer first, so the views built on top of the index
+    // are up to date once any observer reads it again
+    for (Observer observer : observers) {
+      observer.onEntriesChanged(changedEntries, removedPaths);
+    }
+    for (Observer observer : observers) {
+      observer.onIndexChanged();
+    }
+  }
+
+  /** Observer notified when the content of the index changes */
+  public interface Observer {
+    void onIndexChanged();
+
+    /**
+     * Called before {@link #onIndexChanged()} with the applied changes
+     *
+     * @param changedEntries The entries of the new or modified files
+     * @param removedPaths The paths of the files which no longer exist
+     */
+    default void onEntriesChanged(
+        Collection<Entry> changedEntries, Collection<String> removedPaths) {}
+  }
+
+  /** The orders of the file list, the path breaks the ties so every order is stable */
+  public enum SortOrder {
+    /** The most recently modified first */
+    DATE(
+        COLUMN_MODIFIED,
+        true,
+        entry -> String.valueOf(entry.getModified()),
+        Comparator.comparingLong(Entry::getModified).reversed().thenComparing(Entry::getPath)),
+    /** Alphabetically, ignoring the case */
+    NAME(
+        COLUMN_PATH + " COLLATE NOCASE",
+        false,
+        Entry::getPath,
+        Comparator.comparing(Entry::getName, RecordingIndex::compareNoCase)
+            .thenComparing(Entry::getPath)),
+    /** The largest first */
+    SIZE(
+        COLUMN_SIZE,
+        true,
+        entry -> String.valueOf(entry.getSize()),
+        Comparator.comparingLong(Entry::getSize).reversed().thenComparing(Entry::getPath)),
+    /** The longest first */
+    DURATION(
+        COLUMN_DURATION,
+        true,
+        entry -> String.valueOf(entry.getDuration()),
+        Comparator.comparingLong(Entry::getDuration).reversed().thenComparing(Entry::getPath));
+
+    // The entries of the same key are ordered by path
+    private final String keyColumn;
+    private final boolean isDescending;
+    private final Function<Entry, String> key;
+    private final String orderBy;
+    private final Comparator<Entry> comparator;
+
+    SortOrder(
+        String keyColumn,
+        boolean isDescending,
+        Function<Entry, String> key,
+        Comparator<Entry> comparator) {
+      this.keyColumn = keyColumn;
+      this.isDescending = isDescending;
+      this.key = key;
+      this.orderBy = keyColumn + (isDescending ? " DESC, " : " ASC, ") + COLUMN_PATH + " ASC";
+      this.comparator = comparator;
+    }
+
+    /** @return The same order for the entries held in memory */
+    public Comparator<Entry> getComparator() {
+      return comparator;
+    }
+
+    // The entries after the given one, a range of the index of the order starting at the entry
+    private String getSeekSelection() {
+      String operator = isDescending ? " <" : " >";
+      return " AND "
+          + keyColumn
+          + operator
+          + "= ? AND ("
+          + keyColumn
+          + operator
+          + " ? OR "
+          + COLUMN_PATH
+          + " > ?)";
+    }
+
+    private String[] getSeekArgs(Entry after) {
+      String afterKey = key.apply(after);
+      return new String[] {afterKey, afterKey, after.getPath()};
+    }
+  }
+
+  /** The indexed metadata of a single file */
+  public static final class Entry {
+    /** Duration of the files which could not be probed, they are not listed */
+    public static final long DURATION_UNKNOWN = -1;
+
+    private final String path;
+    private final String directory;
+    private final long size;
+    private final long modified;
+    private final long duration;
+
+    /**
+     * @param path The path of the file
+     * @param directory The directory the file was scanned in
+     * @param size The size of the file in bytes
+     * @param modified The modification time of the file
+     * @param duration The duration in milliseconds, {@link #DURATION_UNKNOWN} if not playable
+     */
+    public Entry(String path, String directory, long size, long modified, long duration) {
+      this.path = path;
+      this.directory = directory;
+      this.size = size;
+      this.modified = modified;
+      this.duration = duration;
+    }
+
+    /**
+     * The modification times are compared to the second, the precision of the media store, so an
+     * entry read from the store matches the file and the other way round
+     *
+     * @param size The current size of the file
+     * @param modified The current modification time of the file
+     * @return Whether the entry is still valid for the file
+     */
+    public boolean matches(long size, long modified) {
+      return this.size == size
+          && TimeUnit.MILLISECONDS.toSeconds(this.modified)
+              == TimeUnit.MILLISECONDS.toSeconds(modified);
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public String getDirectory() {
+      return directory;
+    }
+
+    /** @return The name of the file */
+    public String getName() {
+      return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getModified() {
+      return modified;
+    }
+
+    public long getDuration() {
+      return duration;
+    }
+  }
+}
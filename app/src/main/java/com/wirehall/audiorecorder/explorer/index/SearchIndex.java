@@ -0,0 +1,312 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * In-memory trigram index over the searchable text of the listed recordings: the name, the
+ * modification date as shown in the list and the name of the folder. Every trigram of the text maps
+ * to the documents containing it. A query is answered from the shortest posting list among the
+ * trigrams of its words, and the candidates are verified against their text, so the cost depends
+ * on how selective the query is rather than on the number of recordings. The queries shorter than
+ * a trigram are answered by scanning the texts. The documents are sorted in the order of the file
+ * list once after every change or change of order, rather than for every query.
+ *
+ * <p>The index is kept up to date incrementally from the changes of the {@link RecordingIndex}, as
+ * recordings are scanned, renamed or deleted. A removed document is only marked as removed, its
+ * postings are dropped when the index is compacted once they make up half of the documents.
+ */
+public class SearchIndex implements RecordingIndex.Observer {
+  private static final String DATE_FORMAT = "dd-MM-yyyy";
+  private static final char FIELD_SEPARATOR = '\n';
+
+  private static SearchIndex searchIndex;
+
+  private final RecordingIndex recordingIndex;
+  private final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+  // Guarded by this
+  private final List<Document> documents = new ArrayList<>();
+  private final Map<String, Integer> documentIds = new HashMap<>();
+  private final Map<Long, IntList> postings = new HashMap<>();
+  // The ids of the live documents in the order of the file list, null until sorted again. The
+  // ranks of the documents are only valid while it is not null
+  private int[] listOrder;
+  private Comparator<RecordingIndex.Entry> listComparator;
+  private int removedCount;
+  private boolean isLoaded;
+
+  /** @param recordingIndex The index the documents are loaded from, null to start empty */
+  SearchIndex(RecordingIndex recordingIndex) {
+    this.recordingIndex = recordingIndex;
+    isLoaded = recordingIndex == null;
+  }
+
+  /**
+   * @param context Context required for internal operations
+   * @return The singleton instance of SearchIndex
+   */
+  public static synchronized SearchIndex getInstance(Context context) {
+    if (searchIndex == null) {
+      RecordingIndex recordingIndex = RecordingIndex.getInstance(context);
+      searchIndex = new SearchIndex(recordingIndex);
+      // Registered before the documents are loaded, so no change can be missed
+      recordingIndex.addObserver(searchIndex);
+    }
+    return searchIndex;
+  }
+
+  @Override
+  public void onIndexChanged() {
+    // The changes are applied by onEntriesChanged
+  }
+
+  @Override
+  public synchronized void onEntriesChanged(
+      Collection<RecordingIndex.Entry> changedEntries, Collection<String> removedPaths) {
+    for (RecordingIndex.Entry entry : changedEntries) {
+      put(entry);
+    }
+    for (String path : removedPaths) {
+      remove(path);
+    }
+  }
+
+  /**
+   * Adds or replaces the document of the entry, the entries which are not listed are removed
+   *
+   * @param entry The indexed metadata of a recording
+   */
+  synchronized void put(RecordingIndex.Entry entry) {
+    remove(entry.getPath());
+    if (entry.getDuration() == RecordingIndex.Entry.DURATION_UNKNOWN) {
+      return;
+    }
+    listOrder = null;
+    String text = createText(entry);
+    int id = documents.size();
+    documents.add(new Document(id, entry, text));
+    documentIds.put(entry.getPath(), id);
+    for (int i = 0; i + 3 <= text.length(); i++) {
+      long trigram = getTrigram(text, i);
+      if (trigram == -1) {
+        continue;
+      }
+      IntList ids = postings.get(trigram);
+      if (ids == null) {
+        ids = new IntList();
+        postings.put(trigram, ids);
+      }
+      // A trigram repeated in the text is only posted once
+      if (ids.size == 0 || ids.get(ids.size - 1) != id) {
+        ids.add(id);
+      }
+    }
+  }
+
+  /** @param path The path of the recording whose document is removed */
+  synchronized void remove(String path) {
+    Integer id = documentIds.remove(path);
+    if (id == null) {
+      return;
+    }
+    documents.set(id, null);
+    listOrder = null;
+    removedCount++;
+    if (removedCount > documentIds.size()) {
+      compact();
+    }
+  }
+
+  // Rebuilds the postings without the removed documents
+  private void compact() {
+    List<Document> liveDocuments = new ArrayList<>(documentIds.size());
+    for (Document document : documents) {
+      if (document != null) {
+        liveDocuments.add(document);
+      }
+    }
+    documents.clear();
+    documentIds.clear();
+    postings.clear();
+    removedCount = 0;
+    for (Document document : liveDocuments) {
+      put(document.entry);
+    }
+  }
+
+  /**
+   * @param query The words to search for, in any case. A recording matches when its text contains
+   *     all of them
+   * @param filter Only the accepted recordings are returned
+   * @param comparator The order of the file list
+   * @return The matching recordings in the order of the file list
+   */
+  @NonNull
+  public synchronized List<RecordingIndex.Entry> search(
+      String query,
+      Predicate<RecordingIndex.Entry> filter,
+      Comparator<RecordingIndex.Entry> comparator) {
+    ensureLoaded();
+    String[] words = query.toLowerCase(Locale.ROOT).trim().split("\\s+");
+    if (words.length == 0 || words[0].isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    IntList candidates = null;
+    for (String word : words) {
+      for (int i = 0; i + 3 <= word.length(); i++) {
+        IntList ids = postings.get(getTrigram(word, i));
+        if (ids == null) {
+          // No recording has the trigram
+          return Collections.emptyList();
+        }
+        if (candidates == null || ids.size < candidates.size) {
+          candidates = ids;
+        }
+      }
+    }
+
+    int[] order = getListOrder(comparator);
+    List<RecordingIndex.Entry> results = new ArrayList<>();
+    if (candidates == null) {
+      // Walked in the order of the list, so the results need no sorting
+      for (int id : order) {
+        Document document = documents.get(id);
+        if (matches(document, words, filter)) {
+          results.add(document.entry);
+        }
+      }
+      return results;
+    }
+
+    List<Document> matches = new ArrayList<>();
+    for (int i = 0; i < candidates.size; i++) {
+      Document document = documents.get(candidates.get(i));
+      if (document != null && matches(document, words, filter)) {
+        matches.add(document);
+      }
+    }
+    Collections.sort(matches, (d1, d2) -> Integer.compare(d1.rank, d2.rank));
+    for (Document document : matches) {
+      results.add(document.entry);
+    }
+    return results;
+  }
+
+  private static boolean matches(
+      Document document, String[] words, Predicate<RecordingIndex.Entry> filter) {
+    return containsAll(document.text, words) && filter.test(document.entry);
+  }
+
+  // Sorted again after the documents or the order changed, once for any number of queries
+  private int[] getListOrder(Comparator<RecordingIndex.Entry> comparator) {
+    if (listOrder == null || comparator != listComparator) {
+      listComparator = comparator;
+      List<Document> liveDocuments = new ArrayList<>(documentIds.size());
+      for (Document document : documents) {
+        if (document != null) {
+          liveDocuments.add(document);
+        }
+      }
+      Collections.sort(liveDocuments, (d1, d2) -> comparator.compare(d1.entry, d2.entry));
+      listOrder = new int[liveDocuments.size()];
+      for (int i = 0; i < listOrder.length; i++) {
+        Document document = liveDocuments.get(i);
+        document.rank = i;
+        listOrder[i] = document.id;
+      }
+    }
+    return listOrder;
+  }
+
+  private void ensureLoaded() {
+    if (!isLoaded) {
+      isLoaded = true;
+      for (RecordingIndex.Entry entry : recordingIndex.getAllListedEntries()) {
+        put(entry);
+      }
+    }
+  }
+
+  private static boolean containsAll(String text, String[] words) {
+    for (String word : words) {
+      if (!text.contains(word)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // The text is lower case, the fields are separated so a query can not match across them
+  private String createText(RecordingIndex.Entry entry) {
+    String name = entry.getName();
+    int extensionStart = name.lastIndexOf('.');
+    if (extensionStart > 0) {
+      name = name.substring(0, extensionStart);
+    }
+    return (name
+            + FIELD_SEPARATOR
+            + dateFormat.format(new Date(entry.getModified()))
+            + FIELD_SEPARATOR
+            + new File(entry.getDirectory()).getName())
+        .toLowerCase(Locale.ROOT);
+  }
+
+  /** @return The three characters packed in a key, -1 if they span two fields */
+  private static long getTrigram(String text, int start) {
+    char c0 = text.charAt(start);
+    char c1 = text.charAt(start + 1);
+    char c2 = text.charAt(start + 2);
+    if (c0 == FIELD_SEPARATOR || c1 == FIELD_SEPARATOR || c2 == FIELD_SEPARATOR) {
+      return -1;
+    }
+    return (long) c0 << 32 | (long) c1 << 16 | c2;
+  }
+
+  private static class Document {
+    private final int id;
+    private final RecordingIndex.Entry entry;
+    private final String text;
+    // The position in the list order
+    private int rank;
+
+    private Document(int id, RecordingIndex.Entry entry, String text) {
+      this.id = id;
+      this.entry = entry;
+      this.text = text;
+    }
+  }
+
+  /** Growable list of primitive ids, a posting list is far too long to box every id */
+  private static class IntList {
+    private int[] values = new int[4];
+    private int size;
+
+    private void add(int value) {
+      if (size == values.length) {
+        int[] newValues = new int[size * 2];
+        System.arraycopy(values, 0, newValues, 0, size);
+        values = newValues;
+      }
+      values[size++] = value;
+    }
+
+    private int get(int index) {
+      return values[index];
+    }
+  }
+}
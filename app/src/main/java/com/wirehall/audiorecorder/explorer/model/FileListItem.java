@@ -0,0 +1,7 @@
+package com.wirehall.audiorecorder.explorer.model;
+
+/** An item of the file list, a {@link Recording} or the header of a {@link RecordingFolder} */
+public interface FileListItem {
+  /** @return The path of the file or the folder, unique within the list */
+  String getPath();
+}
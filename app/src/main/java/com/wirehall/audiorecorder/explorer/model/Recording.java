@@ -4,26 +4,28 @@ import androidx.annotation.NonNull;
 
 import java.util.Objects;
 
-public class Recording {
-  private String name;
+/**
+ * The metadata of a recording. Only the path and primitives are stored, the display strings are
+ * formatted when the recording is shown, see {@code RecordingFormatter}.
+ */
+public class Recording implements FileListItem {
   private String path;
   private long size;
-  private String sizeInString;
   private long modifiedDateMilliSec;
-  private String modifiedDateInString;
   private long duration;
-  private String durationDetailedInString;
-  private String durationShortInString;
   private boolean isPlaying;
 
+  /** @return The file name without the extension */
   public String getName() {
-    return name;
-  }
-
-  public void setName(String name) {
-    this.name = name;
+    int nameStart = path.lastIndexOf('/') + 1;
+    int extensionStart = path.lastIndexOf('.');
+    if (extensionStart < nameStart || extensionStart == path.length() - 1) {
+      return path.substring(nameStart);
+    }
+    return path.substring(nameStart, extensionStart);
   }
 
+  @Override
   public String getPath() {
     return path;
   }
@@ -40,14 +42,6 @@ public class Recording {
     this.size = size;
   }
 
-  public String getSizeInString() {
-    return sizeInString;
-  }
-
-  public void setSizeInString(String sizeInString) {
-    this.sizeInString = sizeInString;
-  }
-
   public long getModifiedDateMilliSec() {
     return modifiedDateMilliSec;
   }
@@ -56,14 +50,6 @@ public class Recording {
     this.modifiedDateMilliSec = modifiedDateMilliSec;
   }
 
-  public String getModifiedDateInString() {
-    return modifiedDateInString;
-  }
-
-  public void setModifiedDateInString(String modifiedDateInString) {
-    this.modifiedDateInString = modifiedDateInString;
-  }
-
   public long getDuration() {
     return duration;
   }
@@ -72,22 +58,6 @@ public class Recording {
     this.duration = duration;
   }
 
-  public String getDurationDetailedInString() {
-    return durationDetailedInString;
-  }
-
-  public void setDurationDetailedInString(String durationDetailedInString) {
-    this.durationDetailedInString = durationDetailedInString;
-  }
-
-  public String getDurationShortInString() {
-    return durationShortInString;
-  }
-
-  public void setDurationShortInString(String durationShortInString) {
-    this.durationShortInString = durationShortInString;
-  }
-
   public boolean isPlaying() {
     return isPlaying;
   }
@@ -100,30 +70,15 @@ public class Recording {
   @Override
   public String toString() {
     return "Recording{"
-        + "name='"
-        + name
-        + '\''
-        + ", path='"
+        + "path='"
         + path
         + '\''
         + ", size="
         + size
-        + ", sizeInString='"
-        + sizeInString
-        + '\''
         + ", modifiedDateMilliSec="
         + modifiedDateMilliSec
-        + ", modifiedDateInString='"
-        + modifiedDateInString
-        + '\''
         + ", duration="
         + duration
-        + ", durationDetailedInString='"
-        + durationDetailedInString
-        + '\''
-        + ", durationShortInString='"
-        + durationShortInString
-        + '\''
         + ", isPlaying="
         + isPlaying
         + '}';
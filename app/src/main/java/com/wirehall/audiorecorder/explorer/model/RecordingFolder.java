@@ -0,0 +1,77 @@
+package com.wirehall.audiorecorder.explorer.model;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+/** The header of the section listing the recordings of a folder in library mode */
+public class RecordingFolder implements FileListItem {
+  private final String path;
+  private final String name;
+  private final int recordingCount;
+  private final boolean isCollapsed;
+
+  /**
+   * @param path The path of the folder
+   * @param name The name shown for the folder e.g. its path relative to the library
+   * @param recordingCount The number of recordings listed in the folder
+   * @param isCollapsed Whether the recordings of the folder are hidden
+   */
+  public RecordingFolder(String path, String name, int recordingCount, boolean isCollapsed) {
+    this.path = path;
+    this.name = name;
+    this.recordingCount = recordingCount;
+    this.isCollapsed = isCollapsed;
+  }
+
+  @Override
+  public String getPath() {
+    return path;
+  }
+
+  /** @return The name shown for the folder */
+  public String getName() {
+    return name;
+  }
+
+  public int getRecordingCount() {
+    return recordingCount;
+  }
+
+  public boolean isCollapsed() {
+    return isCollapsed;
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    return "RecordingFolder{"
+        + "path='"
+        + path
+        + '\''
+        + ", name='"
+        + name
+        + '\''
+        + ", recordingCount="
+        + recordingCount
+        + ", isCollapsed="
+        + isCollapsed
+        + '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    RecordingFolder that = (RecordingFolder) o;
+    return recordingCount == that.recordingCount
+        && isCollapsed == that.isCollapsed
+        && path.equals(that.path)
+        && name.equals(that.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(path, name, recordingCount, isCollapsed);
+  }
+}
@@ -10,6 +10,7 @@ import android.view.View;
 import android.widget.SeekBar;
 import android.widget.TextView;
 
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.FragmentManager;
 
@@ -19,6 +20,8 @@ import com.wirehall.audiorecorder.explorer.FileListFragment;
 import com.wirehall.audiorecorder.explorer.FileUtils;
 import com.wirehall.audiorecorder.explorer.model.Recording;
 import com.wirehall.audiorecorder.visualizer.VisualizerFragment;
+import com.wirehall.audiorecorder.waveform.WaveformLoader;
+import com.wirehall.audiorecorder.waveform.view.WaveformTimelineView;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +32,7 @@ public class MediaPlayerController {
 
   private static MediaPlayerController mediaPlayerController;
   private final Handler handler = new Handler(Looper.myLooper());
+  private final WaveformLoader waveformLoader = new WaveformLoader();
   private MediaPlayer mediaPlayer;
   private MediaPlayer.OnCompletionListener mPlayerOnCompletionListener;
   private Recording currentRecording = null;
@@ -58,6 +62,7 @@ public class MediaPlayerController {
     View playFragment = activity.findViewById(R.id.player_fragment);
     final TextView timerTextView = playFragment.findViewById(R.id.tv_timer);
     final SeekBar seekBar = playFragment.findViewById(R.id.sb_mp_seek_bar);
+    final WaveformTimelineView waveformView = playFragment.findViewById(R.id.wv_mp_waveform);
 
     seekBar.setEnabled(false);
     activity.runOnUiThread(
@@ -77,11 +82,18 @@ public class MediaPlayerController {
                   getFormattedTimeString(activity, currentPosition, totalMediaDuration);
               timerTextView.setText(playbackTimerString);
               seekBar.setProgress(currentPosition);
+              waveformView.setPosition(currentPosition);
             }
             handler.postDelayed(this, 50);
           }
         });
     mPlayerOnCompletionListener = mediaPlayer -> onMediaHalt(activity);
+    waveformView.setOnSeekListener(
+        positionMillis -> {
+          if (mediaPlayer != null) {
+            mediaPlayer.seekTo(positionMillis);
+          }
+        });
     seekBar.setOnSeekBarChangeListener(
         new SeekBar.OnSeekBarChangeListener() {
           @Override
@@ -123,7 +135,7 @@ public class MediaPlayerController {
         mediaPlayer.pause();
         currentRecording = newRecording;
         newRecording.setPlaying(false);
-        onPlayerStopped();
+        onPlayerStopped(activity);
         return;
       } else if (!mediaPlayer.isPlaying()
           && mediaPlayer.getCurrentPosition() > 1
@@ -131,7 +143,7 @@ public class MediaPlayerController {
         mediaPlayer.start();
         currentRecording = newRecording;
         newRecording.setPlaying(true);
-        onPlayerStarted();
+        onPlayerStarted(activity);
         return;
       } else {
         currentRecording = newRecording;
@@ -150,8 +162,8 @@ public class MediaPlayerController {
       mediaPlayer.start();
       newRecording.setPlaying(true);
       setMPVisualizerView(activity);
-      onPlayerStarted();
-
+      loadWaveform(activity, newRecording);
+      onPlayerStarted(activity);
 
     } catch (IllegalArgumentException e) {
       Log.e(TAG, "ERROR: IllegalArgumentException: " + e.getMessage());
@@ -183,17 +195,17 @@ public class MediaPlayerController {
     seekBar.setProgress(0);
     seekBar.setEnabled(false);
     timerTextView.setText("");
+    WaveformTimelineView waveformView = activity.findViewById(R.id.wv_mp_waveform);
+    waveformView.setPeakPyramid(null);
 
     if (currentRecording != null) currentRecording.setPlaying(false);
 
-    FileListFragment fileListFragment =
-        (FileListFragment)
-            activity.getSupportFragmentManager().findFragmentById(R.id.list_fragment_container);
+    FileListFragment fileListFragment = getFileListFragment(activity);
     if (fileListFragment != null) {
       fileListFragment.resetRowSelection();
     }
 
-    onPlayerStopped();
+    onPlayerStopped(activity);
   }
 
   /** Release the media player instance */
@@ -219,12 +231,45 @@ public class MediaPlayerController {
     }
   }
 
-  private void onPlayerStarted() {
+  private void loadWaveform(AppCompatActivity activity, Recording recording) {
+    final WaveformTimelineView waveformView = activity.findViewById(R.id.wv_mp_waveform);
+    waveformView.setPeakPyramid(null);
+    waveformLoader.load(
+        activity,
+        recording.getPath(),
+        (path, peakPyramid) -> {
+          // Ignore the waveform if the playback has moved on to another recording meanwhile
+          if (mediaPlayer != null
+              && currentRecording != null
+              && path.equals(currentRecording.getPath())) {
+            waveformView.setPeakPyramid(peakPyramid);
+          }
+        });
+  }
+
+  private void onPlayerStarted(AppCompatActivity activity) {
     enableNavigationBar(false);
+    setFileListPlayingRecording(activity, currentRecording);
   }
 
-  private void onPlayerStopped() {
+  private void onPlayerStopped(AppCompatActivity activity) {
     enableNavigationBar(true);
+    setFileListPlayingRecording(activity, null);
+  }
+
+  // The rows of the paged file list are re-created when paged in, so they do not keep the state
+  private void setFileListPlayingRecording(
+      AppCompatActivity activity, @Nullable Recording recording) {
+    FileListFragment fileListFragment = getFileListFragment(activity);
+    if (fileListFragment != null) {
+      fileListFragment.setPlayingRecording(recording);
+    }
+  }
+
+  @Nullable
+  private FileListFragment getFileListFragment(AppCompatActivity activity) {
+    return (FileListFragment)
+        activity.getSupportFragmentManager().findFragmentById(R.id.list_fragment_container);
   }
 
   private void enableNavigationBar(boolean enable) {
@@ -8,6 +8,7 @@ public class SettingActivity extends AppCompatActivity {
   public static final String KEY_PREF_CONFIRM_DELETE = "confirm_delete";
   public static final String KEY_PREF_REQUEST_FILENAME = "request_filename";
   public static final String KEY_PREF_LIST_AUDIO_QUALITY = "list_audio_quality";
+  public static final String KEY_PREF_LIBRARY_MODE = "library_mode";
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -23,6 +23,7 @@ import androidx.core.widget.TextViewCompat;
 import androidx.preference.DialogPreference;
 import androidx.preference.PreferenceDialogFragmentCompat;
 
+import com.wirehall.audiorecorder.IoExecutor;
 import com.wirehall.audiorecorder.R;
 import com.wirehall.audiorecorder.explorer.FileUtils;
 
@@ -47,6 +48,8 @@ public class PathPrefDialog extends PreferenceDialogFragmentCompat {
       new StorageItem(FileUtils.getBaseStorageName(), FileUtils.getBaseStoragePath());
   private ArrayAdapter<StorageItem> listAdapter;
   private TextView titleView;
+  // Only the listing of the last opened directory is shown
+  private int listingGeneration;
   private Button newFolderButton;
 
   public static PathPrefDialog newInstance(String key) {
@@ -99,17 +102,11 @@ public class PathPrefDialog extends PreferenceDialogFragmentCompat {
                         String newDirName = newDir.toString();
                         // Create new directory
                         String newDirPath = dir.getPath() + File.separator + newDirName;
-                        if (createSubDir(newDirPath)) {
-                          // Navigate into the new directory
-                          dir.setPath(newDirPath);
-                          updateDirectory();
-                        } else {
-                          Toast.makeText(
-                                  getContext(),
-                                  getString(R.string.toast_folder_creation_failed, newDirName),
-                                  Toast.LENGTH_SHORT)
-                              .show();
-                        }
+                        IoExecutor.getInstance()
+                            .execute(
+                                IoExecutor.Priority.USER_BLOCKING,
+                                () -> createSubDir(newDirPath),
+                                isCreated -> onSubDirCreated(newDirPath, newDirName, isCreated));
                       })
                   .setNegativeButton(android.R.string.cancel, null)
                   .create();
@@ -154,11 +151,12 @@ public class PathPrefDialog extends PreferenceDialogFragmentCompat {
     titleLayout.addView(newFolderButton);
 
     dialogBuilder.setCustomTitle(titleLayout);
-    storageItemList.addAll(
-        storageVolumeItems.size() > 1
-            ? storageVolumeItems
-            : getStorageItems(storageVolumeItems.get(0)));
     listAdapter = createListAdapter(storageItemList);
+    if (storageVolumeItems.size() > 1) {
+      storageItemList.addAll(storageVolumeItems);
+    } else {
+      loadStorageItems(storageVolumeItems.get(0));
+    }
 
     dialogBuilder.setSingleChoiceItems(listAdapter, -1, this);
     dialogBuilder.setCancelable(false);
@@ -182,10 +180,41 @@ public class PathPrefDialog extends PreferenceDialogFragmentCompat {
   }
 
   private void updateDirectory() {
-    storageItemList.clear();
-    storageItemList.addAll(getStorageItems(dir));
+    loadStorageItems(dir);
+  }
+
+  // The directory is listed off the UI thread
+  private void loadStorageItems(final StorageItem listedDir) {
+    final int generation = ++listingGeneration;
+    IoExecutor.getInstance()
+        .execute(
+            IoExecutor.Priority.USER_BLOCKING,
+            () -> getStorageItems(listedDir),
+            storageItems -> {
+              if (generation != listingGeneration || getDialog() == null) {
+                return;
+              }
+              storageItemList.clear();
+              storageItemList.addAll(storageItems);
+              listAdapter.notifyDataSetChanged();
+            });
+  }
 
-    listAdapter.notifyDataSetChanged();
+  private void onSubDirCreated(String newDirPath, String newDirName, boolean isCreated) {
+    if (!isAdded()) {
+      return;
+    }
+    if (isCreated) {
+      // Navigate into the new directory
+      dir.setPath(newDirPath);
+      updateDirectory();
+    } else {
+      Toast.makeText(
+              getContext(),
+              getString(R.string.toast_folder_creation_failed, newDirName),
+              Toast.LENGTH_SHORT)
+          .show();
+    }
   }
 
   private List<? extends StorageItem> getStorageItems(StorageItem dir) {
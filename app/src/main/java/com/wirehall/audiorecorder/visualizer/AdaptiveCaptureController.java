@@ -0,0 +1,228 @@
+package com.wirehall.audiorecorder.visualizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the visualizer capture size and capture rate based on the measured cost of drawing the
+ * captured frames. The possible configurations form a ladder ordered from the best quality to the
+ * cheapest one: the capture size is halved first (it bounds the work done per frame), then the
+ * capture rate. The controller steps down quickly when the frames do not fit the budget or are not
+ * delivered at the requested rate, and steps back up slowly once there is enough headroom.
+ */
+public class AdaptiveCaptureController {
+  /** A quarter of a 60 fps frame, which leaves room for the rest of the UI */
+  public static final long DEFAULT_FRAME_BUDGET_NANOS = TimeUnit.MICROSECONDS.toNanos(4000);
+
+  static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+  static final int WINDOWS_TO_STEP_DOWN = 2;
+  static final int WINDOWS_TO_STEP_UP = 5;
+
+  private final int minCaptureSize;
+  private final int maxCaptureSize;
+  private final int maxCaptureRate;
+  private final int minCaptureRate;
+  private final long frameBudgetNanos;
+  private final Listener listener;
+  private final List<int[]> ladder = new ArrayList<>();
+
+  private int viewMinCaptureSize;
+  private boolean isPowerSaveMode;
+  private int level = -1;
+
+  private long windowStartNanos = -1;
+  private int deliveredFrames;
+  private int drawnFrames;
+  private long drawNanos;
+  private int overBudgetWindows;
+  private int underBudgetWindows;
+
+  /**
+   * @param captureSizeRange The capture size range i.e. {@code Visualizer.getCaptureSizeRange()}
+   * @param maxCaptureRate The maximum capture rate in milliHertz i.e. {@code
+   *     Visualizer.getMaxCaptureRate()}
+   * @param frameBudgetNanos The time drawing a single frame should not exceed
+   * @param listener Notified whenever a new capture configuration should be applied
+   */
+  public AdaptiveCaptureController(
+      int[] captureSizeRange, int maxCaptureRate, long frameBudgetNanos, Listener listener) {
+    this.minCaptureSize = captureSizeRange[0];
+    this.maxCaptureSize = captureSizeRange[1];
+    this.maxCaptureRate = maxCaptureRate;
+    this.minCaptureRate = maxCaptureRate / 8;
+    this.frameBudgetNanos = frameBudgetNanos;
+    this.listener = listener;
+    this.viewMinCaptureSize = minCaptureSize;
+    buildLadder();
+  }
+
+  /** @return The capture size of the current configuration in bytes */
+  public int getCaptureSize() {
+    return ladder.get(level)[0];
+  }
+
+  /** @return The capture rate of the current configuration in milliHertz */
+  public int getCaptureRate() {
+    return ladder.get(level)[1];
+  }
+
+  /**
+   * Must be called when the data starts being routed to a different view, the measurements of the
+   * previous view are discarded.
+   *
+   * @param viewMinCaptureSize The smallest capture size the new view is able to render
+   */
+  public void onTargetViewChanged(int viewMinCaptureSize) {
+    this.viewMinCaptureSize = Math.max(minCaptureSize, viewMinCaptureSize);
+    resetMeasurements();
+    buildLadder();
+  }
+
+  /** @param isPowerSaveMode When enabled the best quality configurations are not used */
+  public void setPowerSaveMode(boolean isPowerSaveMode) {
+    if (this.isPowerSaveMode == isPowerSaveMode) {
+      return;
+    }
+    this.isPowerSaveMode = isPowerSaveMode;
+    resetMeasurements();
+    setLevel(level);
+  }
+
+  /**
+   * Must be called whenever the capture is enabled again after being disabled, e.g. once the screen
+   * is back on, so the pause is not measured as frames not being delivered
+   */
+  public void onCaptureResumed() {
+    resetMeasurements();
+  }
+
+  /**
+   * Must be called for every frame delivered by the visualizer
+   *
+   * @param nowNanos Monotonic time of the delivery
+   */
+  public void onFrameDelivered(long nowNanos) {
+    if (windowStartNanos < 0) {
+      windowStartNanos = nowNanos;
+    }
+    deliveredFrames++;
+
+    long elapsed = nowNanos - windowStartNanos;
+    if (elapsed >= WINDOW_NANOS) {
+      evaluateWindow(elapsed);
+      windowStartNanos = nowNanos;
+      deliveredFrames = 0;
+      drawnFrames = 0;
+      drawNanos = 0;
+    }
+  }
+
+  /** @param frameDrawNanos Time taken by the target view to draw a single frame */
+  public void onFrameDrawn(long frameDrawNanos) {
+    drawnFrames++;
+    drawNanos += frameDrawNanos;
+  }
+
+  private void evaluateWindow(long elapsedNanos) {
+    if (drawnFrames == 0) {
+      // The view is not drawn at all, nothing to judge the configuration by
+      return;
+    }
+
+    long averageDrawNanos = drawNanos / drawnFrames;
+    long deliveredRate = deliveredFrames * TimeUnit.SECONDS.toNanos(1000) / elapsedNanos;
+    long requestedRate = getCaptureRate();
+
+    boolean isOverBudget =
+        averageDrawNanos > frameBudgetNanos || deliveredRate * 4 < requestedRate * 3;
+    boolean isUnderBudget =
+        averageDrawNanos * 2 < frameBudgetNanos && deliveredRate * 10 >= requestedRate * 9;
+
+    if (isOverBudget) {
+      underBudgetWindows = 0;
+      if (++overBudgetWindows >= WINDOWS_TO_STEP_DOWN) {
+        overBudgetWindows = 0;
+        setLevel(level + 1);
+      }
+    } else if (isUnderBudget) {
+      overBudgetWindows = 0;
+      if (++underBudgetWindows >= WINDOWS_TO_STEP_UP) {
+        underBudgetWindows = 0;
+        setLevel(level - 1);
+      }
+    } else {
+      overBudgetWindows = 0;
+      underBudgetWindows = 0;
+    }
+  }
+
+  private void buildLadder() {
+    int[] previous = level >= 0 ? ladder.get(level) : null;
+
+    ladder.clear();
+    int defaultRate = maxCaptureRate / 2;
+    int size = maxCaptureSize;
+    while (size >= viewMinCaptureSize) {
+      ladder.add(new int[] {size, defaultRate});
+      size /= 2;
+    }
+    if (ladder.isEmpty()) {
+      ladder.add(new int[] {maxCaptureSize, defaultRate});
+    }
+    int smallestSize = ladder.get(ladder.size() - 1)[0];
+    for (int rate = defaultRate / 2; rate >= minCaptureRate && rate > 0; rate /= 2) {
+      ladder.add(new int[] {smallestSize, rate});
+    }
+
+    int newLevel = 0;
+    if (previous != null) {
+      // Keep the closest configuration which is not more expensive than the previous one
+      while (newLevel < ladder.size() - 1
+          && (ladder.get(newLevel)[0] > previous[0] || ladder.get(newLevel)[1] > previous[1])) {
+        newLevel++;
+      }
+    }
+    level = -1;
+    setLevel(newLevel);
+  }
+
+  private void setLevel(int newLevel) {
+    int bestAllowedLevel = isPowerSaveMode ? getPowerSaveLevel() : 0;
+    newLevel = Math.max(bestAllowedLevel, Math.min(ladder.size() - 1, newLevel));
+    if (newLevel == level) {
+      return;
+    }
+    level = newLevel;
+    listener.onCaptureConfigChanged(getCaptureSize(), getCaptureRate());
+  }
+
+  private int getPowerSaveLevel() {
+    // The smallest capture size at the first reduced capture rate
+    int defaultRate = ladder.get(0)[1];
+    for (int i = 0; i < ladder.size(); i++) {
+      if (ladder.get(i)[1] < defaultRate) {
+        return i;
+      }
+    }
+    return ladder.size() - 1;
+  }
+
+  private void resetMeasurements() {
+    windowStartNanos = -1;
+    deliveredFrames = 0;
+    drawnFrames = 0;
+    drawNanos = 0;
+    overBudgetWindows = 0;
+    underBudgetWindows = 0;
+  }
+
+  /** Listener used to apply the capture configuration chosen by the controller */
+  public interface Listener {
+    /**
+     * @param captureSize The capture size in bytes
+     * @param captureRate The capture rate in milliHertz
+     */
+    void onCaptureConfigChanged(int captureSize, int captureRate);
+  }
+}
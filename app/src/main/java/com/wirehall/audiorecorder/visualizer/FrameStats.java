@@ -0,0 +1,249 @@
+package com.wirehall.audiorecorder.visualizer;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of the frame draw times of a view. The frames are recorded from the UI thread
+ * while the statistics can be read from any thread, e.g. when dumped through {@code adb shell
+ * dumpsys activity}.
+ *
+ * <p>The buckets have 1µs resolution below 64µs and 32 sub-buckets per power of two above it, so
+ * the percentiles are accurate to about 3%. To keep the recording overhead below 1% of the frame
+ * time the cost of recording is probed periodically, and only every n-th frame is added to the
+ * histogram when it gets too expensive. The over budget count and the maximum are always exact.
+ */
+public class FrameStats {
+  static final int BUCKET_COUNT = 512;
+  private static final int LINEAR_BUCKETS = 64;
+  private static final int SUB_BUCKETS = 32;
+  private static final int OVERHEAD_PROBE_INTERVAL_MASK = 255;
+  private static final int MAX_SAMPLE_INTERVAL_MASK = 63;
+
+  private static final Map<String, FrameStats> REGISTRY = new ConcurrentHashMap<>();
+  private static volatile boolean isOverlayEnabled = false;
+
+  private final String name;
+  private final long budgetNanos;
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicInteger frameCount = new AtomicInteger();
+  private final AtomicLong sampledCount = new AtomicLong();
+  private final AtomicLong overBudgetCount = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final AtomicLong overheadNanos = new AtomicLong();
+  private volatile int sampleIntervalMask = 0;
+
+  FrameStats(String name, long budgetNanos) {
+    this.name = name;
+    this.budgetNanos = budgetNanos;
+  }
+
+  /**
+   * @param name Name of the statistics, usually the simple class name of the view
+   * @param budgetNanos Draw time above which a frame is counted as over budget
+   * @return The statistics registered with the name, created on first use
+   */
+  @NonNull
+  public static FrameStats forName(String name, long budgetNanos) {
+    FrameStats stats = REGISTRY.get(name);
+    if (stats == null) {
+      REGISTRY.putIfAbsent(name, new FrameStats(name, budgetNanos));
+      stats = REGISTRY.get(name);
+    }
+    return stats;
+  }
+
+  /** @return Whether the statistics should be drawn on top of the views */
+  public static boolean isOverlayEnabled() {
+    return isOverlayEnabled;
+  }
+
+  /** @param enabled Show or hide the statistics on top of the views */
+  public static void setOverlayEnabled(boolean enabled) {
+    isOverlayEnabled = enabled;
+  }
+
+  /**
+   * Dumps all the registered statistics, sorted by name
+   *
+   * @param prefix Prefix of every line
+   * @param writer Writer used for the output
+   */
+  public static void dumpAll(String prefix, PrintWriter writer) {
+    writer.print(prefix);
+    writer.println("Visualizer frame stats:");
+    for (FrameStats stats : new TreeMap<>(REGISTRY).values()) {
+      writer.print(prefix);
+      writer.print("  ");
+      writer.println(stats.toString());
+    }
+  }
+
+  /** Clears all the registered statistics */
+  public static void resetAll() {
+    for (FrameStats stats : REGISTRY.values()) {
+      stats.reset();
+    }
+  }
+
+  static int bucketOf(long micros) {
+    if (micros < LINEAR_BUCKETS) {
+      return (int) Math.max(0, micros);
+    }
+    int msb = 63 - Long.numberOfLeadingZeros(micros);
+    int shift = msb - 5;
+    int subBucket = (int) (micros >> shift) - SUB_BUCKETS;
+    return Math.min(BUCKET_COUNT - 1, LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket);
+  }
+
+  static long bucketUpperBoundMicros(int bucket) {
+    if (bucket < LINEAR_BUCKETS) {
+      return bucket;
+    }
+    int offset = bucket - LINEAR_BUCKETS;
+    int shift = offset / SUB_BUCKETS + 1;
+    long subBucket = offset % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /** @param frameNanos Time taken to draw a single frame */
+  public void record(long frameNanos) {
+    if (frameNanos > budgetNanos) {
+      overBudgetCount.incrementAndGet();
+    }
+    long max;
+    while (frameNanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, frameNanos)) {
+      // retry
+    }
+
+    int frame = frameCount.incrementAndGet();
+    if ((frame & sampleIntervalMask) != 0) {
+      return;
+    }
+
+    boolean isProbe = (frame & OVERHEAD_PROBE_INTERVAL_MASK) == 0;
+    long probeStart = isProbe ? System.nanoTime() : 0;
+
+    buckets.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(frameNanos)));
+    sampledCount.incrementAndGet();
+
+    if (isProbe) {
+      // The timing around the draw call costs about as much as the recording itself
+      long overhead = 2 * (System.nanoTime() - probeStart);
+      overheadNanos.set(overhead);
+      adjustSampling(overhead, frameNanos);
+    }
+  }
+
+  private void adjustSampling(long overhead, long frameNanos) {
+    int mask = sampleIntervalMask;
+    if (overhead * 100 > frameNanos && mask < MAX_SAMPLE_INTERVAL_MASK) {
+      sampleIntervalMask = mask * 2 + 1;
+    } else if (overhead * 400 < frameNanos && mask > 0) {
+      sampleIntervalMask = mask >> 1;
+    }
+  }
+
+  /**
+   * @param percentile Value between 0 and 100
+   * @return The draw time in nanoseconds below which the given percentage of frames fall, 0 if no
+   *     frames are recorded
+   */
+  public long getPercentileNanos(double percentile) {
+    long total = 0;
+    long[] counts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = (long) Math.ceil(percentile / 100 * total);
+    long cumulative = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulative += counts[i];
+      if (cumulative >= rank && counts[i] > 0) {
+        return TimeUnit.MICROSECONDS.toNanos(bucketUpperBoundMicros(i));
+      }
+    }
+    return TimeUnit.MICROSECONDS.toNanos(bucketUpperBoundMicros(BUCKET_COUNT - 1));
+  }
+
+  /** @return The number of frames drawn */
+  public int getFrameCount() {
+    return frameCount.get();
+  }
+
+  /** @return The number of frames which took longer than the budget */
+  public long getOverBudgetCount() {
+    return overBudgetCount.get();
+  }
+
+  /** @return The longest draw time in nanoseconds */
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /** @return Only every n-th frame is added to the histogram */
+  public int getSampleInterval() {
+    return sampleIntervalMask + 1;
+  }
+
+  /** Clears the statistics */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets.set(i, 0);
+    }
+    frameCount.set(0);
+    sampledCount.set(0);
+    overBudgetCount.set(0);
+    maxNanos.set(0);
+  }
+
+  /** @return Short summary used in the debug overlay */
+  public String toShortString() {
+    return String.format(
+        Locale.US,
+        "p50 %.2f p95 %.2f p99 %.2f ms, over %d/%d",
+        toMillis(getPercentileNanos(50)),
+        toMillis(getPercentileNanos(95)),
+        toMillis(getPercentileNanos(99)),
+        getOverBudgetCount(),
+        getFrameCount());
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.US,
+        "%s: frames=%d sampled=%d (1/%d) p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms"
+            + " overBudget(>%.1fms)=%d overhead=%dns",
+        name,
+        getFrameCount(),
+        sampledCount.get(),
+        getSampleInterval(),
+        toMillis(getPercentileNanos(50)),
+        toMillis(getPercentileNanos(95)),
+        toMillis(getPercentileNanos(99)),
+        toMillis(getMaxNanos()),
+        toMillis(budgetNanos),
+        getOverBudgetCount(),
+        overheadNanos.get());
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
+  }
+}
@@ -1,32 +1,57 @@
 package com.wirehall.audiorecorder.visualizer;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.media.audiofx.Visualizer;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.PowerManager;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.LinearLayout;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import com.wirehall.audiorecorder.BuildConfig;
 import com.wirehall.audiorecorder.R;
 import com.wirehall.audiorecorder.visualizer.view.BaseVisualizerView;
 import com.wirehall.audiorecorder.visualizer.view.RecorderVisualizerView;
 
-import java.util.List;
-
 public class VisualizerFragment extends Fragment implements OnClickListener {
   private View currentVisualizerView;
   private VisualizerMPSession activity;
   private LinearLayout visualizerLayout;
-  private Visualizer visualizer;
-  private List<BaseVisualizerView> mpVisualizerViews;
+  private final VisualizerSessionManager visualizerSessionManager = new VisualizerSessionManager();
+  private VisualizerViewRegistry mpVisualizerViewRegistry;
   private RecorderVisualizerView recorderVisualizerView;
   private int visualizerViewIndex = -1;
+  private final Rect visibleRect = new Rect();
+
+  private final BroadcastReceiver screenStateReceiver =
+      new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+          if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) {
+            visualizerSessionManager.setScreenOff(true);
+          } else if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
+            visualizerSessionManager.setScreenOff(false);
+          } else if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(intent.getAction())) {
+            updatePowerState(context);
+          }
+        }
+      };
+
+  // Invoked on every layout pass and scroll, e.g. when the visualizer's tab is switched
+  private final ViewTreeObserver.OnGlobalLayoutListener visibilityLayoutListener =
+      this::updateVisibility;
+  private final ViewTreeObserver.OnScrollChangedListener visibilityScrollListener =
+      this::updateVisibility;
 
   public VisualizerFragment() {
     // Required empty public constructor
@@ -45,9 +70,24 @@ public class VisualizerFragment extends Fragment implements OnClickListener {
     visualizerLayout =
         (LinearLayout) inflater.inflate(R.layout.visualizer_fragment, container, false);
     visualizerLayout.setOnClickListener(this);
-    mpVisualizerViews = VisualizerUtils.getAllMPVisualizerViews(getContext());
-    recorderVisualizerView = VisualizerUtils.getRecorderVisualizerView(getContext());
+    if (BuildConfig.DEBUG) {
+      visualizerLayout.setOnLongClickListener(
+          view -> {
+            FrameStats.setOverlayEnabled(!FrameStats.isOverlayEnabled());
+            view.invalidate();
+            if (currentVisualizerView != null) {
+              currentVisualizerView.invalidate();
+            }
+            return true;
+          });
+    }
+    ViewTreeObserver viewTreeObserver = visualizerLayout.getViewTreeObserver();
+    viewTreeObserver.addOnGlobalLayoutListener(visibilityLayoutListener);
+    viewTreeObserver.addOnScrollChangedListener(visibilityScrollListener);
+    // Views are instantiated only when they are shown for the first time
+    mpVisualizerViewRegistry = VisualizerUtils.createMPVisualizerViewRegistry(getContext());
     visualizerViewIndex = 0;
+    // Only the first view is instantiated, the others when they are switched to
     setMPVisualizerView();
 
     return visualizerLayout;
@@ -66,10 +106,10 @@ public class VisualizerFragment extends Fragment implements OnClickListener {
     }
 
     visualizerViewIndex++;
-    visualizerViewIndex = visualizerViewIndex % mpVisualizerViews.size();
+    visualizerViewIndex = visualizerViewIndex % mpVisualizerViewRegistry.size();
 
-    BaseVisualizerView baseVisualizerView = mpVisualizerViews.get(visualizerViewIndex);
-    setBaseVisualizerViewUpdater(baseVisualizerView, activity.getAudioSessionIdOfMediaPlayer());
+    BaseVisualizerView baseVisualizerView = mpVisualizerViewRegistry.get(visualizerViewIndex);
+    visualizerSessionManager.setTargetView(baseVisualizerView);
     addReplaceView(baseVisualizerView);
   }
 
@@ -89,59 +129,39 @@ public class VisualizerFragment extends Fragment implements OnClickListener {
 
   /**
    * Sets the Media Player Visualizer view to visualizer container The view pointed by the view
-   * index is set
+   * index is set. The visualizer is re-bound only if the media player session has changed
    */
   public void setMPVisualizerView() {
-    BaseVisualizerView baseVisualizerView = mpVisualizerViews.get(visualizerViewIndex);
-    setBaseVisualizerViewUpdater(baseVisualizerView, activity.getAudioSessionIdOfMediaPlayer());
+    BaseVisualizerView baseVisualizerView = mpVisualizerViewRegistry.get(visualizerViewIndex);
+    visualizerSessionManager.bind(activity.getAudioSessionIdOfMediaPlayer());
+    visualizerSessionManager.setTargetView(baseVisualizerView);
     addReplaceView(baseVisualizerView);
   }
 
   public void setRecorderVisualizerView() {
-    addReplaceView(recorderVisualizerView);
+    visualizerSessionManager.setTargetView(null);
+    addReplaceView(getRecorderVisualizerView());
   }
 
+  /** @return The recorder visualizer view, it is instantiated on first access */
   public RecorderVisualizerView getRecorderVisualizerView() {
+    if (recorderVisualizerView == null) {
+      recorderVisualizerView = VisualizerUtils.getRecorderVisualizerView(getContext());
+    }
     return recorderVisualizerView;
   }
 
-  private void setBaseVisualizerViewUpdater(
-      final BaseVisualizerView baseVisualizerView, int audioSessionId) {
-    releaseVisualizer();
-
-    if (audioSessionId > 0) {
-      visualizer = new Visualizer(audioSessionId);
-      visualizer.setEnabled(false);
-      visualizer.setCaptureSize(Visualizer.getCaptureSizeRange()[1]);
-
-      visualizer.setDataCaptureListener(
-          new Visualizer.OnDataCaptureListener() {
-            @Override
-            public void onWaveFormDataCapture(
-                Visualizer visualizer, byte[] bytes, int samplingRate) {
-              baseVisualizerView.setBytes(bytes);
-              baseVisualizerView.invalidate();
-            }
-
-            @Override
-            public void onFftDataCapture(Visualizer visualizer, byte[] bytes, int samplingRate) {
-              // No implementation required
-            }
-          },
-          Visualizer.getMaxCaptureRate() / 2,
-          true,
-          false);
-
-      visualizer.setEnabled(true);
-    }
+  /**
+   * @return The registry of media player visualizer views, additional views can be registered
+   *     through it
+   */
+  public VisualizerViewRegistry getMPVisualizerViewRegistry() {
+    return mpVisualizerViewRegistry;
   }
 
   /** Release the visualizer */
   public void releaseVisualizer() {
-    if (visualizer != null) {
-      visualizer.setEnabled(false);
-      visualizer.release();
-    }
+    visualizerSessionManager.release();
   }
 
   /** Removes all the views from visualizer container */
@@ -149,6 +169,53 @@ public class VisualizerFragment extends Fragment implements OnClickListener {
     visualizerLayout.removeAllViews();
   }
 
+  @Override
+  public void onStart() {
+    super.onStart();
+    IntentFilter filter = new IntentFilter();
+    filter.addAction(Intent.ACTION_SCREEN_OFF);
+    filter.addAction(Intent.ACTION_SCREEN_ON);
+    filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+    requireContext().registerReceiver(screenStateReceiver, filter);
+    updatePowerState(requireContext());
+    visualizerSessionManager.resume();
+  }
+
+  @Override
+  public void onStop() {
+    super.onStop();
+    visualizerSessionManager.pause();
+    requireContext().unregisterReceiver(screenStateReceiver);
+  }
+
+  @Override
+  public void onDestroyView() {
+    super.onDestroyView();
+    ViewTreeObserver viewTreeObserver = visualizerLayout.getViewTreeObserver();
+    viewTreeObserver.removeOnGlobalLayoutListener(visibilityLayoutListener);
+    viewTreeObserver.removeOnScrollChangedListener(visibilityScrollListener);
+  }
+
+  private void updatePowerState(Context context) {
+    PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    if (powerManager != null) {
+      visualizerSessionManager.setScreenOff(!powerManager.isInteractive());
+      visualizerSessionManager.setPowerSaveMode(powerManager.isPowerSaveMode());
+    }
+  }
+
+  private void updateVisibility() {
+    boolean isVisible =
+        visualizerLayout.isShown() && visualizerLayout.getGlobalVisibleRect(visibleRect);
+    visualizerSessionManager.setHidden(!isVisible);
+  }
+
+  @Override
+  public void onLowMemory() {
+    super.onLowMemory();
+    mpVisualizerViewRegistry.trim(visualizerViewIndex);
+  }
+
   @Override
   public void onDestroy() {
     super.onDestroy();
@@ -0,0 +1,194 @@
+package com.wirehall.audiorecorder.visualizer;
+
+import android.media.audiofx.Visualizer;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.wirehall.audiorecorder.visualizer.view.BaseVisualizerView;
+
+/**
+ * Keeps a single {@link Visualizer} bound to an audio session and routes the captured data to the
+ * currently selected view. Switching views only changes the target, the native visualizer is
+ * re-created only when the audio session itself changes.
+ *
+ * <p>The capture size and rate are adapted to the measured drawing cost of the target view using
+ * {@link AdaptiveCaptureController}. The capture is disabled entirely while the owner is stopped,
+ * the screen is off or the visualizer is not visible.
+ */
+public class VisualizerSessionManager
+    implements Visualizer.OnDataCaptureListener,
+        BaseVisualizerView.FrameListener,
+        AdaptiveCaptureController.Listener {
+  private static final String TAG = VisualizerSessionManager.class.getName();
+
+  private Visualizer visualizer;
+  private AdaptiveCaptureController captureController;
+  private int audioSessionId = 0;
+  private BaseVisualizerView targetView;
+  private boolean isPaused = false;
+  private boolean isScreenOff = false;
+  private boolean isHidden = false;
+  private boolean isPowerSaveMode = false;
+
+  /**
+   * Bind the visualizer to the given audio session. Nothing is done if the visualizer is already
+   * bound to the same session.
+   *
+   * @param audioSessionId The audio session id of the media player, 0 if there is none
+   */
+  public void bind(int audioSessionId) {
+    if (visualizer != null && this.audioSessionId == audioSessionId) {
+      return;
+    }
+
+    release();
+    if (audioSessionId <= 0) {
+      return;
+    }
+
+    try {
+      if (captureController == null) {
+        captureController =
+            new AdaptiveCaptureController(
+                Visualizer.getCaptureSizeRange(),
+                Visualizer.getMaxCaptureRate(),
+                AdaptiveCaptureController.DEFAULT_FRAME_BUDGET_NANOS,
+                this);
+        captureController.setPowerSaveMode(isPowerSaveMode);
+        if (targetView != null) {
+          captureController.onTargetViewChanged(targetView.getMinCaptureSize());
+        }
+      }
+      visualizer = new Visualizer(audioSessionId);
+      this.audioSessionId = audioSessionId;
+      applyCaptureConfig(captureController.getCaptureSize(), captureController.getCaptureRate());
+    } catch (RuntimeException e) {
+      Log.e(TAG, "Problem initializing visualizer: " + e.getMessage());
+      release();
+    }
+  }
+
+  /** @param view The view which receives the captured data from now on */
+  public void setTargetView(@Nullable BaseVisualizerView view) {
+    if (targetView == view) {
+      return;
+    }
+    if (targetView != null) {
+      targetView.setFrameListener(null);
+    }
+    targetView = view;
+    if (view != null) {
+      view.setFrameListener(this);
+      if (captureController != null) {
+        captureController.onTargetViewChanged(view.getMinCaptureSize());
+      }
+    }
+  }
+
+  /** Stop the data capture without releasing the native visualizer */
+  public void pause() {
+    isPaused = true;
+    updateCaptureState();
+  }
+
+  /** Restart the data capture paused by {@link #pause()} */
+  public void resume() {
+    isPaused = false;
+    updateCaptureState();
+  }
+
+  /** @param isScreenOff Capture is disabled while the screen is off */
+  public void setScreenOff(boolean isScreenOff) {
+    this.isScreenOff = isScreenOff;
+    updateCaptureState();
+  }
+
+  /** @param isHidden Capture is disabled while the visualizer is not visible on the screen */
+  public void setHidden(boolean isHidden) {
+    if (this.isHidden == isHidden) {
+      return;
+    }
+    this.isHidden = isHidden;
+    updateCaptureState();
+  }
+
+  /** @param isPowerSaveMode Cheaper capture configurations are used in power save mode */
+  public void setPowerSaveMode(boolean isPowerSaveMode) {
+    this.isPowerSaveMode = isPowerSaveMode;
+    if (captureController != null) {
+      captureController.setPowerSaveMode(isPowerSaveMode);
+    }
+  }
+
+  /** Release the native visualizer */
+  public void release() {
+    if (visualizer != null) {
+      visualizer.setEnabled(false);
+      visualizer.release();
+      visualizer = null;
+    }
+    audioSessionId = 0;
+  }
+
+  private boolean isCaptureAllowed() {
+    return !isPaused && !isScreenOff && !isHidden;
+  }
+
+  private void updateCaptureState() {
+    if (visualizer == null) {
+      return;
+    }
+    boolean isEnabled = isCaptureAllowed();
+    try {
+      if (isEnabled && !visualizer.getEnabled() && captureController != null) {
+        captureController.onCaptureResumed();
+      }
+      visualizer.setEnabled(isEnabled);
+    } catch (IllegalStateException e) {
+      Log.e(TAG, "Problem changing visualizer state: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public void onCaptureConfigChanged(int captureSize, int captureRate) {
+    applyCaptureConfig(captureSize, captureRate);
+  }
+
+  private void applyCaptureConfig(int captureSize, int captureRate) {
+    if (visualizer == null) {
+      return;
+    }
+    try {
+      // The capture size can only be changed while the visualizer is disabled
+      visualizer.setEnabled(false);
+      visualizer.setCaptureSize(captureSize);
+      visualizer.setDataCaptureListener(this, captureRate, true, false);
+      visualizer.setEnabled(isCaptureAllowed());
+      Log.d(TAG, "Visualizer capture size: " + captureSize + ", rate: " + captureRate);
+    } catch (IllegalStateException e) {
+      Log.e(TAG, "Problem applying visualizer capture config: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public void onWaveFormDataCapture(Visualizer visualizer, byte[] bytes, int samplingRate) {
+    if (targetView != null) {
+      targetView.setBytes(bytes);
+      targetView.invalidate();
+      captureController.onFrameDelivered(System.nanoTime());
+    }
+  }
+
+  @Override
+  public void onFftDataCapture(Visualizer visualizer, byte[] bytes, int samplingRate) {
+    // No implementation required
+  }
+
+  @Override
+  public void onFrameDrawn(BaseVisualizerView view, long drawTimeNanos) {
+    if (captureController != null && view == targetView) {
+      captureController.onFrameDrawn(drawTimeNanos);
+    }
+  }
+}
@@ -7,7 +7,6 @@ import androidx.core.content.ContextCompat;
 
 import com.wirehall.audiorecorder.R;
 import com.wirehall.audiorecorder.visualizer.view.BarVisualizerView;
-import com.wirehall.audiorecorder.visualizer.view.BaseVisualizerView;
 import com.wirehall.audiorecorder.visualizer.view.BlazingColorVisualizerView;
 import com.wirehall.audiorecorder.visualizer.view.CircleBarVisualizerView;
 import com.wirehall.audiorecorder.visualizer.view.CircleVisualizerView;
@@ -15,9 +14,6 @@ import com.wirehall.audiorecorder.visualizer.view.LineBarVisualizerView;
 import com.wirehall.audiorecorder.visualizer.view.LineVisualizerView;
 import com.wirehall.audiorecorder.visualizer.view.RecorderVisualizerView;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public final class VisualizerUtils {
 
   private VisualizerUtils() {
@@ -25,44 +21,65 @@ public final class VisualizerUtils {
   }
 
   /**
-   * This utility method is used to instantiate and get the media player visualizer views
+   * This utility method is used to get the registry of media player visualizer views. The views
+   * are not instantiated here, they are created by the registry when first selected
    *
    * @param context Context required for internal operations
-   * @return List<BaseVisualizerView> Returns the list of media player visualizer views
+   * @return VisualizerViewRegistry Returns the registry with all the built-in visualizer views
    */
   @NonNull
-  public static List<BaseVisualizerView> getAllMPVisualizerViews(Context context) {
-    List<BaseVisualizerView> visualizers = new ArrayList<>();
+  public static VisualizerViewRegistry createMPVisualizerViewRegistry(Context context) {
+    VisualizerViewRegistry registry = new VisualizerViewRegistry(context);
 
-    BarVisualizerView barVisualizerView = new BarVisualizerView(context);
-    barVisualizerView.setColor(ContextCompat.getColor(context, R.color.color_visualizer_view));
-    barVisualizerView.setDensity(100);
-    visualizers.add(barVisualizerView);
+    registry.register(
+        ctx -> {
+          BarVisualizerView barVisualizerView = new BarVisualizerView(ctx);
+          barVisualizerView.setColor(ContextCompat.getColor(ctx, R.color.color_visualizer_view));
+          barVisualizerView.setDensity(100);
+          return barVisualizerView;
+        });
 
-    CircleBarVisualizerView circleBarVisualizerView = new CircleBarVisualizerView(context);
-    circleBarVisualizerView.setColor(
-        ContextCompat.getColor(context, R.color.color_visualizer_view));
-    visualizers.add(circleBarVisualizerView);
+    registry.register(
+        ctx -> {
+          CircleBarVisualizerView circleBarVisualizerView = new CircleBarVisualizerView(ctx);
+          circleBarVisualizerView.setColor(
+              ContextCompat.getColor(ctx, R.color.color_visualizer_view));
+          return circleBarVisualizerView;
+        });
 
-    CircleVisualizerView circleVisualizerView = new CircleVisualizerView(context);
-    circleVisualizerView.setColor(ContextCompat.getColor(context, R.color.color_visualizer_view));
-    visualizers.add(circleVisualizerView);
+    registry.register(
+        ctx -> {
+          CircleVisualizerView circleVisualizerView = new CircleVisualizerView(ctx);
+          circleVisualizerView.setColor(ContextCompat.getColor(ctx, R.color.color_visualizer_view));
+          return circleVisualizerView;
+        });
 
-    LineBarVisualizerView lineBarVisualizerView = new LineBarVisualizerView(context);
-    lineBarVisualizerView.setColor(ContextCompat.getColor(context, R.color.color_visualizer_view));
-    lineBarVisualizerView.setDensity(100);
-    visualizers.add(lineBarVisualizerView);
+    registry.register(
+        ctx -> {
+          LineBarVisualizerView lineBarVisualizerView = new LineBarVisualizerView(ctx);
+          lineBarVisualizerView.setColor(
+              ContextCompat.getColor(ctx, R.color.color_visualizer_view));
+          lineBarVisualizerView.setDensity(100);
+          return lineBarVisualizerView;
+        });
 
-    LineVisualizerView lineVisualizerView = new LineVisualizerView(context);
-    lineVisualizerView.setColor(ContextCompat.getColor(context, R.color.color_visualizer_view));
-    visualizers.add(lineVisualizerView);
+    registry.register(
+        ctx -> {
+          LineVisualizerView lineVisualizerView = new LineVisualizerView(ctx);
+          lineVisualizerView.setColor(ContextCompat.getColor(ctx, R.color.color_visualizer_view));
+          return lineVisualizerView;
+        });
 
-    BlazingColorVisualizerView blazingColorVisualizerView = new BlazingColorVisualizerView(context);
-    blazingColorVisualizerView.setColor(
-        ContextCompat.getColor(context, R.color.color_visualizer_view));
-    visualizers.add(blazingColorVisualizerView);
+    registry.register(
+        ctx -> {
+          BlazingColorVisualizerView blazingColorVisualizerView =
+              new BlazingColorVisualizerView(ctx);
+          blazingColorVisualizerView.setColor(
+              ContextCompat.getColor(ctx, R.color.color_visualizer_view));
+          return blazingColorVisualizerView;
+        });
 
-    return visualizers;
+    return registry;
   }
 
   /**
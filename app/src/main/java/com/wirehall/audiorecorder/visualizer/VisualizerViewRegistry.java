@@ -0,0 +1,87 @@
+package com.wirehall.audiorecorder.visualizer;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.wirehall.audiorecorder.visualizer.view.BaseVisualizerView;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of media player visualizer views. Only the lightweight factories are held up front, a
+ * view is instantiated when it is first selected and the least recently used views are evicted
+ * once more than {@link #DEFAULT_MAX_CACHED_VIEWS} are alive.
+ */
+public class VisualizerViewRegistry {
+  public static final int DEFAULT_MAX_CACHED_VIEWS = 2;
+
+  private final Context context;
+  private final List<Factory> factories = new ArrayList<>();
+  private final Map<Integer, BaseVisualizerView> cachedViews;
+
+  public VisualizerViewRegistry(Context context) {
+    this(context, DEFAULT_MAX_CACHED_VIEWS);
+  }
+
+  public VisualizerViewRegistry(Context context, final int maxCachedViews) {
+    this.context = context;
+    this.cachedViews =
+        new LinkedHashMap<Integer, BaseVisualizerView>(maxCachedViews + 1, 1f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, BaseVisualizerView> eldest) {
+            return size() > maxCachedViews;
+          }
+        };
+  }
+
+  /**
+   * Register a visualizer view factory. The views are cycled in the order of registration.
+   *
+   * @param factory Factory used to instantiate the view when it is selected
+   */
+  public void register(@NonNull Factory factory) {
+    factories.add(factory);
+  }
+
+  /** @return The number of registered visualizer views */
+  public int size() {
+    return factories.size();
+  }
+
+  /**
+   * @param index Index of the view in the registration order
+   * @return The cached view at the index, it is instantiated if not already available
+   */
+  @NonNull
+  public BaseVisualizerView get(int index) {
+    BaseVisualizerView view = cachedViews.get(index);
+    if (view == null) {
+      view = factories.get(index).create(context);
+      cachedViews.put(index, view);
+    }
+    return view;
+  }
+
+  /**
+   * Drop all the cached views except the one at the given index
+   *
+   * @param indexToKeep Index of the view to keep, usually the one currently shown
+   */
+  public void trim(int indexToKeep) {
+    BaseVisualizerView keep = cachedViews.get(indexToKeep);
+    cachedViews.clear();
+    if (keep != null) {
+      cachedViews.put(indexToKeep, keep);
+    }
+  }
+
+  /** Factory used to lazily instantiate a visualizer view */
+  public interface Factory {
+    @NonNull
+    BaseVisualizerView create(@NonNull Context context);
+  }
+}
@@ -1,6 +1,7 @@
 package com.wirehall.audiorecorder.visualizer.view;
 
 import android.content.Context;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.util.AttributeSet;
@@ -13,6 +14,9 @@ public abstract class BaseVisualizerView extends View {
   protected final Paint paint = new Paint();
   protected byte[] bytes;
   protected int color = Color.BLUE;
+  private final FrameStatsOverlay frameStatsOverlay =
+      new FrameStatsOverlay(getClass().getSimpleName());
+  private FrameListener frameListener;
 
   protected BaseVisualizerView(Context context) {
     super(context);
@@ -54,5 +58,33 @@ public abstract class BaseVisualizerView extends View {
     BaseVisualizerView.this.bytes = bytes;
   }
 
+  /** @param frameListener Notified with the time taken to draw every frame, null to stop */
+  public void setFrameListener(@Nullable FrameListener frameListener) {
+    this.frameListener = frameListener;
+  }
+
+  /**
+   * @return The smallest visualizer capture size in bytes this view is able to render, 0 if the
+   *     view works with any capture size
+   */
+  public int getMinCaptureSize() {
+    return 0;
+  }
+
+  @Override
+  public void draw(Canvas canvas) {
+    long startNanos = System.nanoTime();
+    super.draw(canvas);
+    long drawTimeNanos = frameStatsOverlay.onFrameDrawn(canvas, startNanos);
+    if (frameListener != null) {
+      frameListener.onFrameDrawn(this, drawTimeNanos);
+    }
+  }
+
   protected abstract void init(@Nullable AttributeSet attributeSet);
+
+  /** Listener used to measure the cost of drawing the visualizer view */
+  public interface FrameListener {
+    void onFrameDrawn(BaseVisualizerView view, long drawTimeNanos);
+  }
 }
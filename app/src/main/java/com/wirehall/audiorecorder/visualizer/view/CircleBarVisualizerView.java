@@ -8,6 +8,8 @@ import android.util.AttributeSet;
 import androidx.annotation.Nullable;
 
 public class CircleBarVisualizerView extends BaseVisualizerView {
+  // 120 bars are drawn picking every 8.5th byte
+  private static final int MIN_CAPTURE_SIZE = 1024;
   private float[] points;
   private Paint circlePaint;
   private int radius;
@@ -31,6 +33,11 @@ public class CircleBarVisualizerView extends BaseVisualizerView {
     radius = -1;
   }
 
+  @Override
+  public int getMinCaptureSize() {
+    return MIN_CAPTURE_SIZE;
+  }
+
   @Override
   protected void onDraw(Canvas canvas) {
     if (radius == -1) {
@@ -64,7 +71,7 @@ public class CircleBarVisualizerView extends BaseVisualizerView {
             (float) (getHeight() / 2d + (radius + t) * Math.sin(Math.toRadians(angle)));
       }
 
-      canvas.drawLines(points, paint);
+      canvas.drawLines(points, 0, 120 * 4, paint);
     }
     super.onDraw(canvas);
   }
@@ -7,6 +7,8 @@ import android.util.AttributeSet;
 import androidx.annotation.Nullable;
 
 public class CircleVisualizerView extends BaseVisualizerView {
+  // 360 degrees are drawn using two bytes per degree
+  private static final int MIN_CAPTURE_SIZE = 1024;
   private float[] points;
   private float radiusMultiplier;
   private float strokeWidth = 0.005f;
@@ -47,6 +49,11 @@ public class CircleVisualizerView extends BaseVisualizerView {
     this.radiusMultiplier = radiusMultiplier;
   }
 
+  @Override
+  public int getMinCaptureSize() {
+    return MIN_CAPTURE_SIZE;
+  }
+
   @Override
   protected void onDraw(Canvas canvas) {
     if (bytes != null) {
@@ -82,7 +89,7 @@ public class CircleVisualizerView extends BaseVisualizerView {
                         * radiusMultiplier
                         * Math.sin(Math.toRadians(angle + 1)));
       }
-      canvas.drawLines(points, paint);
+      canvas.drawLines(points, 0, 360 * 4, paint);
     }
     super.onDraw(canvas);
   }
@@ -0,0 +1,50 @@
+package com.wirehall.audiorecorder.visualizer.view;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.wirehall.audiorecorder.visualizer.AdaptiveCaptureController;
+import com.wirehall.audiorecorder.visualizer.FrameStats;
+
+/**
+ * Records the draw time of the frames of a visualizer view, and shows the statistics in a debug
+ * overlay on top of the view when enabled.
+ */
+final class FrameStatsOverlay {
+  private static final int REFRESH_INTERVAL_FRAMES = 30;
+  private static final float TEXT_SIZE_PX = 24f;
+
+  private final FrameStats frameStats;
+  private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private String text = "";
+  private int framesUntilRefresh = 0;
+
+  /** @param name Name of the statistics, the name of the view class */
+  FrameStatsOverlay(String name) {
+    frameStats = FrameStats.forName(name, AdaptiveCaptureController.DEFAULT_FRAME_BUDGET_NANOS);
+    textPaint.setColor(Color.RED);
+    textPaint.setTextSize(TEXT_SIZE_PX);
+  }
+
+  /**
+   * Records the frame drawn on the canvas, and draws the overlay on top of it when enabled
+   *
+   * @param canvas The canvas the view was drawn on
+   * @param startNanos The time the view started drawing, from {@link System#nanoTime()}
+   * @return The draw time of the frame in nanoseconds, the overlay excluded
+   */
+  long onFrameDrawn(Canvas canvas, long startNanos) {
+    long drawTimeNanos = System.nanoTime() - startNanos;
+    frameStats.record(drawTimeNanos);
+    if (FrameStats.isOverlayEnabled()) {
+      // Formatting allocates, so the text is refreshed only every few frames
+      if (--framesUntilRefresh <= 0) {
+        text = frameStats.toShortString();
+        framesUntilRefresh = REFRESH_INTERVAL_FRAMES;
+      }
+      canvas.drawText(text, 4f, TEXT_SIZE_PX, textPaint);
+    }
+    return drawTimeNanos;
+  }
+}
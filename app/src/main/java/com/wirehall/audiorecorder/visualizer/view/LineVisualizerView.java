@@ -57,7 +57,8 @@ public class LineVisualizerView extends BaseVisualizerView {
             (float) (rect.height() >> 1)
                 + (((byte) (bytes[i + 1] + 128)) * ((int) (rect.height() / 3.0)) >> 7);
       }
-      canvas.drawLines(points, paint);
+      // The array may be larger than the capture, from a larger capture size
+      canvas.drawLines(points, 0, (bytes.length - 1) * 4, paint);
     }
     super.onDraw(canvas);
   }
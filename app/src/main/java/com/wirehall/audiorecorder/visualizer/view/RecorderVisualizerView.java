@@ -1,29 +1,39 @@
 package com.wirehall.audiorecorder.visualizer.view;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
+import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * Scrolling view of the recorder's metering data. The history is kept in an offscreen bitmap used
+ * as a ring buffer: every new amplitude paints a single column and advances the write position, so
+ * adding an amplitude and drawing the view cost the same no matter how wide the view is.
+ */
 public class RecorderVisualizerView extends View {
   private static final int LINE_WIDTH = 1; // width of visualizer lines
   private static final int LINE_SCALE = 75; // scales visualizer lines
-  private final Paint linePaint; // specifies line drawing characteristics
-  private List<Float> amplitudes = new ArrayList<>(); // amplitudes for line lengths
+  private static final int LINE_COLOR = Color.GREEN;
+
+  private final FrameStatsOverlay frameStatsOverlay =
+      new FrameStatsOverlay(RecorderVisualizerView.class.getSimpleName());
+  private final Rect srcRect = new Rect();
+  private final Rect dstRect = new Rect();
+  private Bitmap history; // ring buffer of the painted columns
+  private int[] columnPixels; // reused for painting every new column
+  private int writeX; // x position of the next column in the ring buffer
+  private boolean isWrapped; // true once the columns completely fill the view
   private int width; // width of this View
   private int height; // height of this View
 
   // constructor
   public RecorderVisualizerView(Context context, AttributeSet attrs) {
     super(context, attrs); // call superclass constructor
-    linePaint = new Paint(); // create Paint for lines
-    linePaint.setColor(Color.GREEN); // set color to green
-    linePaint.setStrokeWidth(LINE_WIDTH); // set stroke width
     setContentDescription(null);
   }
 
@@ -32,40 +42,79 @@ public class RecorderVisualizerView extends View {
   protected void onSizeChanged(int w, int h, int oldWidth, int oldHeight) {
     width = w; // new width of this View`
     height = h; // new height of this View
-    amplitudes = new ArrayList<>(width / LINE_WIDTH);
+    if (history != null) {
+      history.recycle();
+      history = null;
+    }
+    if (w > 0 && h > 0) {
+      history = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+      columnPixels = new int[h];
+    }
+    writeX = 0;
+    isWrapped = false;
   }
 
   /** Clears all amplitudes to prepare for a new visualization */
   public void clear() {
-    amplitudes.clear();
+    if (history != null) {
+      history.eraseColor(Color.TRANSPARENT);
+    }
+    writeX = 0;
+    isWrapped = false;
     invalidate();
   }
 
-  /** @param amplitude Adds the given amplitude value to the amplitudes ArrayList */
+  /** @param amplitude Paints the given amplitude value as the newest column */
   public void addAmplitude(float amplitude) {
-    amplitudes.add(amplitude); // add newest to the amplitudes ArrayList
+    if (history == null) {
+      return; // not laid out yet
+    }
+
+    int middle = height / 2; // get the middle of the View
+    int halfHeight = (int) (amplitude / LINE_SCALE / 2); // scale the power
+    int top = Math.max(0, middle - halfHeight);
+    int bottom = Math.min(height, middle + halfHeight + 1);
+    Arrays.fill(columnPixels, Color.TRANSPARENT);
+    Arrays.fill(columnPixels, top, bottom, LINE_COLOR);
 
-    // if the power lines completely fill the VisualizerView
-    if (amplitudes.size() * LINE_WIDTH >= width) {
-      amplitudes.remove(0); // remove oldest power value
+    for (int i = 0; i < LINE_WIDTH; i++) {
+      history.setPixels(columnPixels, 0, 1, writeX, 0, 1, height);
+      writeX++;
+      // if the power lines completely fill the VisualizerView
+      if (writeX >= width) {
+        writeX = 0; // continue over the oldest column
+        isWrapped = true;
+      }
     }
   }
 
-  // draw the visualizer with scaled lines representing the amplitudes
   @Override
-  public void onDraw(Canvas canvas) {
-    if (amplitudes.isEmpty()) canvas.drawColor(Color.TRANSPARENT);
+  public void draw(Canvas canvas) {
+    long startNanos = System.nanoTime();
+    super.draw(canvas);
+    frameStatsOverlay.onFrameDrawn(canvas, startNanos);
+  }
 
-    int middle = height / 2; // get the middle of the View
-    float curX = 0; // start curX at zero
+  // draw the ring buffer, the oldest column being the one at the write position
+  @Override
+  public void onDraw(Canvas canvas) {
+    if (history == null) {
+      return;
+    }
 
-    // for each item in the amplitudes ArrayList
-    for (float power : amplitudes) {
-      float scaledHeight = power / LINE_SCALE; // scale the power
-      curX += LINE_WIDTH; // increase X by LINE_WIDTH
+    if (!isWrapped) {
+      canvas.drawBitmap(history, 0, 0, null);
+      return;
+    }
 
-      // draw a line representing this item in the amplitudes ArrayList
-      canvas.drawLine(curX, middle + scaledHeight / 2, curX, middle - scaledHeight / 2, linePaint);
+    int olderWidth = width - writeX;
+    srcRect.set(writeX, 0, width, height);
+    dstRect.set(0, 0, olderWidth, height);
+    canvas.drawBitmap(history, srcRect, dstRect, null);
+    if (writeX > 0) {
+      srcRect.set(0, 0, writeX, height);
+      dstRect.set(olderWidth, 0, width, height);
+      canvas.drawBitmap(history, srcRect, dstRect, null);
     }
   }
 }
@@ -0,0 +1,178 @@
+package com.wirehall.audiorecorder.waveform;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decodes an audio file with {@link MediaExtractor} and {@link MediaCodec} and reduces the decoded
+ * PCM to a peak pyramid buffer by buffer. Blocking, must be called from a background thread.
+ *
+ * <p>The progress is checkpointed next to the cache file periodically and when cancelled, the
+ * next extraction of the same file seeks past the checkpointed part instead of decoding it again.
+ */
+public class PeakExtractor {
+  private static final String TAG = PeakExtractor.class.getName();
+  private static final long TIMEOUT_US = 10_000;
+  private static final int CHECKPOINT_INTERVAL_PEAKS = 4096; // about 95 seconds at 44.1 kHz
+  private static final String PARTIAL_FILE_EXTENSION = ".partial";
+
+  /**
+   * @param audioFile The recording to analyze
+   * @param cacheFile The file the peak pyramid is written to
+   * @param isCancelled Polled between the decoded buffers, the extraction stops when it is true
+   * @throws IOException If the recording can not be decoded or the cache file can not be written
+   * @throws CancellationException If cancelled, the progress is kept for the next extraction
+   */
+  public void extract(File audioFile, File cacheFile, BooleanSupplier isCancelled)
+      throws IOException {
+    File partialFile = getPartialFile(cacheFile);
+    MediaExtractor extractor = new MediaExtractor();
+    MediaCodec codec = null;
+    try {
+      extractor.setDataSource(audioFile.getAbsolutePath());
+      int track = selectAudioTrack(extractor);
+      MediaFormat format = extractor.getTrackFormat(track);
+      int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+
+      PeakPyramidBuilder builder = readCheckpoint(partialFile, sampleRate);
+      long resumeTimeUs = 0;
+      if (builder != null) {
+        resumeTimeUs = builder.getCompletedFrames() * TimeUnit.SECONDS.toMicros(1) / sampleRate;
+        extractor.seekTo(resumeTimeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        Log.d(TAG, "Resuming peak extraction of " + audioFile + " at " + resumeTimeUs + "us");
+      } else {
+        builder =
+            new PeakPyramidBuilder(sampleRate, format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+      }
+
+      codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+      codec.configure(format, null, null, 0);
+      codec.start();
+      decode(extractor, codec, builder, resumeTimeUs, partialFile, isCancelled);
+      builder.writeTo(cacheFile);
+      //noinspection ResultOfMethodCallIgnored
+      partialFile.delete();
+    } catch (IllegalStateException | IllegalArgumentException e) {
+      throw new IOException("Unable to decode " + audioFile + ": " + e.getMessage(), e);
+    } finally {
+      if (codec != null) {
+        codec.release();
+      }
+      extractor.release();
+    }
+  }
+
+  /**
+   * @param cacheFile The peak pyramid cache file
+   * @return The checkpoint file of the cache file
+   */
+  static File getPartialFile(File cacheFile) {
+    return new File(cacheFile.getPath() + PARTIAL_FILE_EXTENSION);
+  }
+
+  private static PeakPyramidBuilder readCheckpoint(File partialFile, int sampleRate) {
+    if (!partialFile.exists()) {
+      return null;
+    }
+    try {
+      PeakPyramidBuilder builder = PeakPyramidBuilder.readPartialFrom(partialFile);
+      if (builder.getSampleRate() == sampleRate && builder.getPeakCount() > 0) {
+        return builder;
+      }
+    } catch (IOException e) {
+      Log.e(TAG, e.getMessage());
+    }
+    //noinspection ResultOfMethodCallIgnored
+    partialFile.delete();
+    return null;
+  }
+
+  private static int selectAudioTrack(MediaExtractor extractor) throws IOException {
+    for (int i = 0; i < extractor.getTrackCount(); i++) {
+      String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+      if (mime != null && mime.startsWith("audio/")) {
+        extractor.selectTrack(i);
+        return i;
+      }
+    }
+    throw new IOException("No audio track found");
+  }
+
+  private static void decode(
+      MediaExtractor extractor,
+      MediaCodec codec,
+      PeakPyramidBuilder builder,
+      long resumeTimeUs,
+      File partialFile,
+      BooleanSupplier isCancelled)
+      throws IOException {
+    MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    int checkpointPeakCount = builder.getPeakCount();
+    boolean isInputDone = false;
+    boolean isOutputDone = false;
+
+    while (!isOutputDone) {
+      if (isCancelled.getAsBoolean()) {
+        builder.writePartialTo(partialFile);
+        throw new CancellationException("Peak extraction cancelled");
+      }
+
+      if (!isInputDone) {
+        int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+        if (inputIndex >= 0) {
+          ByteBuffer inputBuffer = codec.getInputBuffer(inputIndex);
+          int size = inputBuffer == null ? -1 : extractor.readSampleData(inputBuffer, 0);
+          if (size < 0) {
+            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            isInputDone = true;
+          } else {
+            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+            extractor.advance();
+          }
+        }
+      }
+
+      int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+      if (outputIndex >= 0) {
+        ByteBuffer outputBuffer = codec.getOutputBuffer(outputIndex);
+        if (outputBuffer != null && info.size > 0) {
+          // After seeking to the previous sync sample, skip what the checkpoint already covers
+          int skipBytes = 0;
+          if (info.presentationTimeUs < resumeTimeUs) {
+            long skipFrames =
+                (resumeTimeUs - info.presentationTimeUs)
+                    * builder.getSampleRate()
+                    / TimeUnit.SECONDS.toMicros(1);
+            skipBytes = (int) Math.min(info.size, skipFrames * builder.getChannelCount() * 2);
+          }
+          outputBuffer.position(info.offset + skipBytes);
+          outputBuffer.limit(info.offset + info.size);
+          // The PCM is reduced in place, without copying it out of the codec buffer
+          builder.addPcm(outputBuffer.order(ByteOrder.nativeOrder()).asShortBuffer());
+        }
+        codec.releaseOutputBuffer(outputIndex, false);
+        isOutputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+
+        if (builder.getPeakCount() - checkpointPeakCount >= CHECKPOINT_INTERVAL_PEAKS) {
+          builder.writePartialTo(partialFile);
+          checkpointPeakCount = builder.getPeakCount();
+        }
+      } else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+        MediaFormat outputFormat = codec.getOutputFormat();
+        builder.setFormat(
+            outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+            outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+      }
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package com.wirehall.audiorecorder.waveform;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only view of a min/max peak pyramid memory-mapped from a cache file. Level 0 holds one
+ * min/max pair per {@link #BASE_SAMPLES_PER_PEAK} frames of audio and every following level halves
+ * the resolution of the previous one, down to a single pair for the whole file. Only the pages
+ * touched while rendering are actually loaded into memory.
+ *
+ * <p>File layout: a header of {@code magic, version, sampleRate, baseSamplesPerPeak, levelCount}
+ * followed by the peak count of every level, then the levels one after another. Every peak is
+ * stored as two signed bytes, the min followed by the max.
+ */
+public class PeakPyramid {
+  /** One AAC frame, the finest resolution the timeline can be zoomed to */
+  public static final int BASE_SAMPLES_PER_PEAK = 1024;
+
+  static final int MAGIC = 0x5045414B; // "PEAK"
+  static final int VERSION = 1;
+  static final int BYTES_PER_PEAK = 2;
+
+  private final MappedByteBuffer buffer;
+  private final int sampleRate;
+  private final int baseSamplesPerPeak;
+  private final int[] peakCounts;
+  private final int[] levelOffsets;
+
+  private PeakPyramid(
+      MappedByteBuffer buffer, int sampleRate, int baseSamplesPerPeak, int[] peakCounts) {
+    this.buffer = buffer;
+    this.sampleRate = sampleRate;
+    this.baseSamplesPerPeak = baseSamplesPerPeak;
+    this.peakCounts = peakCounts;
+    this.levelOffsets = new int[peakCounts.length];
+    int offset = getHeaderSize(peakCounts.length);
+    for (int level = 0; level < peakCounts.length; level++) {
+      levelOffsets[level] = offset;
+      offset += peakCounts[level] * BYTES_PER_PEAK;
+    }
+  }
+
+  /**
+   * @param file The cache file written by {@link PeakPyramidBuilder}
+   * @return The memory-mapped pyramid
+   * @throws IOException If the file can not be read or is not a valid pyramid
+   */
+  public static PeakPyramid open(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        FileChannel channel = randomAccessFile.getChannel()) {
+      // The mapping stays valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < getHeaderSize(0)
+          || buffer.getInt(0) != MAGIC
+          || buffer.getInt(4) != VERSION) {
+        throw new IOException("Not a peak file: " + file);
+      }
+      int sampleRate = buffer.getInt(8);
+      int baseSamplesPerPeak = buffer.getInt(12);
+      int levelCount = buffer.getInt(16);
+      if (sampleRate <= 0 || baseSamplesPerPeak <= 0 || levelCount <= 0 || levelCount > 32) {
+        throw new IOException("Corrupt peak file header: " + file);
+      }
+
+      int[] peakCounts = new int[levelCount];
+      long expectedSize = getHeaderSize(levelCount);
+      for (int level = 0; level < levelCount; level++) {
+        peakCounts[level] = buffer.getInt(getHeaderSize(0) + level * 4);
+        expectedSize += (long) peakCounts[level] * BYTES_PER_PEAK;
+      }
+      if (expectedSize != buffer.capacity()) {
+        throw new IOException("Truncated peak file: " + file);
+      }
+      return new PeakPyramid(buffer, sampleRate, baseSamplesPerPeak, peakCounts);
+    }
+  }
+
+  static int getHeaderSize(int levelCount) {
+    return 5 * 4 + levelCount * 4;
+  }
+
+  /** @return The sample rate of the analyzed audio */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /** @return The number of levels, level 0 being the finest one */
+  public int getLevelCount() {
+    return peakCounts.length;
+  }
+
+  /**
+   * @param level The level of the pyramid
+   * @return The number of min/max pairs in the level
+   */
+  public int getPeakCount(int level) {
+    return peakCounts[level];
+  }
+
+  /**
+   * @param level The level of the pyramid
+   * @return The number of audio frames covered by a single min/max pair of the level
+   */
+  public long getSamplesPerPeak(int level) {
+    return (long) baseSamplesPerPeak << level;
+  }
+
+  /** @return The number of audio frames covered by the pyramid */
+  public long getSampleCount() {
+    return (long) peakCounts[0] * baseSamplesPerPeak;
+  }
+
+  /**
+   * @param samplesPerPixel The number of audio frames rendered in a single pixel column
+   * @return The coarsest level which still has at least one peak per pixel column
+   */
+  public int getLevelFor(double samplesPerPixel) {
+    int level = 0;
+    while (level < peakCounts.length - 1 && getSamplesPerPeak(level + 1) <= samplesPerPixel) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * @param level The level of the pyramid
+   * @param index The index of the peak in the level
+   * @return The minimum sample value between -128 and 127
+   */
+  public int getMin(int level, int index) {
+    return buffer.get(levelOffsets[level] + index * BYTES_PER_PEAK);
+  }
+
+  /**
+   * @param level The level of the pyramid
+   * @param index The index of the peak in the level
+   * @return The maximum sample value between -128 and 127
+   */
+  public int getMax(int level, int index) {
+    return buffer.get(levelOffsets[level] + index * BYTES_PER_PEAK + 1);
+  }
+}
@@ -0,0 +1,238 @@
+package com.wirehall.audiorecorder.waveform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Reduces interleaved 16-bit PCM to the base level of a {@link PeakPyramid} as it is decoded, so
+ * the PCM itself never has to be buffered. Only the base level is kept in memory, two bytes per
+ * {@link PeakPyramid#BASE_SAMPLES_PER_PEAK} frames, the coarser levels are computed when the
+ * pyramid is written.
+ *
+ * <p>The completed base peaks can be saved as a checkpoint, so an interrupted analysis is resumed
+ * from the last checkpoint instead of the start of the file.
+ */
+public class PeakPyramidBuilder {
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int PARTIAL_MAGIC = 0x50415254; // "PART"
+
+  private int sampleRate;
+  private int channelCount;
+  private byte[] peaks = new byte[INITIAL_CAPACITY * PeakPyramid.BYTES_PER_PEAK];
+  private int peakCount;
+
+  private int pendingFrames;
+  private int pendingChannel;
+  private int pendingMin = Short.MAX_VALUE;
+  private int pendingMax = Short.MIN_VALUE;
+
+  /**
+   * @param sampleRate The sample rate of the PCM
+   * @param channelCount The number of interleaved channels of the PCM
+   */
+  public PeakPyramidBuilder(int sampleRate, int channelCount) {
+    setFormat(sampleRate, channelCount);
+  }
+
+  /**
+   * Must be called when the decoder reports a new output format
+   *
+   * @param sampleRate The sample rate of the PCM
+   * @param channelCount The number of interleaved channels of the PCM
+   */
+  public void setFormat(int sampleRate, int channelCount) {
+    this.sampleRate = sampleRate;
+    this.channelCount = Math.max(1, channelCount);
+    pendingChannel = 0;
+  }
+
+  /**
+   * Reads a checkpoint written by {@link #writePartialTo(File)}
+   *
+   * @param file The checkpoint file
+   * @return The builder continuing right after the last completed peak of the checkpoint
+   * @throws IOException If the file can not be read or is not a valid checkpoint
+   */
+  public static PeakPyramidBuilder readPartialFrom(File file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != PARTIAL_MAGIC || in.readInt() != PeakPyramid.VERSION) {
+        throw new IOException("Not a peak checkpoint file: " + file);
+      }
+      int sampleRate = in.readInt();
+      int channelCount = in.readInt();
+      int peakCount = in.readInt();
+      if (sampleRate <= 0 || channelCount <= 0 || peakCount < 0) {
+        throw new IOException("Corrupt peak checkpoint file: " + file);
+      }
+
+      PeakPyramidBuilder builder = new PeakPyramidBuilder(sampleRate, channelCount);
+      builder.peaks = new byte[Math.max(INITIAL_CAPACITY, peakCount) * PeakPyramid.BYTES_PER_PEAK];
+      in.readFully(builder.peaks, 0, peakCount * PeakPyramid.BYTES_PER_PEAK);
+      builder.peakCount = peakCount;
+      return builder;
+    }
+  }
+
+  /** @return The sample rate of the PCM */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /** @return The number of interleaved channels of the PCM */
+  public int getChannelCount() {
+    return channelCount;
+  }
+
+  /** @return The number of base level peaks completed so far */
+  public int getPeakCount() {
+    return peakCount;
+  }
+
+  /** @return The number of frames covered by the completed peaks, i.e. where to resume from */
+  public long getCompletedFrames() {
+    return (long) peakCount * PeakPyramid.BASE_SAMPLES_PER_PEAK;
+  }
+
+  /**
+   * Consumes all the remaining samples of the buffer. The envelope covers all the channels.
+   *
+   * @param pcm Interleaved 16-bit PCM samples
+   */
+  public void addPcm(ShortBuffer pcm) {
+    while (pcm.hasRemaining()) {
+      int sample = pcm.get();
+      if (sample < pendingMin) {
+        pendingMin = sample;
+      }
+      if (sample > pendingMax) {
+        pendingMax = sample;
+      }
+      if (++pendingChannel == channelCount) {
+        pendingChannel = 0;
+        if (++pendingFrames == PeakPyramid.BASE_SAMPLES_PER_PEAK) {
+          flushPendingPeak();
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the pyramid with all its levels. The last partial peak is included. The file is
+   * written under a temporary name and renamed, so readers never see a partially written file.
+   *
+   * @param file The cache file
+   * @throws IOException If the file can not be written
+   */
+  public void writeTo(File file) throws IOException {
+    if (pendingFrames > 0) {
+      flushPendingPeak();
+    }
+    if (peakCount == 0) {
+      // Keep the pyramid valid for empty files
+      appendPeak(0, 0);
+    }
+
+    int[] peakCounts = getLevelPeakCounts(peakCount);
+    File tempFile = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeInt(PeakPyramid.MAGIC);
+      out.writeInt(PeakPyramid.VERSION);
+      out.writeInt(sampleRate);
+      out.writeInt(PeakPyramid.BASE_SAMPLES_PER_PEAK);
+      out.writeInt(peakCounts.length);
+      for (int count : peakCounts) {
+        out.writeInt(count);
+      }
+
+      byte[] level = Arrays.copyOf(peaks, peakCount * PeakPyramid.BYTES_PER_PEAK);
+      out.write(level);
+      for (int i = 1; i < peakCounts.length; i++) {
+        level = reduce(level, peakCounts[i]);
+        out.write(level);
+      }
+    }
+    if (!tempFile.renameTo(file)) {
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
+      throw new IOException("Unable to rename " + tempFile + " to " + file);
+    }
+  }
+
+  /**
+   * Saves the completed peaks as a checkpoint, the samples of the pending peak are not included
+   * and have to be decoded again when resuming.
+   *
+   * @param file The checkpoint file
+   * @throws IOException If the file can not be written
+   */
+  public void writePartialTo(File file) throws IOException {
+    File tempFile = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeInt(PARTIAL_MAGIC);
+      out.writeInt(PeakPyramid.VERSION);
+      out.writeInt(sampleRate);
+      out.writeInt(channelCount);
+      out.writeInt(peakCount);
+      out.write(peaks, 0, peakCount * PeakPyramid.BYTES_PER_PEAK);
+    }
+    if (!tempFile.renameTo(file)) {
+      //noinspection ResultOfMethodCallIgnored
+      tempFile.delete();
+      throw new IOException("Unable to rename " + tempFile + " to " + file);
+    }
+  }
+
+  static int[] getLevelPeakCounts(int basePeakCount) {
+    int levelCount = 1;
+    for (int count = basePeakCount; count > 1; count = (count + 1) / 2) {
+      levelCount++;
+    }
+    int[] peakCounts = new int[levelCount];
+    peakCounts[0] = basePeakCount;
+    for (int i = 1; i < levelCount; i++) {
+      peakCounts[i] = (peakCounts[i - 1] + 1) / 2;
+    }
+    return peakCounts;
+  }
+
+  // Merges every two consecutive peaks of a level into a single peak of the next level
+  private static byte[] reduce(byte[] level, int reducedCount) {
+    byte[] reduced = new byte[reducedCount * PeakPyramid.BYTES_PER_PEAK];
+    int count = level.length / PeakPyramid.BYTES_PER_PEAK;
+    for (int i = 0; i < reducedCount; i++) {
+      int first = i * 2;
+      int last = Math.min(first + 1, count - 1);
+      reduced[i * 2] = (byte) Math.min(level[first * 2], level[last * 2]);
+      reduced[i * 2 + 1] = (byte) Math.max(level[first * 2 + 1], level[last * 2 + 1]);
+    }
+    return reduced;
+  }
+
+  private void flushPendingPeak() {
+    // Keep the 8 most significant bits, which is plenty for drawing
+    appendPeak(pendingMin >> 8, pendingMax >> 8);
+    pendingFrames = 0;
+    pendingMin = Short.MAX_VALUE;
+    pendingMax = Short.MIN_VALUE;
+  }
+
+  private void appendPeak(int min, int max) {
+    if ((peakCount + 1) * PeakPyramid.BYTES_PER_PEAK > peaks.length) {
+      peaks = Arrays.copyOf(peaks, peaks.length * 2);
+    }
+    peaks[peakCount * 2] = (byte) min;
+    peaks[peakCount * 2 + 1] = (byte) max;
+    peakCount++;
+  }
+}
@@ -0,0 +1,374 @@
+package com.wirehall.audiorecorder.waveform;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.wirehall.audiorecorder.explorer.index.RecordingIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a singleton class running the peak extraction of the recordings on a small pool of
+ * background threads. Urgent jobs, i.e. the recording being played, are queued before the
+ * background jobs and preempt a running background job when all the threads are busy. A cancelled
+ * or preempted job keeps its progress and resumes from it the next time it runs.
+ *
+ * <p>The recordings without peaks are found by a single background sweep, which lists the
+ * recordings a folder at a time on the analyzer threads and queues the analysis of the next
+ * recording without peaks once the previous one is done, so the queue stays short however large
+ * the library is.
+ */
+public class WaveformAnalyzer {
+  private static final String TAG = WaveformAnalyzer.class.getName();
+  // Decoding is CPU bound, two threads leave enough room for the UI
+  private static final int THREAD_COUNT = 2;
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private static WaveformAnalyzer waveformAnalyzer;
+
+  private final ThreadPoolExecutor executor;
+  private final PeakExtractor peakExtractor = new PeakExtractor();
+  private final Map<String, AnalysisJob> jobs = new HashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+  @Nullable private Sweep sweep;
+
+  private WaveformAnalyzer() {
+    executor =
+        new ThreadPoolExecutor(
+            THREAD_COUNT,
+            THREAD_COUNT,
+            KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            runnable ->
+                new Thread(
+                    () -> {
+                      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                      runnable.run();
+                    },
+                    "WaveformAnalyzer"));
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /** @return The singleton instance of WaveformAnalyzer */
+  public static synchronized WaveformAnalyzer getInstance() {
+    if (waveformAnalyzer == null) {
+      waveformAnalyzer = new WaveformAnalyzer();
+    }
+    return waveformAnalyzer;
+  }
+
+  /**
+   * Queues the peak extraction of the recording, nothing is decoded if the peaks are cached
+   * already. A recording is never analyzed by two jobs at once.
+   *
+   * @param context Context required for internal operations
+   * @param audioFile The recording
+   * @param isUrgent Whether the peaks are needed right now, e.g. for the playing recording
+   * @param callback Invoked on the analyzer thread once the cache file is available
+   */
+  public synchronized void analyze(
+      Context context, File audioFile, boolean isUrgent, @Nullable Callback callback) {
+    AnalysisJob job = jobs.get(audioFile.getAbsolutePath());
+    if (job != null && job.isCancelled) {
+      // Cancelled while running, it goes on from where it is instead of a second job
+      job.isCancelled = false;
+    }
+    if (job == null) {
+      job = new AnalysisJob(context.getApplicationContext(), audioFile, isUrgent);
+      jobs.put(audioFile.getAbsolutePath(), job);
+      if (callback != null) {
+        job.callbacks.add(callback);
+      }
+      executor.execute(job);
+    } else {
+      if (callback != null) {
+        job.callbacks.add(callback);
+      }
+      if (isUrgent && !job.isUrgent) {
+        // Re-queue to move the job ahead of the background jobs
+        boolean isQueued = executor.remove(job);
+        job.isUrgent = true;
+        if (isQueued) {
+          executor.execute(job);
+        }
+      }
+    }
+
+    if (isUrgent && !job.isRunning) {
+      preemptBackgroundJob();
+    }
+  }
+
+  /**
+   * Stops the analysis of the recording, the progress is kept for the next analysis. The callbacks
+   * of the job are dropped, the next analysis takes its own. A running job stays registered until
+   * it stops, so an analysis queued meanwhile resumes it.
+   *
+   * @param audioFile The recording
+   */
+  public synchronized void cancel(File audioFile) {
+    AnalysisJob job = jobs.get(audioFile.getAbsolutePath());
+    if (job != null) {
+      job.isCancelled = true;
+      job.callbacks.clear();
+      if (!job.isRunning) {
+        jobs.remove(audioFile.getAbsolutePath());
+        executor.remove(job);
+        job.resumeSweep();
+      }
+    }
+  }
+
+  /**
+   * Extracts the peaks of the listed recordings which have none yet, in the background. The sweep
+   * replaces the previous one.
+   *
+   * @param context Context required for internal operations
+   * @param recordingSource Lists the recordings, on the analyzer threads
+   */
+  public synchronized void analyzeMissing(Context context, RecordingSource recordingSource) {
+    if (sweep != null) {
+      sweep.isCancelled = true;
+      executor.remove(sweep);
+    }
+    sweep = new Sweep(context.getApplicationContext(), recordingSource);
+    executor.execute(sweep);
+  }
+
+  /** Stops the sweep and all the analysis jobs which are not urgent, the progress is kept */
+  public synchronized void cancelBackgroundJobs() {
+    if (sweep != null) {
+      sweep.isCancelled = true;
+      sweep = null;
+    }
+    // A single pass over the queue, it holds the sweep and the background jobs
+    executor.getQueue().removeIf(task -> !((Task) task).isUrgent);
+    jobs.values()
+        .removeIf(
+            job -> {
+              if (job.isUrgent) {
+                return false;
+              }
+              job.isCancelled = true;
+              job.callbacks.clear();
+              // A running job stays registered until it stops, like in cancel()
+              return !job.isRunning;
+            });
+  }
+
+  private void preemptBackgroundJob() {
+    int runningCount = 0;
+    AnalysisJob backgroundJob = null;
+    for (AnalysisJob job : jobs.values()) {
+      if (job.isRunning) {
+        runningCount++;
+        if (!job.isUrgent && !job.isPreempted) {
+          backgroundJob = job;
+        }
+      }
+    }
+    if (runningCount >= THREAD_COUNT && backgroundJob != null) {
+      Log.d(TAG, "Preempting peak extraction of " + backgroundJob.audioFile);
+      backgroundJob.isPreempted = true;
+    }
+  }
+
+  /** Callback used to deliver the peak pyramid cache file */
+  public interface Callback {
+    /**
+     * @param audioFile The recording
+     * @param cacheFile The peak pyramid cache file of the recording
+     */
+    void onPeaksReady(File audioFile, File cacheFile);
+  }
+
+  /** Lists the recordings of a background sweep */
+  public interface RecordingSource {
+    /** @return The folders of the recordings */
+    List<String> getFolders();
+
+    /**
+     * @param folder One of the folders
+     * @return The recordings of the folder
+     */
+    List<RecordingIndex.Entry> getRecordings(String folder);
+  }
+
+  // The tasks of the executor, the urgent ones first and then in the order they were created
+  private abstract class Task implements Runnable, Comparable<Task> {
+    private final long order = sequence.incrementAndGet();
+    volatile boolean isUrgent;
+    volatile boolean isCancelled;
+
+    @Override
+    public int compareTo(@NonNull Task other) {
+      if (isUrgent != other.isUrgent) {
+        return isUrgent ? -1 : 1;
+      }
+      return Long.compare(order, other.order);
+    }
+  }
+
+  // Finds the next recording without peaks and queues its analysis, it is queued again once the
+  // analysis is done
+  private class Sweep extends Task {
+    private final Context context;
+    private final RecordingSource recordingSource;
+    private Set<String> cacheFileNames;
+    private Iterator<String> folders;
+    private Iterator<RecordingIndex.Entry> recordings = Collections.emptyIterator();
+
+    private Sweep(Context context, RecordingSource recordingSource) {
+      this.context = context;
+      this.recordingSource = recordingSource;
+    }
+
+    @Override
+    public void run() {
+      if (folders == null) {
+        cacheFileNames = WaveformUtils.getPeakCacheFileNames(context);
+        folders = recordingSource.getFolders().iterator();
+      }
+      while (!isCancelled) {
+        if (!recordings.hasNext()) {
+          if (!folders.hasNext()) {
+            return;
+          }
+          recordings = recordingSource.getRecordings(folders.next()).iterator();
+          continue;
+        }
+        RecordingIndex.Entry recording = recordings.next();
+        File audioFile = new File(recording.getPath());
+        String cacheFileName =
+            WaveformUtils.getPeakCacheFileName(
+                audioFile, recording.getSize(), recording.getModified());
+        if (!cacheFileNames.contains(cacheFileName) && queue(audioFile)) {
+          return;
+        }
+      }
+    }
+
+    // False if the recording is analyzed already
+    private boolean queue(File audioFile) {
+      synchronized (WaveformAnalyzer.this) {
+        if (isCancelled || jobs.containsKey(audioFile.getAbsolutePath())) {
+          return false;
+        }
+        AnalysisJob job = new AnalysisJob(context, audioFile, false);
+        job.sweep = this;
+        jobs.put(audioFile.getAbsolutePath(), job);
+        executor.execute(job);
+        return true;
+      }
+    }
+
+    // Invoked with the analyzer locked
+    private void resume() {
+      if (!isCancelled) {
+        executor.execute(this);
+      }
+    }
+  }
+
+  private class AnalysisJob extends Task {
+    private final Context context;
+    private final File audioFile;
+    private final List<Callback> callbacks = new ArrayList<>();
+    // The sweep which queued the job, resumed once the job is done
+    @Nullable private Sweep sweep;
+    private volatile boolean isRunning;
+    private volatile boolean isPreempted;
+
+    AnalysisJob(Context context, File audioFile, boolean isUrgent) {
+      this.context = context;
+      this.audioFile = audioFile;
+      this.isUrgent = isUrgent;
+    }
+
+    @Override
+    public void run() {
+      synchronized (WaveformAnalyzer.this) {
+        if (isCancelled) {
+          return;
+        }
+        isRunning = true;
+      }
+
+      File cacheFile = WaveformUtils.getPeakCacheFile(context, audioFile);
+      try {
+        if (!cacheFile.exists()) {
+          long startTime = SystemClock.elapsedRealtime();
+          peakExtractor.extract(audioFile, cacheFile, () -> isCancelled || isPreempted);
+          WaveformUtils.deleteStalePeakCacheFiles(context, audioFile);
+          Log.d(
+              TAG,
+              "Extracted peaks of "
+                  + audioFile
+                  + " in "
+                  + (SystemClock.elapsedRealtime() - startTime)
+                  + "ms");
+        }
+        finish(cacheFile);
+      } catch (CancellationException e) {
+        synchronized (WaveformAnalyzer.this) {
+          isRunning = false;
+          if (isCancelled) {
+            jobs.remove(audioFile.getAbsolutePath(), this);
+            resumeSweep();
+          } else {
+            // Preempted by an urgent job or analyzed again after its cancellation, continue from
+            // the checkpoint once a thread is free
+            isPreempted = false;
+            executor.execute(this);
+          }
+        }
+      } catch (IOException e) {
+        Log.e(TAG, e.getMessage());
+        finish(null);
+      }
+    }
+
+    private void finish(@Nullable File cacheFile) {
+      List<Callback> callbacksToNotify;
+      synchronized (WaveformAnalyzer.this) {
+        isRunning = false;
+        jobs.remove(audioFile.getAbsolutePath(), this);
+        callbacksToNotify = new ArrayList<>(callbacks);
+      }
+      if (cacheFile != null) {
+        for (Callback callback : callbacksToNotify) {
+          callback.onPeaksReady(audioFile, cacheFile);
+        }
+      }
+      resumeSweep();
+    }
+
+    private void resumeSweep() {
+      synchronized (WaveformAnalyzer.this) {
+        if (sweep != null) {
+          sweep.resume();
+          sweep = null;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.wirehall.audiorecorder.waveform;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loads the peak pyramid of a recording in the background. The pyramid is memory-mapped from the
+ * cache file, which is created by {@link WaveformAnalyzer} the first time.
+ */
+public class WaveformLoader {
+  private static final String TAG = WaveformLoader.class.getName();
+
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private File pendingAudioFile;
+
+  /**
+   * Loads the pyramid of the recording urgently. A pending load of another recording is cancelled,
+   * its progress is kept.
+   *
+   * @param context Context required for internal operations
+   * @param path The path of the recording
+   * @param callback Invoked on the main thread once the pyramid is available
+   */
+  public void load(Context context, final String path, final Callback callback) {
+    WaveformAnalyzer waveformAnalyzer = WaveformAnalyzer.getInstance();
+    File audioFile = new File(path);
+    if (pendingAudioFile != null && !pendingAudioFile.equals(audioFile)) {
+      waveformAnalyzer.cancel(pendingAudioFile);
+    }
+    pendingAudioFile = audioFile;
+
+    waveformAnalyzer.analyze(
+        context,
+        audioFile,
+        true,
+        (analyzedFile, cacheFile) -> {
+          try {
+            final PeakPyramid peakPyramid = PeakPyramid.open(cacheFile);
+            mainHandler.post(() -> callback.onWaveformLoaded(path, peakPyramid));
+          } catch (IOException e) {
+            Log.e(TAG, e.getMessage());
+            // A corrupt cache file is re-created next time
+            //noinspection ResultOfMethodCallIgnored
+            cacheFile.delete();
+          }
+        });
+  }
+
+  /** Callback used to deliver the loaded peak pyramid */
+  public interface Callback {
+    /**
+     * @param path The path of the recording
+     * @param peakPyramid The peak pyramid of the recording
+     */
+    void onWaveformLoaded(String path, PeakPyramid peakPyramid);
+  }
+}
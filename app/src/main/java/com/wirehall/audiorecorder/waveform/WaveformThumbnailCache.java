@@ -0,0 +1,302 @@
+package com.wirehall.audiorecorder.waveform;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.annotation.Nullable;
+
+import com.wirehall.audiorecorder.IoExecutor;
+import com.wirehall.audiorecorder.R;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * This is a singleton class holding the waveform thumbnails of the file list rows. A thumbnail is
+ * rendered on the {@link IoExecutor} from the cached peaks of the recording, the recordings which
+ * have none yet are queued for analysis and rendered once their peaks are ready. The thumbnails are
+ * kept in an LRU cache bounded in bytes and keyed by the path and the modification time of the
+ * recording, so a modified recording never shows a stale thumbnail.
+ *
+ * <p>All the thumbnails have the same size, the bitmaps evicted from the cache are reused for the
+ * next renders once no row shows them anymore, so scrolling allocates no bitmaps. The executor only
+ * renders into an alpha mask, which is copied into a bitmap on the UI thread, so a bitmap is never
+ * written while a row may show it. All the methods are invoked on the UI thread.
+ */
+public class WaveformThumbnailCache {
+  private static final String TAG = WaveformThumbnailCache.class.getName();
+  // About 70 thumbnails at xxhdpi, several screens of rows
+  private static final int MAX_CACHE_BYTES = 1024 * 1024;
+  private static final int MAX_POOL_SIZE = 8;
+
+  private static WaveformThumbnailCache waveformThumbnailCache;
+
+  private final Context appContext;
+  private final int width;
+  private final int height;
+  private final int stride;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final LruCache<String, Bitmap> cache;
+  private final ArrayDeque<Bitmap> pool = new ArrayDeque<>();
+  private final Map<ImageView, Binding> bindings = new WeakHashMap<>();
+  // Evicted while a row still shows them, pooled once it does not
+  private final Set<Bitmap> evictedBitmaps = Collections.newSetFromMap(new WeakHashMap<>());
+  private final Set<String> loadingKeys = new HashSet<>();
+  // Guarded by itself, the render buffers are taken by the render tasks
+  private final ArrayDeque<byte[]> masks = new ArrayDeque<>();
+
+  private WaveformThumbnailCache(Context context) {
+    appContext = context.getApplicationContext();
+    width = appContext.getResources().getDimensionPixelSize(R.dimen.size_file_row_waveform_width);
+    height = appContext.getResources().getDimensionPixelSize(R.dimen.size_file_row_waveform_height);
+    // The rows of the bitmaps may be padded, the masks are laid out the same way
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+    stride = bitmap.getRowBytes();
+    pool.add(bitmap);
+    cache =
+        new LruCache<String, Bitmap>(MAX_CACHE_BYTES) {
+          @Override
+          protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getAllocationByteCount();
+          }
+
+          @Override
+          protected void entryRemoved(
+              boolean evicted, String key, Bitmap oldBitmap, @Nullable Bitmap newBitmap) {
+            if (isBound(oldBitmap)) {
+              evictedBitmaps.add(oldBitmap);
+            } else {
+              recycle(oldBitmap);
+            }
+          }
+        };
+  }
+
+  /**
+   * @param context Context required for internal operations
+   * @return The singleton instance of WaveformThumbnailCache
+   */
+  public static synchronized WaveformThumbnailCache getInstance(Context context) {
+    if (waveformThumbnailCache == null) {
+      waveformThumbnailCache = new WaveformThumbnailCache(context);
+    }
+    return waveformThumbnailCache;
+  }
+
+  /**
+   * Shows the thumbnail of the recording in the view, right away if it is cached, otherwise once it
+   * is rendered. The thumbnail shown before in the view is released.
+   *
+   * @param view The view of the row
+   * @param path The path of the recording
+   * @param size The size of the recording in bytes
+   * @param modified The modification time of the recording
+   */
+  public void bind(ImageView view, String path, long size, long modified) {
+    String key = getKey(path, modified);
+    Binding binding = bindings.get(view);
+    if (binding == null) {
+      binding = new Binding();
+      bindings.put(view, binding);
+    } else if (key.equals(binding.key) && binding.bitmap != null) {
+      return;
+    }
+    binding.key = key;
+    Bitmap bitmap = cache.get(key);
+    setBitmap(view, binding, bitmap);
+    if (bitmap == null) {
+      load(new Thumbnail(key, path, size, modified), IoExecutor.Priority.VISIBLE);
+    }
+  }
+
+  /**
+   * Clears the view, e.g. when its row is recycled or bound to a placeholder
+   *
+   * @param view The view of the row
+   */
+  public void unbind(ImageView view) {
+    Binding binding = bindings.remove(view);
+    if (binding != null) {
+      setBitmap(view, binding, null);
+    }
+  }
+
+  /**
+   * Renders the thumbnail of a recording which is about to be shown, at a lower priority than the
+   * thumbnails of the shown rows
+   *
+   * @param path The path of the recording
+   * @param size The size of the recording in bytes
+   * @param modified The modification time of the recording
+   */
+  public void prefetch(String path, long size, long modified) {
+    String key = getKey(path, modified);
+    if (cache.get(key) == null) {
+      load(new Thumbnail(key, path, size, modified), IoExecutor.Priority.BACKGROUND);
+    }
+  }
+
+  private static String getKey(String path, long modified) {
+    return path + "@" + modified;
+  }
+
+  private void load(final Thumbnail thumbnail, IoExecutor.Priority priority) {
+    if (!loadingKeys.add(thumbnail.key)) {
+      return;
+    }
+    IoExecutor.getInstance()
+        .execute(priority, () -> render(thumbnail), mask -> onRendered(thumbnail, mask));
+  }
+
+  // Invoked on the executor, null if the recording has no peaks yet
+  @Nullable
+  private byte[] render(Thumbnail thumbnail) {
+    File cacheFile =
+        WaveformUtils.getPeakCacheFile(
+            appContext, new File(thumbnail.path), thumbnail.size, thumbnail.modified);
+    if (!cacheFile.exists()) {
+      return null;
+    }
+    try {
+      PeakPyramid peakPyramid = PeakPyramid.open(cacheFile);
+      byte[] mask = obtainMask();
+      WaveformThumbnailRenderer.render(peakPyramid, width, height, stride, mask);
+      return mask;
+    } catch (IOException e) {
+      Log.e(TAG, e.getMessage());
+      // A corrupt cache file is re-created by the analysis
+      //noinspection ResultOfMethodCallIgnored
+      cacheFile.delete();
+      return null;
+    }
+  }
+
+  private void onRendered(final Thumbnail thumbnail, @Nullable byte[] mask) {
+    loadingKeys.remove(thumbnail.key);
+    if (mask != null) {
+      Bitmap bitmap = cache.get(thumbnail.key);
+      if (bitmap == null) {
+        // Taken from the pool, so no row shows it while its pixels are replaced
+        bitmap = obtainBitmap();
+        bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(mask));
+        cache.put(thumbnail.key, bitmap);
+      }
+      recycleMask(mask);
+      for (Map.Entry<ImageView, Binding> entry : bindings.entrySet()) {
+        Binding binding = entry.getValue();
+        if (thumbnail.key.equals(binding.key) && binding.bitmap == null) {
+          setBitmap(entry.getKey(), binding, bitmap);
+        }
+      }
+    } else if (isBound(thumbnail.key)) {
+      // Only the shown recordings are analyzed ahead of the background analysis
+      WaveformAnalyzer.getInstance()
+          .analyze(
+              appContext,
+              new File(thumbnail.path),
+              false,
+              (audioFile, cacheFile) -> mainHandler.post(() -> onPeaksReady(thumbnail)));
+    }
+  }
+
+  private void onPeaksReady(Thumbnail thumbnail) {
+    if (cache.get(thumbnail.key) == null && isBound(thumbnail.key)) {
+      load(thumbnail, IoExecutor.Priority.VISIBLE);
+    }
+  }
+
+  private void setBitmap(ImageView view, Binding binding, @Nullable Bitmap bitmap) {
+    Bitmap previousBitmap = binding.bitmap;
+    binding.bitmap = bitmap;
+    if (bitmap != null) {
+      view.setImageBitmap(bitmap);
+    } else {
+      view.setImageDrawable(null);
+    }
+    if (previousBitmap != null
+        && previousBitmap != bitmap
+        && !isBound(previousBitmap)
+        && evictedBitmaps.remove(previousBitmap)) {
+      recycle(previousBitmap);
+    }
+  }
+
+  private boolean isBound(Bitmap bitmap) {
+    for (Binding binding : bindings.values()) {
+      if (binding.bitmap == bitmap) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isBound(String key) {
+    for (Binding binding : bindings.values()) {
+      if (key.equals(binding.key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void recycle(Bitmap bitmap) {
+    if (pool.size() < MAX_POOL_SIZE) {
+      pool.add(bitmap);
+    }
+  }
+
+  private Bitmap obtainBitmap() {
+    Bitmap bitmap = pool.poll();
+    return bitmap != null ? bitmap : Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+  }
+
+  private void recycleMask(byte[] mask) {
+    synchronized (masks) {
+      if (masks.size() < MAX_POOL_SIZE) {
+        masks.add(mask);
+      }
+    }
+  }
+
+  private byte[] obtainMask() {
+    synchronized (masks) {
+      byte[] mask = masks.poll();
+      if (mask != null) {
+        return mask;
+      }
+    }
+    return new byte[stride * height];
+  }
+
+  // The thumbnail shown in a view
+  private static class Binding {
+    private String key;
+    @Nullable private Bitmap bitmap;
+  }
+
+  private static class Thumbnail {
+    private final String key;
+    private final String path;
+    private final long size;
+    private final long modified;
+
+    private Thumbnail(String key, String path, long size, long modified) {
+      this.key = key;
+      this.path = path;
+      this.size = size;
+      this.modified = modified;
+    }
+  }
+}
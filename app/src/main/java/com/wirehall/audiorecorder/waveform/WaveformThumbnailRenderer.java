@@ -0,0 +1,57 @@
+package com.wirehall.audiorecorder.waveform;
+
+import java.util.Arrays;
+
+/**
+ * Rasterizes the whole waveform of a recording into an alpha mask, one min/max span per pixel
+ * column, the same way {@link com.wirehall.audiorecorder.waveform.view.WaveformTimelineView} draws
+ * it zoomed out. Only the coarsest level with a peak per column is read from the pyramid.
+ */
+final class WaveformThumbnailRenderer {
+  private static final byte OPAQUE = (byte) 0xFF;
+
+  private WaveformThumbnailRenderer() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /**
+   * @param peakPyramid The peaks of the recording
+   * @param width The width of the mask in pixels
+   * @param height The height of the mask in pixels
+   * @param stride The number of bytes of a row of the mask, at least the width
+   * @param mask The mask, cleared before the waveform is drawn
+   */
+  static void render(PeakPyramid peakPyramid, int width, int height, int stride, byte[] mask) {
+    Arrays.fill(mask, 0, stride * height, (byte) 0);
+    double samplesPerPixel = (double) peakPyramid.getSampleCount() / width;
+    int level = peakPyramid.getLevelFor(samplesPerPixel);
+    double levelSamplesPerPeak = peakPyramid.getSamplesPerPeak(level);
+    int peakCount = peakPyramid.getPeakCount(level);
+    float centerY = height / 2f;
+    float scale = centerY / 128f;
+
+    for (int x = 0; x < width; x++) {
+      double columnStartSample = x * samplesPerPixel;
+      int first = (int) (columnStartSample / levelSamplesPerPeak);
+      if (first >= peakCount) {
+        break;
+      }
+      int end = (int) Math.ceil((columnStartSample + samplesPerPixel) / levelSamplesPerPeak);
+      end = Math.min(peakCount, Math.max(first + 1, end));
+
+      int min = peakPyramid.getMin(level, first);
+      int max = peakPyramid.getMax(level, first);
+      for (int i = first + 1; i < end; i++) {
+        min = Math.min(min, peakPyramid.getMin(level, i));
+        max = Math.max(max, peakPyramid.getMax(level, i));
+      }
+
+      // At least one pixel, the silent parts are drawn as a line through the center
+      int top = Math.max(0, Math.min(height - 1, (int) Math.floor(centerY - max * scale)));
+      int bottom = Math.min(height, Math.max(top + 1, (int) Math.ceil(centerY - min * scale)));
+      for (int y = top; y < bottom; y++) {
+        mask[y * stride + x] = OPAQUE;
+      }
+    }
+  }
+}
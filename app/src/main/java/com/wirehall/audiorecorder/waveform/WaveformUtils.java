@@ -0,0 +1,174 @@
+package com.wirehall.audiorecorder.waveform;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public final class WaveformUtils {
+  private static final String CACHE_DIR_NAME = "waveforms";
+  private static final String CACHE_FILE_EXTENSION = ".peaks";
+
+  private WaveformUtils() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /**
+   * The cache file name is derived from the path, size and modification time of the recording, so
+   * a modified or replaced recording never matches a stale cache file. The time is taken to the
+   * second, so the name is the same whether the metadata comes from the file or the media store.
+   *
+   * @param context Context required for internal operations
+   * @param audioFile The recording
+   * @return The peak pyramid cache file of the recording, which may not exist yet
+   */
+  @NonNull
+  public static File getPeakCacheFile(Context context, File audioFile) {
+    return getPeakCacheFile(context, audioFile, audioFile.length(), audioFile.lastModified());
+  }
+
+  /**
+   * Same as {@link #getPeakCacheFile(Context, File)}, from the indexed metadata of the recording
+   * instead of the file itself
+   *
+   * @param context Context required for internal operations
+   * @param audioFile The recording
+   * @param size The size of the recording in bytes
+   * @param modified The modification time of the recording
+   * @return The peak pyramid cache file of the recording, which may not exist yet
+   */
+  @NonNull
+  public static File getPeakCacheFile(Context context, File audioFile, long size, long modified) {
+    return new File(getCacheDir(context), getPeakCacheFileName(audioFile, size, modified));
+  }
+
+  /**
+   * @param audioFile The recording
+   * @param size The size of the recording in bytes
+   * @param modified The modification time of the recording
+   * @return The name of the peak pyramid cache file of the recording
+   */
+  @NonNull
+  public static String getPeakCacheFileName(File audioFile, long size, long modified) {
+    return getCacheFilePrefix(audioFile)
+        + Long.toHexString(size)
+        + "_"
+        + Long.toHexString(TimeUnit.MILLISECONDS.toSeconds(modified))
+        + CACHE_FILE_EXTENSION;
+  }
+
+  /**
+   * @param context Context required for internal operations
+   * @return The names of the existing cache files, the cache directory is listed once to look up
+   *     many recordings
+   */
+  @NonNull
+  public static Set<String> getPeakCacheFileNames(Context context) {
+    Set<String> names = new HashSet<>();
+    String[] files = getCacheDir(context).list();
+    if (files != null) {
+      Collections.addAll(names, files);
+    }
+    return names;
+  }
+
+  /**
+   * Deletes the cache files of older versions of the recording
+   *
+   * @param context Context required for internal operations
+   * @param audioFile The recording
+   */
+  public static void deleteStalePeakCacheFiles(Context context, File audioFile) {
+    String prefix = getCacheFilePrefix(audioFile);
+    String current = getPeakCacheFile(context, audioFile).getName();
+    File[] files = getCacheDir(context).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.getName().startsWith(prefix) && !file.getName().equals(current)) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Deletes all the cache files of the recordings, the cache directory is listed once for all of
+   * them
+   *
+   * @param context Context required for internal operations
+   * @param audioFiles The deleted recordings
+   */
+  public static void deletePeakCacheFiles(Context context, Collection<File> audioFiles) {
+    Set<String> prefixes = new HashSet<>();
+    for (File audioFile : audioFiles) {
+      prefixes.add(getCacheFilePrefix(audioFile));
+    }
+    File[] files = getCacheDir(context).listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (prefixes.contains(getCacheFilePrefix(file.getName()))) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Renames the cache files of the moved recordings after their new path. A move keeps the size
+   * and the modification time, so the peaks are still valid for the moved file
+   *
+   * @param context Context required for internal operations
+   * @param movedFiles The new files of the moved recordings keyed by their previous file
+   */
+  public static void movePeakCacheFiles(Context context, Map<File, File> movedFiles) {
+    Map<String, String> prefixes = new HashMap<>();
+    for (Map.Entry<File, File> movedFile : movedFiles.entrySet()) {
+      prefixes.put(
+          getCacheFilePrefix(movedFile.getKey()), getCacheFilePrefix(movedFile.getValue()));
+    }
+    File cacheDir = getCacheDir(context);
+    File[] files = cacheDir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String prefix = getCacheFilePrefix(file.getName());
+      String newPrefix = prefixes.get(prefix);
+      if (newPrefix != null) {
+        File newFile = new File(cacheDir, newPrefix + file.getName().substring(prefix.length()));
+        //noinspection ResultOfMethodCallIgnored
+        file.renameTo(newFile);
+      }
+    }
+  }
+
+  // The prefix of the name of a cache file, up to and including the first separator
+  private static String getCacheFilePrefix(String cacheFileName) {
+    return cacheFileName.substring(0, cacheFileName.indexOf('_') + 1);
+  }
+
+  private static String getCacheFilePrefix(File audioFile) {
+    return Integer.toHexString(audioFile.getAbsolutePath().hashCode()) + "_";
+  }
+
+  private static File getCacheDir(Context context) {
+    File dir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+    if (!dir.exists()) {
+      //noinspection ResultOfMethodCallIgnored
+      dir.mkdirs();
+    }
+    return dir;
+  }
+}
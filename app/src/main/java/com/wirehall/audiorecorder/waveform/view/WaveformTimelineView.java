@@ -0,0 +1,251 @@
+package com.wirehall.audiorecorder.waveform.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.wirehall.audiorecorder.R;
+import com.wirehall.audiorecorder.waveform.PeakPyramid;
+
+/**
+ * Waveform of the playing recording which can be pinch-zoomed from the whole file down to a single
+ * peak per pixel column, panned while zoomed and tapped to seek. Every column is drawn from the
+ * coarsest pyramid level that still has a peak per column, so only the peaks of the visible
+ * columns are read no matter how long the recording is.
+ */
+public class WaveformTimelineView extends View {
+  private final Paint remainingPaint = new Paint();
+  private final Paint playedPaint = new Paint();
+  private final Paint positionPaint = new Paint();
+  private final ScaleGestureDetector scaleGestureDetector;
+  private final GestureDetector gestureDetector;
+
+  private PeakPyramid peakPyramid;
+  private OnSeekListener onSeekListener;
+  private double samplesPerPixel;
+  private double viewStartSample;
+  private long positionSample;
+  private boolean isTouching;
+  // Whether the gesture being handled is a single tap
+  private boolean isTapped;
+  private float[] playedLines = new float[0];
+  private float[] remainingLines = new float[0];
+
+  public WaveformTimelineView(Context context) {
+    this(context, null);
+  }
+
+  public WaveformTimelineView(Context context, @Nullable AttributeSet attrs) {
+    super(context, attrs);
+    remainingPaint.setColor(ContextCompat.getColor(context, R.color.color_waveform));
+    playedPaint.setColor(ContextCompat.getColor(context, R.color.color_waveform_played));
+    positionPaint.setColor(ContextCompat.getColor(context, R.color.color_waveform_position));
+    scaleGestureDetector = new ScaleGestureDetector(context, new ScaleListener());
+    gestureDetector = new GestureDetector(context, new PanListener());
+  }
+
+  /** @param peakPyramid The waveform to show zoomed out to the whole file, null to clear it */
+  public void setPeakPyramid(@Nullable PeakPyramid peakPyramid) {
+    this.peakPyramid = peakPyramid;
+    samplesPerPixel = getMaxSamplesPerPixel();
+    viewStartSample = 0;
+    positionSample = 0;
+    invalidate();
+  }
+
+  /** @param onSeekListener Notified when the user taps a position on the waveform */
+  public void setOnSeekListener(@Nullable OnSeekListener onSeekListener) {
+    this.onSeekListener = onSeekListener;
+  }
+
+  /**
+   * Moves the playback marker, the view follows the marker when it leaves the visible part
+   *
+   * @param positionMillis The playback position
+   */
+  public void setPosition(int positionMillis) {
+    if (peakPyramid == null) {
+      return;
+    }
+    long newPositionSample = (long) positionMillis * peakPyramid.getSampleRate() / 1000;
+    if (newPositionSample == positionSample) {
+      return;
+    }
+    positionSample = newPositionSample;
+
+    double viewEndSample = viewStartSample + getWidth() * samplesPerPixel;
+    if (!isTouching && (positionSample < viewStartSample || positionSample >= viewEndSample)) {
+      viewStartSample = positionSample;
+      clampViewStart();
+    }
+    invalidate();
+  }
+
+  @Override
+  protected void onSizeChanged(int w, int h, int oldWidth, int oldHeight) {
+    super.onSizeChanged(w, h, oldWidth, oldHeight);
+    playedLines = new float[w * 4];
+    remainingLines = new float[w * 4];
+    // The pyramid may have been set before the first layout, show the whole file then
+    samplesPerPixel =
+        oldWidth == 0 ? getMaxSamplesPerPixel() : clampSamplesPerPixel(samplesPerPixel);
+    clampViewStart();
+  }
+
+  @Override
+  public boolean onTouchEvent(MotionEvent event) {
+    if (peakPyramid == null) {
+      return false;
+    }
+    int action = event.getActionMasked();
+    if (action == MotionEvent.ACTION_DOWN) {
+      isTouching = true;
+      isTapped = false;
+      getParent().requestDisallowInterceptTouchEvent(true);
+    } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+      isTouching = false;
+    }
+    scaleGestureDetector.onTouchEvent(event);
+    if (!scaleGestureDetector.isInProgress()) {
+      gestureDetector.onTouchEvent(event);
+    }
+    if (action == MotionEvent.ACTION_UP && isTapped) {
+      performClick();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean performClick() {
+    // The tap itself seeks, a click only notifies the listeners and the accessibility services
+    return super.performClick();
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    super.onDraw(canvas);
+    if (peakPyramid == null || getWidth() == 0) {
+      return;
+    }
+
+    float centerY = getHeight() / 2f;
+    float scale = centerY / 128f;
+    int level = peakPyramid.getLevelFor(samplesPerPixel);
+    double levelSamplesPerPeak = peakPyramid.getSamplesPerPeak(level);
+    int peakCount = peakPyramid.getPeakCount(level);
+
+    int playedCount = 0;
+    int remainingCount = 0;
+    for (int x = 0; x < getWidth(); x++) {
+      double columnStartSample = viewStartSample + x * samplesPerPixel;
+      int first = (int) (columnStartSample / levelSamplesPerPeak);
+      if (first >= peakCount) {
+        break;
+      }
+      int end = (int) Math.ceil((columnStartSample + samplesPerPixel) / levelSamplesPerPeak);
+      end = Math.min(peakCount, Math.max(first + 1, end));
+
+      int min = peakPyramid.getMin(level, first);
+      int max = peakPyramid.getMax(level, first);
+      for (int i = first + 1; i < end; i++) {
+        min = Math.min(min, peakPyramid.getMin(level, i));
+        max = Math.max(max, peakPyramid.getMax(level, i));
+      }
+
+      float[] lines;
+      int index;
+      if (columnStartSample < positionSample) {
+        lines = playedLines;
+        index = playedCount++ * 4;
+      } else {
+        lines = remainingLines;
+        index = remainingCount++ * 4;
+      }
+      lines[index] = x + 0.5f;
+      lines[index + 1] = centerY - max * scale;
+      lines[index + 2] = x + 0.5f;
+      lines[index + 3] = centerY - min * scale + 1; // at least a single pixel for silence
+    }
+    canvas.drawLines(playedLines, 0, playedCount * 4, playedPaint);
+    canvas.drawLines(remainingLines, 0, remainingCount * 4, remainingPaint);
+
+    float positionX = (float) ((positionSample - viewStartSample) / samplesPerPixel);
+    if (positionX >= 0 && positionX < getWidth()) {
+      canvas.drawLine(positionX, 0, positionX, getHeight(), positionPaint);
+    }
+  }
+
+  private double getMaxSamplesPerPixel() {
+    if (peakPyramid == null || getWidth() == 0) {
+      return PeakPyramid.BASE_SAMPLES_PER_PEAK;
+    }
+    return Math.max(
+        PeakPyramid.BASE_SAMPLES_PER_PEAK, (double) peakPyramid.getSampleCount() / getWidth());
+  }
+
+  private double clampSamplesPerPixel(double value) {
+    return Math.max(PeakPyramid.BASE_SAMPLES_PER_PEAK, Math.min(getMaxSamplesPerPixel(), value));
+  }
+
+  private void clampViewStart() {
+    if (peakPyramid == null) {
+      return;
+    }
+    double maxViewStartSample = peakPyramid.getSampleCount() - getWidth() * samplesPerPixel;
+    viewStartSample = Math.max(0, Math.min(maxViewStartSample, viewStartSample));
+  }
+
+  /** Listener used to seek the playback to the position tapped on the waveform */
+  public interface OnSeekListener {
+    /** @param positionMillis The tapped position */
+    void onSeek(int positionMillis);
+  }
+
+  private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+    @Override
+    public boolean onScale(ScaleGestureDetector detector) {
+      // Keep the sample under the focus point in place while zooming
+      float focusX = detector.getFocusX();
+      double focusSample = viewStartSample + focusX * samplesPerPixel;
+      samplesPerPixel = clampSamplesPerPixel(samplesPerPixel / detector.getScaleFactor());
+      viewStartSample = focusSample - focusX * samplesPerPixel;
+      clampViewStart();
+      invalidate();
+      return true;
+    }
+  }
+
+  private class PanListener extends GestureDetector.SimpleOnGestureListener {
+    @Override
+    public boolean onDown(MotionEvent e) {
+      return true;
+    }
+
+    @Override
+    public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+      viewStartSample += distanceX * samplesPerPixel;
+      clampViewStart();
+      invalidate();
+      return true;
+    }
+
+    @Override
+    public boolean onSingleTapUp(@NonNull MotionEvent e) {
+      isTapped = true;
+      if (onSeekListener != null) {
+        double sample = viewStartSample + e.getX() * samplesPerPixel;
+        onSeekListener.onSeek((int) (sample * 1000 / peakPyramid.getSampleRate()));
+      }
+      return true;
+    }
+  }
+}
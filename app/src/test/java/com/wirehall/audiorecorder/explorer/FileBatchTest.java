@@ -0,0 +1,119 @@
+package com.wirehall.audiorecorder.explorer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileBatchTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void test_delete() throws IOException {
+    File first = createFile("a.m4a");
+    File second = createFile("b.m4a");
+
+    FileBatch.Result result =
+        new FileBatch(FileBatch.Operation.DELETE, getPaths(first, second), null)
+            .run(() -> false, (processedCount, totalCount) -> {});
+
+    assertFalse(first.exists());
+    assertFalse(second.exists());
+    assertEquals(2, result.getTargets().size());
+    assertNull(result.getTargets().get(first.getPath()));
+    assertTrue(result.getFailedPaths().isEmpty());
+  }
+
+  @Test
+  public void test_move_keeps_existing_files() throws IOException {
+    File source = createFile("a.m4a");
+    long modified = source.lastModified();
+    File targetDirectory = temporaryFolder.newFolder("Project");
+    File existing = new File(targetDirectory, "a.m4a");
+    assertTrue(existing.createNewFile());
+
+    FileBatch.Result result =
+        new FileBatch(FileBatch.Operation.MOVE, getPaths(source), targetDirectory)
+            .run(() -> false, (processedCount, totalCount) -> {});
+
+    File target = new File(targetDirectory, "a (1).m4a");
+    assertFalse(source.exists());
+    assertTrue(target.exists());
+    assertEquals(modified, target.lastModified());
+    assertEquals(target.getPath(), result.getTargets().get(source.getPath()));
+    assertEquals(0, existing.length());
+  }
+
+  @Test
+  public void test_move_to_own_directory() throws IOException {
+    File source = createFile("a.m4a");
+
+    FileBatch.Result result =
+        new FileBatch(FileBatch.Operation.MOVE, getPaths(source), temporaryFolder.getRoot())
+            .run(() -> false, (processedCount, totalCount) -> {});
+
+    assertTrue(source.exists());
+    assertFalse(new File(temporaryFolder.getRoot(), "a (1).m4a").exists());
+    assertEquals(source.getPath(), result.getTargets().get(source.getPath()));
+  }
+
+  @Test
+  public void test_copy_keeps_modification_time() throws IOException {
+    File source = createFile("a.m4a");
+    assertTrue(source.setLastModified(1_600_000_000_000L));
+    File targetDirectory = new File(temporaryFolder.getRoot(), "Export/Recordings");
+
+    new FileBatch(FileBatch.Operation.COPY, getPaths(source), targetDirectory)
+        .run(() -> false, (processedCount, totalCount) -> {});
+
+    File target = new File(targetDirectory, "a.m4a");
+    assertTrue(source.exists());
+    assertEquals(source.length(), target.length());
+    assertEquals(source.lastModified(), target.lastModified());
+  }
+
+  @Test
+  public void test_cancelled_batch() throws IOException {
+    File first = createFile("a.m4a");
+    File second = createFile("b.m4a");
+    List<Integer> progress = new ArrayList<>();
+
+    FileBatch.Result result =
+        new FileBatch(FileBatch.Operation.DELETE, getPaths(first, second), null)
+            .run(
+                () -> !progress.isEmpty(),
+                (processedCount, totalCount) -> progress.add(processedCount));
+
+    assertTrue(result.isCancelled());
+    assertEquals(Collections.singletonList(1), progress);
+    assertEquals(
+        Collections.singletonList(first.getPath()), new ArrayList<>(result.getTargets().keySet()));
+    assertTrue(second.exists());
+  }
+
+  private File createFile(String name) throws IOException {
+    File file = temporaryFolder.newFile(name);
+    Files.write(file.toPath(), name.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static List<String> getPaths(File... files) {
+    List<String> paths = new ArrayList<>();
+    for (File file : files) {
+      paths.add(file.getPath());
+    }
+    return paths;
+  }
+}
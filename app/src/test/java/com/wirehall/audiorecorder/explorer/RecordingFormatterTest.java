@@ -0,0 +1,45 @@
+package com.wirehall.audiorecorder.explorer;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class RecordingFormatterTest {
+  // The size and the date strings do not require a context
+  private final RecordingFormatter formatter = new RecordingFormatter(null);
+
+  @Test
+  public void test_formats_like_file_utils() {
+    assertEquals(FileUtils.humanReadableByteCount(1728, true), formatter.formatSize(1728));
+    long modified = 1577872800000L;
+    assertEquals(FileUtils.humanReadableDate(modified), formatter.formatModifiedDate(modified));
+  }
+
+  @Test
+  public void test_reuses_cached_strings() {
+    String size = formatter.formatSize(110592);
+    assertSame(size, formatter.formatSize(110592));
+
+    // Timestamps within the same minute share the formatted date
+    long modified = 1577872800000L;
+    String date = formatter.formatModifiedDate(modified);
+    assertSame(date, formatter.formatModifiedDate(modified + TimeUnit.SECONDS.toMillis(59)));
+  }
+
+  @Test
+  public void test_evicts_least_recently_used() {
+    String first = formatter.formatSize(0);
+    String second = formatter.formatSize(1);
+    for (int i = 2; i <= RecordingFormatter.CACHE_SIZE; i++) {
+      formatter.formatSize(i);
+      // Keeps the second size the most recently used one
+      formatter.formatSize(1);
+    }
+    assertSame(second, formatter.formatSize(1));
+    assertNotSame(first, formatter.formatSize(0));
+  }
+}
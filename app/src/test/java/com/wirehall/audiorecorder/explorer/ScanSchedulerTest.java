@@ -0,0 +1,96 @@
+package com.wirehall.audiorecorder.explorer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanSchedulerTest {
+  private static final RecordingLibrary FIRST_LIBRARY =
+      new RecordingLibrary(Collections.singletonList("/storage/Recordings"), false);
+  private static final RecordingLibrary SECOND_LIBRARY =
+      new RecordingLibrary(Collections.singletonList("/storage/Recordings"), true);
+
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final List<RecordingLibrary> finishedLibraries = new ArrayList<>();
+  private ScanScheduler scanScheduler;
+
+  @Before
+  public void setUp() {
+    scanScheduler = new ScanScheduler(tasks::add, Runnable::run);
+  }
+
+  @Test
+  public void test_requests_coalesced() {
+    List<RecordingLibrary> scannedLibraries = new ArrayList<>();
+    scanScheduler.requestScan(
+        FIRST_LIBRARY, isCancelled -> scannedLibraries.add(FIRST_LIBRARY), finishedLibraries::add);
+    scanScheduler.requestScan(
+        SECOND_LIBRARY,
+        isCancelled -> scannedLibraries.add(SECOND_LIBRARY),
+        finishedLibraries::add);
+    runTasks();
+
+    // A single scan of the newest request
+    assertEquals(Collections.singletonList(SECOND_LIBRARY), scannedLibraries);
+    assertEquals(Collections.singletonList(SECOND_LIBRARY), finishedLibraries);
+    assertTrue(dump().contains("requests=2 coalesced=1 cancelled=0 failed=0 completed=1"));
+  }
+
+  @Test
+  public void test_running_scan_cancelled() {
+    scanScheduler.requestScan(
+        FIRST_LIBRARY,
+        isCancelled -> {
+          // Requested while the first scan is running
+          scanScheduler.requestScan(SECOND_LIBRARY, newIsCancelled -> true, finishedLibraries::add);
+          return !isCancelled.getAsBoolean();
+        },
+        finishedLibraries::add);
+    runTasks();
+
+    // Only the newest request is notified
+    assertEquals(Collections.singletonList(SECOND_LIBRARY), finishedLibraries);
+    assertTrue(dump().contains("requests=2 coalesced=0 cancelled=1 failed=0 completed=1"));
+  }
+
+  @Test
+  public void test_failed_scan() {
+    scanScheduler.requestScan(
+        FIRST_LIBRARY,
+        isCancelled -> {
+          throw new IllegalStateException("Storage unmounted");
+        },
+        finishedLibraries::add);
+    runTasks();
+    scanScheduler.requestScan(SECOND_LIBRARY, isCancelled -> true, finishedLibraries::add);
+    runTasks();
+
+    // Not counted as cancelled, and still notified
+    assertEquals(Arrays.asList(FIRST_LIBRARY, SECOND_LIBRARY), finishedLibraries);
+    assertTrue(dump().contains("requests=2 coalesced=0 cancelled=0 failed=1 completed=1"));
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private String dump() {
+    StringWriter writer = new StringWriter();
+    scanScheduler.dump("", new PrintWriter(writer));
+    return writer.toString();
+  }
+}
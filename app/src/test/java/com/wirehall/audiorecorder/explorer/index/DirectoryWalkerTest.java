@@ -0,0 +1,138 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryWalkerTest {
+  private static final FilenameFilter M4A_FILTER = (dir, name) -> name.endsWith(".m4a");
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void test_walks_sub_folders() throws IOException {
+    File root = temporaryFolder.newFolder("Recordings");
+    createFile(root, "a.m4a");
+    createFile(root, "notes.txt");
+    File project = createFolder(root, "Project");
+    createFile(project, "b.m4a");
+    createFile(project, "c.m4a");
+    File empty = createFolder(project, "Empty");
+
+    SortedMap<String, List<File>> folders =
+        new DirectoryWalker(2)
+            .walk(
+                Collections.singletonList(root.getPath()),
+                M4A_FILTER,
+                () -> false,
+                new HashSet<>());
+
+    assertEquals(
+        Arrays.asList(root.getPath(), project.getPath(), empty.getPath()),
+        new ArrayList<>(folders.keySet()));
+    assertEquals(Collections.singletonList(new File(root, "a.m4a")), folders.get(root.getPath()));
+    assertEquals(2, folders.get(project.getPath()).size());
+    assertTrue(folders.get(empty.getPath()).isEmpty());
+  }
+
+  @Test
+  public void test_skips_hidden_folders() throws IOException {
+    File root = temporaryFolder.newFolder("Recordings");
+    createFile(createFolder(root, ".trash"), "deleted.m4a");
+
+    SortedMap<String, List<File>> folders =
+        new DirectoryWalker(2)
+            .walk(
+                Collections.singletonList(root.getPath()),
+                M4A_FILTER,
+                () -> false,
+                new HashSet<>());
+
+    assertEquals(Collections.singletonList(root.getPath()), new ArrayList<>(folders.keySet()));
+  }
+
+  @Test
+  public void test_walks_several_roots() throws IOException {
+    File first = temporaryFolder.newFolder("Internal");
+    File second = temporaryFolder.newFolder("SdCard");
+    createFile(first, "a.m4a");
+    createFile(createFolder(second, "Project"), "b.m4a");
+
+    SortedMap<String, List<File>> folders =
+        new DirectoryWalker(2)
+            .walk(
+                Arrays.asList(first.getPath(), second.getPath()),
+                M4A_FILTER,
+                () -> false,
+                new HashSet<>());
+
+    assertEquals(3, folders.size());
+    assertEquals(1, folders.get(first.getPath()).size());
+    assertEquals(1, folders.get(new File(second, "Project").getPath()).size());
+  }
+
+  @Test
+  public void test_cancelled_walk() throws IOException {
+    File root = temporaryFolder.newFolder("Recordings");
+    createFile(createFolder(root, "Project"), "a.m4a");
+
+    SortedMap<String, List<File>> folders =
+        new DirectoryWalker(2)
+            .walk(
+                Collections.singletonList(root.getPath()),
+                M4A_FILTER,
+                () -> true,
+                new HashSet<>());
+
+    assertFalse(folders.containsKey(root.getPath()));
+  }
+
+  @Test
+  public void test_reports_folders_too_deep() throws IOException {
+    File root = temporaryFolder.newFolder("Recordings");
+    File folder = root;
+    for (int depth = 0; depth < DirectoryWalker.MAX_DEPTH; depth++) {
+      folder = createFolder(folder, "Sub");
+    }
+    File tooDeep = createFolder(folder, "Sub");
+    createFile(tooDeep, "a.m4a");
+    Set<String> skippedFolders = new HashSet<>();
+
+    SortedMap<String, List<File>> folders =
+        new DirectoryWalker(2)
+            .walk(
+                Collections.singletonList(root.getPath()),
+                M4A_FILTER,
+                () -> false,
+                skippedFolders);
+
+    assertTrue(folders.containsKey(folder.getPath()));
+    assertFalse(folders.containsKey(tooDeep.getPath()));
+    assertEquals(Collections.singleton(tooDeep.getPath()), skippedFolders);
+  }
+
+  private static File createFolder(File parent, String name) {
+    File folder = new File(parent, name);
+    assertTrue(folder.mkdir());
+    return folder;
+  }
+
+  private static void createFile(File parent, String name) throws IOException {
+    assertTrue(new File(parent, name).createNewFile());
+  }
+}
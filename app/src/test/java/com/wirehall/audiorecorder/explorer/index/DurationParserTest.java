@@ -0,0 +1,161 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class DurationParserTest {
+  private static final int SAMPLE_RATE_INDEX_44100 = 4;
+  private static final int SAMPLE_RATE_INDEX_16000 = 8;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void test_adts_duration() throws IOException {
+    File file = writeFile(createAdts(431, SAMPLE_RATE_INDEX_44100, 200));
+    assertEquals(431 * 1024 * 1000L / 44100, DurationParser.parseDuration(file));
+  }
+
+  @Test
+  public void test_adts_incomplete_last_frame_is_ignored() throws IOException {
+    byte[] adts = createAdts(100, SAMPLE_RATE_INDEX_16000, 100);
+    byte[] truncated = new byte[adts.length - 50];
+    System.arraycopy(adts, 0, truncated, 0, truncated.length);
+    assertEquals(99 * 1024 * 1000L / 16000, DurationParser.parseDuration(writeFile(truncated)));
+  }
+
+  @Test
+  public void test_adts_with_id3_tags() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // ID3v2 header with a syncsafe size of 200 bytes, i.e. 0x01 0x48
+    out.write(new byte[] {'I', 'D', '3', 4, 0, 0, 0, 0, 0x01, 0x48});
+    out.write(new byte[200]);
+    out.write(createAdts(50, SAMPLE_RATE_INDEX_44100, 120));
+    byte[] id3v1 = new byte[128];
+    id3v1[0] = 'T';
+    id3v1[1] = 'A';
+    id3v1[2] = 'G';
+    out.write(id3v1);
+    assertEquals(
+        50 * 1024 * 1000L / 44100, DurationParser.parseDuration(writeFile(out.toByteArray())));
+  }
+
+  @Test
+  public void test_unknown_format() throws IOException {
+    byte[] content = "Not an audio file, just some text".getBytes(StandardCharsets.US_ASCII);
+    assertEquals(
+        RecordingIndex.Entry.DURATION_UNKNOWN, DurationParser.parseDuration(writeFile(content)));
+
+    byte[] corrupt = createAdts(10, SAMPLE_RATE_INDEX_44100, 100);
+    corrupt[500] = 0;
+    assertEquals(
+        RecordingIndex.Entry.DURATION_UNKNOWN, DurationParser.parseDuration(writeFile(corrupt)));
+  }
+
+  @Test
+  public void test_mp4_movie_header_duration() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(box("ftyp", "M4A isom".getBytes(StandardCharsets.US_ASCII)));
+    out.write(box("mdat", new byte[4096]));
+    out.write(box("moov", box("mvhd", fullHeader(0, 1000, 12345))));
+    assertEquals(12345, DurationParser.parseDuration(writeFile(out.toByteArray())));
+  }
+
+  @Test
+  public void test_mp4_media_header_duration() throws IOException {
+    ByteArrayOutputStream moov = new ByteArrayOutputStream();
+    moov.write(box("mvhd", fullHeader(0, 1000, 0)));
+    moov.write(box("trak", box("mdia", box("mdhd", fullHeader(1, 44100, 44100L * 3)))));
+    moov.write(box("trak", box("mdia", box("mdhd", fullHeader(0, 16000, 16000)))));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(box("ftyp", "M4A isom".getBytes(StandardCharsets.US_ASCII)));
+    out.write(box("moov", moov.toByteArray()));
+    out.write(largeBox("mdat", new byte[1024]));
+    assertEquals(3000, DurationParser.parseDuration(writeFile(out.toByteArray())));
+  }
+
+  @Test
+  public void test_mp4_without_moov() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(box("ftyp", "M4A isom".getBytes(StandardCharsets.US_ASCII)));
+    out.write(box("mdat", new byte[512]));
+    assertEquals(
+        RecordingIndex.Entry.DURATION_UNKNOWN,
+        DurationParser.parseDuration(writeFile(out.toByteArray())));
+  }
+
+  private static byte[] createAdts(int frameCount, int sampleRateIndex, int frameLength) {
+    byte[] content = new byte[frameCount * frameLength];
+    for (int i = 0; i < frameCount; i++) {
+      int offset = i * frameLength;
+      content[offset] = (byte) 0xFF;
+      content[offset + 1] = (byte) 0xF1; // MPEG-4, no CRC
+      content[offset + 2] = (byte) (1 << 6 | sampleRateIndex << 2); // AAC LC
+      content[offset + 3] = (byte) (1 << 6 | frameLength >> 11); // mono
+      content[offset + 4] = (byte) (frameLength >> 3);
+      content[offset + 5] = (byte) ((frameLength & 0x07) << 5 | 0x1F);
+      content[offset + 6] = (byte) 0xFC; // a single raw data block
+    }
+    return content;
+  }
+
+  private static byte[] fullHeader(int version, int timescale, long duration) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(version << 24);
+    if (version == 1) {
+      out.writeLong(0);
+      out.writeLong(0);
+      out.writeInt(timescale);
+      out.writeLong(duration);
+    } else {
+      out.writeInt(0);
+      out.writeInt(0);
+      out.writeInt(timescale);
+      out.writeInt((int) duration);
+    }
+    out.write(new byte[20]);
+    return bytes.toByteArray();
+  }
+
+  private static byte[] box(String type, byte[] content) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(8 + content.length);
+    out.writeBytes(type);
+    out.write(content);
+    return bytes.toByteArray();
+  }
+
+  private static byte[] largeBox(String type, byte[] content) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(1);
+    out.writeBytes(type);
+    out.writeLong(16 + content.length);
+    out.write(content);
+    return bytes.toByteArray();
+  }
+
+  private File writeFile(byte[] content) throws IOException {
+    File file = temporaryFolder.newFile();
+    writeFile(file, content);
+    return file;
+  }
+
+  private static void writeFile(File file, byte[] content) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(content);
+    }
+  }
+}
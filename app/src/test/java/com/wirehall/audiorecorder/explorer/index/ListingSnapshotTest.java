@@ -0,0 +1,76 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ListingSnapshotTest {
+  private static final String DIRECTORY = "/storage/emulated/0/Audio/Recordings";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void test_round_trip() throws IOException {
+    List<RecordingIndex.Entry> entries = new ArrayList<>();
+    entries.add(entry("REC_20200101_120000.m4a", 110592, 1577880000000L, 6912));
+    entries.add(entry("Интервью.m4a", 1728, 1577872800000L, 108));
+    entries.add(entry("a.m4a", 0, 0, 0));
+    File file = temporaryFolder.newFile();
+    ListingSnapshot.write(file, DIRECTORY, entries);
+
+    ListingSnapshot snapshot = ListingSnapshot.open(file);
+    assertEquals(DIRECTORY, snapshot.getDirectory());
+    assertEquals(entries.size(), snapshot.getCount());
+    for (int i = 0; i < entries.size(); i++) {
+      assertEntryEquals(entries.get(i), snapshot.getEntry(i));
+    }
+
+    List<RecordingIndex.Entry> page = snapshot.getEntries(1, 10);
+    assertEquals(2, page.size());
+    assertEntryEquals(entries.get(2), page.get(1));
+  }
+
+  @Test
+  public void test_empty_listing() throws IOException {
+    File file = temporaryFolder.newFile();
+    ListingSnapshot.write(file, DIRECTORY, Collections.emptyList());
+
+    ListingSnapshot snapshot = ListingSnapshot.open(file);
+    assertEquals(DIRECTORY, snapshot.getDirectory());
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getEntries(0, 50).size());
+  }
+
+  @Test(expected = IOException.class)
+  public void test_truncated_snapshot_is_rejected() throws IOException {
+    File file = temporaryFolder.newFile();
+    ListingSnapshot.write(
+        file, DIRECTORY, Collections.singletonList(entry("REC.m4a", 1728, 1577872800000L, 108)));
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(randomAccessFile.length() - 1);
+    }
+    ListingSnapshot.open(file);
+  }
+
+  private static RecordingIndex.Entry entry(String name, long size, long modified, long duration) {
+    return new RecordingIndex.Entry(
+        new File(DIRECTORY, name).getPath(), DIRECTORY, size, modified, duration);
+  }
+
+  private static void assertEntryEquals(RecordingIndex.Entry expected, RecordingIndex.Entry actual) {
+    assertEquals(expected.getPath(), actual.getPath());
+    assertEquals(expected.getDirectory(), actual.getDirectory());
+    assertEquals(expected.getSize(), actual.getSize());
+    assertEquals(expected.getModified(), actual.getModified());
+    assertEquals(expected.getDuration(), actual.getDuration());
+  }
+}
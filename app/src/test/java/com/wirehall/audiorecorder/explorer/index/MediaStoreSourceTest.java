@@ -0,0 +1,62 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MediaStoreSourceTest {
+  private static final String DIRECTORY = "/storage/emulated/0/Audio/Recordings";
+
+  @Test
+  public void test_create_entry() {
+    RecordingIndex.Entry entry =
+        MediaStoreSource.createEntry(DIRECTORY + "/Lecture.m4a", 2048, 1600000000, 61000);
+
+    assertEquals(DIRECTORY + "/Lecture.m4a", entry.getPath());
+    assertEquals(DIRECTORY, entry.getDirectory());
+    assertEquals(2048, entry.getSize());
+    assertEquals(1600000000000L, entry.getModified());
+    assertEquals(61000, entry.getDuration());
+  }
+
+  @Test
+  public void test_create_entry_without_duration() {
+    RecordingIndex.Entry entry =
+        MediaStoreSource.createEntry(DIRECTORY + "/Lecture.m4a", 2048, 1600000000, 0);
+
+    assertEquals(RecordingIndex.Entry.DURATION_UNKNOWN, entry.getDuration());
+    assertNull(MediaStoreSource.createEntry(null, 2048, 1600000000, 61000));
+  }
+
+  @Test
+  public void test_unchanged_to_the_second() {
+    RecordingIndex.Entry storeEntry =
+        MediaStoreSource.createEntry(DIRECTORY + "/Lecture.m4a", 2048, 1600000000, 61000);
+
+    // Indexed from the file itself, with the milliseconds
+    assertTrue(matches(createEntry(2048, 1600000000123L), storeEntry));
+    assertTrue(matches(storeEntry, createEntry(2048, 1600000000123L)));
+    assertFalse(matches(createEntry(2048, 1600000001000L), storeEntry));
+    assertFalse(matches(createEntry(4096, 1600000000000L), storeEntry));
+  }
+
+  @Test
+  public void test_bucket_id() {
+    // The hash of the lower case path of the folder, as the store computes it
+    assertEquals(
+        "/storage/emulated/0/audio/recordings".hashCode(), MediaStoreSource.getBucketId(DIRECTORY));
+    assertEquals(
+        MediaStoreSource.getBucketId(DIRECTORY), MediaStoreSource.getBucketId(DIRECTORY + "/"));
+  }
+
+  private static boolean matches(RecordingIndex.Entry entry, RecordingIndex.Entry other) {
+    return entry.matches(other.getSize(), other.getModified());
+  }
+
+  private static RecordingIndex.Entry createEntry(long size, long modified) {
+    return new RecordingIndex.Entry(DIRECTORY + "/Lecture.m4a", DIRECTORY, size, modified, 61000);
+  }
+}
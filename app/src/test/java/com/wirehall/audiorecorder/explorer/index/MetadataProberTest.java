@@ -0,0 +1,60 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MetadataProberTest {
+  @Test
+  public void test_results_keep_file_order() throws InterruptedException {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      files.add(new File(Integer.toString(i)));
+    }
+    MetadataProber metadataProber = new MetadataProber(8);
+    long[] durations = metadataProber.probeAll(files, file -> Long.parseLong(file.getName()) * 10);
+    metadataProber.shutdown();
+
+    for (int i = 0; i < files.size(); i++) {
+      assertEquals(i * 10L, durations[i]);
+    }
+  }
+
+  @Test
+  public void test_failure_is_isolated_to_its_file() throws InterruptedException {
+    List<File> files = Arrays.asList(new File("1"), new File("broken"), new File("3"));
+    long[] durations =
+        new MetadataProber(2).probeAll(files, file -> Long.parseLong(file.getName()));
+
+    assertArrayEquals(new long[] {1, RecordingIndex.Entry.DURATION_UNKNOWN, 3}, durations);
+  }
+
+  @Test
+  public void test_threads_reused_across_calls() throws InterruptedException {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      files.add(new File(Integer.toString(i)));
+    }
+    AtomicInteger createdThreads = new AtomicInteger();
+    MetadataProber metadataProber =
+        new MetadataProber(
+            4,
+            runnable -> {
+              createdThreads.incrementAndGet();
+              return new Thread(runnable);
+            });
+    for (int batch = 0; batch < 10; batch++) {
+      metadataProber.probeAll(files, file -> Long.parseLong(file.getName()));
+    }
+    metadataProber.shutdown();
+
+    assertEquals(4, createdThreads.get());
+  }
+}
@@ -0,0 +1,176 @@
+package com.wirehall.audiorecorder.explorer.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+  private static final String DIRECTORY = "/storage/emulated/0/Audio/Recordings";
+
+  @Test
+  public void test_search_by_name() {
+    SearchIndex searchIndex = new SearchIndex(null);
+    searchIndex.put(createEntry(DIRECTORY, "Interview Alice.m4a", 1000));
+    searchIndex.put(createEntry(DIRECTORY, "Lecture.m4a", 2000));
+
+    assertEquals(
+        Collections.singletonList(DIRECTORY + "/Interview Alice.m4a"),
+        getPaths(search(searchIndex, "alice")));
+    assertEquals(
+        Collections.singletonList(DIRECTORY + "/Interview Alice.m4a"),
+        getPaths(search(searchIndex, "ALICE inter")));
+    assertTrue(search(searchIndex, "bob").isEmpty());
+    // The extension is not searchable
+    assertTrue(search(searchIndex, "m4a").isEmpty());
+  }
+
+  @Test
+  public void test_short_query() {
+    SearchIndex searchIndex = new SearchIndex(null);
+    searchIndex.put(createEntry(DIRECTORY, "ab.m4a", 1000));
+    searchIndex.put(createEntry(DIRECTORY, "cd.m4a", 2000));
+
+    assertEquals(
+        Collections.singletonList(DIRECTORY + "/ab.m4a"),
+        getPaths(search(searchIndex, "b")));
+    assertTrue(search(searchIndex, "  ").isEmpty());
+  }
+
+  @Test
+  public void test_search_by_date_and_folder() {
+    Calendar calendar = Calendar.getInstance();
+    calendar.set(2021, Calendar.MARCH, 14, 12, 0);
+    SearchIndex searchIndex = new SearchIndex(null);
+    searchIndex.put(createEntry(DIRECTORY + "/Band", "take.m4a", calendar.getTimeInMillis()));
+    searchIndex.put(createEntry(DIRECTORY, "memo.m4a", 0));
+
+    assertEquals(
+        Collections.singletonList(DIRECTORY + "/Band/take.m4a"),
+        getPaths(search(searchIndex, "14-03-2021")));
+    assertEquals(
+        Collections.singletonList(DIRECTORY + "/Band/take.m4a"),
+        getPaths(search(searchIndex, "band")));
+    // The fields are not searchable across each other
+    assertTrue(search(searchIndex, "memo01").isEmpty());
+    assertTrue(
+        searchIndex
+            .search(
+                "band",
+                entry -> DIRECTORY.equals(entry.getDirectory()),
+                RecordingIndex.SortOrder.DATE.getComparator())
+            .isEmpty());
+  }
+
+  @Test
+  public void test_incremental_updates() {
+    SearchIndex searchIndex = new SearchIndex(null);
+    RecordingIndex.Entry entry = createEntry(DIRECTORY, "draft.m4a", 1000);
+    searchIndex.onEntriesChanged(Collections.singletonList(entry), Collections.emptyList());
+    assertEquals(1, search(searchIndex, "draft").size());
+
+    // Renamed
+    RecordingIndex.Entry renamed = createEntry(DIRECTORY, "final.m4a", 1000);
+    searchIndex.onEntriesChanged(
+        Collections.singletonList(renamed), Collections.singletonList(entry.getPath()));
+    assertTrue(search(searchIndex, "draft").isEmpty());
+    assertEquals(1, search(searchIndex, "final").size());
+
+    // Could not be probed, not listed
+    searchIndex.put(
+        new RecordingIndex.Entry(
+            renamed.getPath(), DIRECTORY, 10, 1000, RecordingIndex.Entry.DURATION_UNKNOWN));
+    assertTrue(search(searchIndex, "final").isEmpty());
+
+    // Deleted, and the removed documents are compacted
+    for (int i = 0; i < 10; i++) {
+      searchIndex.put(createEntry(DIRECTORY, "note " + i + ".m4a", i));
+    }
+    for (int i = 0; i < 10; i++) {
+      searchIndex.remove(DIRECTORY + "/note " + i + ".m4a");
+    }
+    assertTrue(search(searchIndex, "note").isEmpty());
+  }
+
+  @Test
+  public void test_results_sorted_like_the_list() {
+    SearchIndex searchIndex = new SearchIndex(null);
+    searchIndex.put(createEntry(DIRECTORY, "song b.m4a", 1000));
+    searchIndex.put(createEntry(DIRECTORY, "song c.m4a", 3000));
+    searchIndex.put(createEntry(DIRECTORY, "song a.m4a", 1000));
+
+    assertEquals(
+        Arrays.asList(
+            DIRECTORY + "/song c.m4a", DIRECTORY + "/song a.m4a", DIRECTORY + "/song b.m4a"),
+        getPaths(search(searchIndex, "song")));
+  }
+
+  @Test
+  public void test_results_in_selected_order() {
+    SearchIndex searchIndex = new SearchIndex(null);
+    searchIndex.put(new RecordingIndex.Entry(DIRECTORY + "/Song b.m4a", DIRECTORY, 30, 1000, 10));
+    searchIndex.put(new RecordingIndex.Entry(DIRECTORY + "/song a.m4a", DIRECTORY, 10, 3000, 30));
+    searchIndex.put(new RecordingIndex.Entry(DIRECTORY + "/song c.m4a", DIRECTORY, 20, 2000, 20));
+
+    assertEquals(
+        Arrays.asList(
+            DIRECTORY + "/song a.m4a", DIRECTORY + "/Song b.m4a", DIRECTORY + "/song c.m4a"),
+        getPaths(search(searchIndex, "song", RecordingIndex.SortOrder.NAME)));
+    assertEquals(
+        Arrays.asList(
+            DIRECTORY + "/Song b.m4a", DIRECTORY + "/song c.m4a", DIRECTORY + "/song a.m4a"),
+        getPaths(search(searchIndex, "song", RecordingIndex.SortOrder.SIZE)));
+    assertEquals(
+        Collections.singletonList(DIRECTORY + "/song c.m4a"),
+        getPaths(
+            searchIndex.search(
+                "son",
+                RangeFilter.NONE.withDuration(15, 25)::accepts,
+                RecordingIndex.SortOrder.DURATION.getComparator())));
+  }
+
+  @Test
+  public void test_names_sorted_like_the_index() {
+    SearchIndex searchIndex = new SearchIndex(null);
+    searchIndex.put(createEntry(DIRECTORY, "takeA.m4a", 1000));
+    searchIndex.put(createEntry(DIRECTORY, "take_b.m4a", 1000));
+    searchIndex.put(createEntry(DIRECTORY, "take \u00e9t\u00e9 a.m4a", 1000));
+    searchIndex.put(createEntry(DIRECTORY, "take \u00c9t\u00e9 b.m4a", 1000));
+
+    // Only the ASCII letters are folded, to lower case like the NOCASE collation of the index
+    assertEquals(
+        Arrays.asList(
+            DIRECTORY + "/take \u00c9t\u00e9 b.m4a",
+            DIRECTORY + "/take \u00e9t\u00e9 a.m4a",
+            DIRECTORY + "/take_b.m4a",
+            DIRECTORY + "/takeA.m4a"),
+        getPaths(search(searchIndex, "take", RecordingIndex.SortOrder.NAME)));
+  }
+
+  private static List<RecordingIndex.Entry> search(SearchIndex searchIndex, String query) {
+    return search(searchIndex, query, RecordingIndex.SortOrder.DATE);
+  }
+
+  private static List<RecordingIndex.Entry> search(
+      SearchIndex searchIndex, String query, RecordingIndex.SortOrder sortOrder) {
+    return searchIndex.search(query, entry -> true, sortOrder.getComparator());
+  }
+
+  private static RecordingIndex.Entry createEntry(String directory, String name, long modified) {
+    return new RecordingIndex.Entry(directory + "/" + name, directory, 10, modified, 1000);
+  }
+
+  private static List<String> getPaths(List<RecordingIndex.Entry> entries) {
+    List<String> paths = new ArrayList<>(entries.size());
+    for (RecordingIndex.Entry entry : entries) {
+      paths.add(entry.getPath());
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,140 @@
+package com.wirehall.audiorecorder.visualizer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveCaptureControllerTest {
+  private static final int[] CAPTURE_SIZE_RANGE = {128, 1024};
+  private static final int MAX_CAPTURE_RATE = 20000;
+  private static final long BUDGET = TimeUnit.MILLISECONDS.toNanos(4);
+
+  private AdaptiveCaptureController controller;
+  private int appliedSize;
+  private int appliedRate;
+  private long now;
+
+  @Before
+  public void setUp() {
+    controller =
+        new AdaptiveCaptureController(
+            CAPTURE_SIZE_RANGE,
+            MAX_CAPTURE_RATE,
+            BUDGET,
+            (captureSize, captureRate) -> {
+              appliedSize = captureSize;
+              appliedRate = captureRate;
+            });
+    now = 0;
+  }
+
+  @Test
+  public void test_initial_config_is_best_quality() {
+    assertEquals(1024, controller.getCaptureSize());
+    assertEquals(MAX_CAPTURE_RATE / 2, controller.getCaptureRate());
+    assertEquals(1024, appliedSize);
+    assertEquals(MAX_CAPTURE_RATE / 2, appliedRate);
+  }
+
+  @Test
+  public void test_steps_down_size_then_rate_when_over_budget() {
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_DOWN, BUDGET * 2, 1);
+    assertEquals(512, appliedSize);
+    assertEquals(MAX_CAPTURE_RATE / 2, appliedRate);
+
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_DOWN * 2, BUDGET * 2, 1);
+    assertEquals(128, appliedSize);
+    assertEquals(MAX_CAPTURE_RATE / 2, appliedRate);
+
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_DOWN, BUDGET * 2, 1);
+    assertEquals(128, appliedSize);
+    assertEquals(MAX_CAPTURE_RATE / 4, appliedRate);
+  }
+
+  @Test
+  public void test_steps_down_when_frames_are_not_delivered_at_requested_rate() {
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_DOWN, BUDGET / 4, 2);
+    assertEquals(512, appliedSize);
+  }
+
+  @Test
+  public void test_steps_up_slowly_with_headroom() {
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_DOWN, BUDGET * 2, 1);
+    assertEquals(512, appliedSize);
+
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_UP - 1, BUDGET / 4, 1);
+    assertEquals(512, appliedSize);
+
+    runWindows(1, BUDGET / 4, 1);
+    assertEquals(1024, appliedSize);
+  }
+
+  @Test
+  public void test_respects_view_min_capture_size() {
+    controller.onTargetViewChanged(1024);
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_DOWN, BUDGET * 2, 1);
+    assertEquals(1024, appliedSize);
+    assertEquals(MAX_CAPTURE_RATE / 4, appliedRate);
+
+    // The closest configuration which is not more expensive is kept for the new view
+    controller.onTargetViewChanged(0);
+    assertEquals(128, appliedSize);
+    assertEquals(MAX_CAPTURE_RATE / 4, appliedRate);
+  }
+
+  @Test
+  public void test_power_save_mode_limits_quality() {
+    controller.setPowerSaveMode(true);
+    assertEquals(128, appliedSize);
+    assertEquals(MAX_CAPTURE_RATE / 4, appliedRate);
+
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_UP * 2, BUDGET / 4, 1);
+    assertEquals(MAX_CAPTURE_RATE / 4, appliedRate);
+
+    controller.setPowerSaveMode(false);
+    runWindows(AdaptiveCaptureController.WINDOWS_TO_STEP_UP, BUDGET / 4, 1);
+    assertEquals(MAX_CAPTURE_RATE / 2, appliedRate);
+  }
+
+  @Test
+  public void test_pause_not_measured() {
+    for (int i = 0; i < AdaptiveCaptureController.WINDOWS_TO_STEP_DOWN; i++) {
+      // Half a window, then the capture is disabled e.g. while the screen is off
+      long interval = TimeUnit.SECONDS.toNanos(1000) / controller.getCaptureRate();
+      long pauseStart = now + AdaptiveCaptureController.WINDOW_NANOS / 2;
+      while (now < pauseStart) {
+        controller.onFrameDelivered(now);
+        controller.onFrameDrawn(BUDGET / 4);
+        now += interval;
+      }
+      now += TimeUnit.SECONDS.toNanos(30);
+      controller.onCaptureResumed();
+    }
+    runWindows(1, BUDGET / 4, 1);
+    assertEquals(1024, appliedSize);
+  }
+
+  /**
+   * Simulates complete measurement windows
+   *
+   * @param windows Number of windows to simulate
+   * @param drawNanos Draw time of every frame
+   * @param deliveryDivisor 1 when frames arrive at the requested rate, 2 for half the rate etc.
+   */
+  private void runWindows(int windows, long drawNanos, int deliveryDivisor) {
+    for (int w = 0; w < windows; w++) {
+      long interval =
+          TimeUnit.SECONDS.toNanos(1000) / controller.getCaptureRate() * deliveryDivisor;
+      long windowEnd = now + AdaptiveCaptureController.WINDOW_NANOS;
+      while (now < windowEnd) {
+        controller.onFrameDelivered(now);
+        controller.onFrameDrawn(drawNanos);
+        now += interval;
+      }
+      controller.onFrameDelivered(now);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.wirehall.audiorecorder.visualizer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameStatsTest {
+  private static final long BUDGET = TimeUnit.MILLISECONDS.toNanos(4);
+
+  private FrameStats frameStats;
+
+  @Before
+  public void setUp() {
+    frameStats = new FrameStats("test", BUDGET);
+  }
+
+  @Test
+  public void test_buckets_are_monotonic_and_contiguous() {
+    int previousBucket = 0;
+    for (long micros = 0; micros < 1_000_000; micros++) {
+      int bucket = FrameStats.bucketOf(micros);
+      assertTrue(bucket == previousBucket || bucket == previousBucket + 1);
+      assertTrue(micros <= FrameStats.bucketUpperBoundMicros(bucket));
+      previousBucket = bucket;
+    }
+    assertTrue(previousBucket < FrameStats.BUCKET_COUNT);
+  }
+
+  @Test
+  public void test_percentiles_are_accurate() {
+    // 1ms to 10ms in 1µs steps, shuffled so the sampling does not skew the distribution
+    for (int i = 0; i < 9000; i++) {
+      long micros = 1000 + (i * 7919L) % 9000;
+      frameStats.record(TimeUnit.MICROSECONDS.toNanos(micros) + 500);
+    }
+    assertWithinPercent(5_500_000, frameStats.getPercentileNanos(50), 3);
+    assertWithinPercent(9_550_000, frameStats.getPercentileNanos(95), 3);
+    assertWithinPercent(9_910_000, frameStats.getPercentileNanos(99), 3);
+  }
+
+  @Test
+  public void test_over_budget_and_max_are_exact() {
+    frameStats.record(BUDGET - 1);
+    frameStats.record(BUDGET);
+    frameStats.record(BUDGET + 1);
+    frameStats.record(BUDGET * 3);
+
+    assertEquals(4, frameStats.getFrameCount());
+    assertEquals(2, frameStats.getOverBudgetCount());
+    assertEquals(BUDGET * 3, frameStats.getMaxNanos());
+
+    frameStats.reset();
+    assertEquals(0, frameStats.getFrameCount());
+    assertEquals(0, frameStats.getPercentileNanos(50));
+  }
+
+  private static void assertWithinPercent(long expected, long actual, int percent) {
+    assertTrue(
+        "expected " + expected + " but was " + actual,
+        Math.abs(actual - expected) * 100 <= expected * percent);
+  }
+}
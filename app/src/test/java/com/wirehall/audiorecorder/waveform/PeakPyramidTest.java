@@ -0,0 +1,124 @@
+package com.wirehall.audiorecorder.waveform;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PeakPyramidTest {
+  private static final int SAMPLE_RATE = 44100;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void test_level_peak_counts() {
+    assertArrayEquals(new int[] {1}, PeakPyramidBuilder.getLevelPeakCounts(1));
+    assertArrayEquals(new int[] {5, 3, 2, 1}, PeakPyramidBuilder.getLevelPeakCounts(5));
+    assertArrayEquals(new int[] {8, 4, 2, 1}, PeakPyramidBuilder.getLevelPeakCounts(8));
+  }
+
+  @Test
+  public void test_write_and_open() throws IOException {
+    // Stereo, every base peak spans 1024 frames, the left channel rises with the peak index
+    int basePeaks = 5;
+    short[] pcm = new short[basePeaks * PeakPyramid.BASE_SAMPLES_PER_PEAK * 2];
+    for (int frame = 0; frame < pcm.length / 2; frame++) {
+      int peak = frame / PeakPyramid.BASE_SAMPLES_PER_PEAK;
+      pcm[frame * 2] = (short) (peak * 10 << 8);
+      pcm[frame * 2 + 1] = (short) (-peak << 8);
+    }
+    PeakPyramidBuilder builder = new PeakPyramidBuilder(SAMPLE_RATE, 2);
+    // Split the PCM unevenly, as decoder buffers are
+    builder.addPcm(ShortBuffer.wrap(pcm, 0, 1001));
+    builder.addPcm(ShortBuffer.wrap(pcm, 1001, pcm.length - 1001));
+    assertEquals(basePeaks, builder.getPeakCount());
+
+    File file = temporaryFolder.newFile();
+    builder.writeTo(file);
+    PeakPyramid peakPyramid = PeakPyramid.open(file);
+
+    assertEquals(SAMPLE_RATE, peakPyramid.getSampleRate());
+    assertEquals(4, peakPyramid.getLevelCount());
+    assertEquals(basePeaks * PeakPyramid.BASE_SAMPLES_PER_PEAK, peakPyramid.getSampleCount());
+    assertEquals(-3, peakPyramid.getMin(0, 3));
+    assertEquals(30, peakPyramid.getMax(0, 3));
+    // Level 1 merges peaks 2 and 3, the last peak of level 1 covers only peak 4
+    assertEquals(-3, peakPyramid.getMin(1, 1));
+    assertEquals(30, peakPyramid.getMax(1, 1));
+    assertEquals(-4, peakPyramid.getMin(1, 2));
+    assertEquals(40, peakPyramid.getMax(1, 2));
+    assertEquals(-4, peakPyramid.getMin(3, 0));
+    assertEquals(40, peakPyramid.getMax(3, 0));
+  }
+
+  @Test
+  public void test_level_for_zoom() throws IOException {
+    PeakPyramidBuilder builder = new PeakPyramidBuilder(SAMPLE_RATE, 1);
+    builder.addPcm(ShortBuffer.wrap(new short[PeakPyramid.BASE_SAMPLES_PER_PEAK * 100]));
+    File file = temporaryFolder.newFile();
+    builder.writeTo(file);
+    PeakPyramid peakPyramid = PeakPyramid.open(file);
+
+    int base = PeakPyramid.BASE_SAMPLES_PER_PEAK;
+    assertEquals(0, peakPyramid.getLevelFor(base));
+    assertEquals(0, peakPyramid.getLevelFor(base * 2 - 1));
+    assertEquals(1, peakPyramid.getLevelFor(base * 2));
+    assertEquals(3, peakPyramid.getLevelFor(base * 10));
+    assertEquals(peakPyramid.getLevelCount() - 1, peakPyramid.getLevelFor(Double.MAX_VALUE));
+  }
+
+  @Test
+  public void test_resume_from_checkpoint() throws IOException {
+    int base = PeakPyramid.BASE_SAMPLES_PER_PEAK;
+    short[] pcm = new short[base * 4];
+    for (int i = 0; i < pcm.length; i++) {
+      pcm[i] = (short) ((i / base + 1) * 1000);
+    }
+    PeakPyramidBuilder builder = new PeakPyramidBuilder(SAMPLE_RATE, 1);
+    // Two complete peaks and half of the third one
+    builder.addPcm(ShortBuffer.wrap(pcm, 0, base * 2 + base / 2));
+    File partialFile = temporaryFolder.newFile();
+    builder.writePartialTo(partialFile);
+
+    PeakPyramidBuilder resumed = PeakPyramidBuilder.readPartialFrom(partialFile);
+    assertEquals(SAMPLE_RATE, resumed.getSampleRate());
+    assertEquals(2, resumed.getPeakCount());
+    assertEquals(base * 2, resumed.getCompletedFrames());
+
+    // The pending peak is not checkpointed, so decoding continues after the completed frames
+    resumed.addPcm(ShortBuffer.wrap(pcm, base * 2, base * 2));
+    File file = temporaryFolder.newFile();
+    resumed.writeTo(file);
+    PeakPyramid peakPyramid = PeakPyramid.open(file);
+    assertEquals(4, peakPyramid.getPeakCount(0));
+    for (int i = 0; i < 4; i++) {
+      assertEquals(((i + 1) * 1000) >> 8, peakPyramid.getMax(0, i));
+    }
+  }
+
+  @Test
+  public void test_truncated_file_is_rejected() throws IOException {
+    PeakPyramidBuilder builder = new PeakPyramidBuilder(SAMPLE_RATE, 1);
+    builder.addPcm(ShortBuffer.wrap(new short[PeakPyramid.BASE_SAMPLES_PER_PEAK * 10]));
+    File file = temporaryFolder.newFile();
+    builder.writeTo(file);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(randomAccessFile.length() - 1);
+    }
+
+    try {
+      PeakPyramid.open(file);
+      fail("Truncated file must not be opened");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
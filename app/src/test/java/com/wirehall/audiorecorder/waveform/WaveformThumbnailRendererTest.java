@@ -0,0 +1,104 @@
+package com.wirehall.audiorecorder.waveform;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class WaveformThumbnailRendererTest {
+  private static final int SAMPLE_RATE = 44100;
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 8;
+  // Padded rows, as the bitmaps may have
+  private static final int STRIDE = 12;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void test_silence_is_a_center_line() throws IOException {
+    PeakPyramid peakPyramid = createPyramid(new short[PeakPyramid.BASE_SAMPLES_PER_PEAK * 40]);
+    byte[] mask = new byte[STRIDE * HEIGHT];
+    mask[0] = 1; // cleared before drawing
+
+    WaveformThumbnailRenderer.render(peakPyramid, WIDTH, HEIGHT, STRIDE, mask);
+
+    for (int x = 0; x < WIDTH; x++) {
+      assertEquals(1, getColumnHeight(mask, x));
+      assertEquals((byte) 0xFF, mask[HEIGHT / 2 * STRIDE + x]);
+    }
+    assertEquals(WIDTH, getOpaqueCount(mask));
+  }
+
+  @Test
+  public void test_loud_then_silent() throws IOException {
+    // Full scale for the first half, silent for the second one
+    short[] pcm = new short[PeakPyramid.BASE_SAMPLES_PER_PEAK * 40];
+    for (int i = 0; i < pcm.length / 2; i++) {
+      pcm[i] = i % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE;
+    }
+    PeakPyramid peakPyramid = createPyramid(pcm);
+    byte[] mask = new byte[STRIDE * HEIGHT];
+
+    WaveformThumbnailRenderer.render(peakPyramid, WIDTH, HEIGHT, STRIDE, mask);
+
+    for (int x = 0; x < WIDTH / 2; x++) {
+      assertEquals(HEIGHT, getColumnHeight(mask, x));
+    }
+    for (int x = WIDTH / 2; x < WIDTH; x++) {
+      assertEquals(1, getColumnHeight(mask, x));
+    }
+    // Nothing is drawn in the padding of the rows
+    for (int y = 0; y < HEIGHT; y++) {
+      assertEquals(0, mask[y * STRIDE + WIDTH]);
+    }
+  }
+
+  @Test
+  public void test_fewer_peaks_than_columns() throws IOException {
+    // Two peaks stretched over all the columns
+    short[] pcm = new short[PeakPyramid.BASE_SAMPLES_PER_PEAK * 2];
+    for (int i = 0; i < PeakPyramid.BASE_SAMPLES_PER_PEAK; i++) {
+      pcm[i] = i % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE;
+    }
+    PeakPyramid peakPyramid = createPyramid(pcm);
+    byte[] mask = new byte[STRIDE * HEIGHT];
+
+    WaveformThumbnailRenderer.render(peakPyramid, WIDTH, HEIGHT, STRIDE, mask);
+
+    assertEquals(HEIGHT, getColumnHeight(mask, 0));
+    assertEquals(1, getColumnHeight(mask, WIDTH - 1));
+  }
+
+  private PeakPyramid createPyramid(short[] pcm) throws IOException {
+    PeakPyramidBuilder builder = new PeakPyramidBuilder(SAMPLE_RATE, 1);
+    builder.addPcm(ShortBuffer.wrap(pcm));
+    File file = temporaryFolder.newFile();
+    builder.writeTo(file);
+    return PeakPyramid.open(file);
+  }
+
+  private static int getColumnHeight(byte[] mask, int x) {
+    int count = 0;
+    for (int y = 0; y < HEIGHT; y++) {
+      if (mask[y * STRIDE + x] != 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int getOpaqueCount(byte[] mask) {
+    int count = 0;
+    for (byte alpha : mask) {
+      if (alpha != 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+}